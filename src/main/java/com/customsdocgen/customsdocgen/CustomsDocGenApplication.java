@@ -4,12 +4,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.awt.Desktop;
 import java.io.IOException;
 import java.net.URI;
 
 @SpringBootApplication
+@EnableScheduling
 public class CustomsDocGenApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,35 @@
+package com.customsdocgen.customsdocgen;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+public class OfficePoolEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String PORT_NUMBERS = "jodconverter.local.port-numbers";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.containsProperty(PORT_NUMBERS)) {
+            return;
+        }
+
+        int poolSize = environment.getProperty("conversion.pool.size", Integer.class, Integer.valueOf(0)).intValue();
+        if (poolSize <= 0) {
+            poolSize = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        }
+        int basePort = environment.getProperty("conversion.pool.base-port", Integer.class, Integer.valueOf(2002)).intValue();
+
+        StringJoiner ports = new StringJoiner(",");
+        for (int i = 0; i < poolSize; i++) {
+            ports.add(String.valueOf(basePort + i));
+        }
+
+        environment.getPropertySources().addLast(
+            new MapPropertySource("officePool", Map.of(PORT_NUMBERS, ports.toString())));
+    }
+}
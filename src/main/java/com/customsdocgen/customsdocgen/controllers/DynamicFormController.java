@@ -1,19 +1,24 @@
 package com.customsdocgen.customsdocgen.controllers;
 
 import com.customsdocgen.customsdocgen.models.AppConfig;
-import com.customsdocgen.customsdocgen.models.FieldConfig;
 import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.customsdocgen.customsdocgen.services.BatchRecordReader;
 import com.customsdocgen.customsdocgen.services.ConfigService;
+import com.customsdocgen.customsdocgen.services.ConfigSnapshot;
 import com.customsdocgen.customsdocgen.services.DocumentGenerationService;
 import com.customsdocgen.customsdocgen.services.FieldValuesHistoryService;
 import com.customsdocgen.customsdocgen.services.FormulaCalculationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +31,7 @@ public class DynamicFormController {
     private final DocumentGenerationService documentGenerationService;
     private final FormulaCalculationService formulaCalculationService;
     private final FieldValuesHistoryService fieldValuesHistoryService;
+    private final BatchRecordReader batchRecordReader;
 
     @GetMapping("/")
     public String index() {
@@ -40,18 +46,22 @@ public class DynamicFormController {
 
     @PostMapping("/api/check-template-availability")
     @ResponseBody
-    public ResponseEntity<Map<String, Object>> checkTemplateAvailability(@RequestBody Map<String, String> formData) {
-        AppConfig config = configService.getConfig();
+    public ResponseEntity<Map<String, Object>> checkTemplateAvailability(
+            @RequestBody Map<String, String> formData,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ConfigSnapshot snapshot = configService.getSnapshot();
+        List<String> availableTemplateIds = snapshot.getAvailableTemplateIds(formData);
+
+        String eTag = snapshot.availabilityTag(availableTemplateIds);
+        if (eTag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
         Map<String, Object> response = new HashMap<>();
+        response.put("version", Long.valueOf(snapshot.getVersion()));
+        response.put("availableTemplateIds", availableTemplateIds);
         
-        List<TemplateConfig> availableTemplates = config.getTemplates().stream()
-                .filter(template -> isTemplateAvailable(template, formData, config.getFields()))
-                .toList();
-        
-        response.put("availableTemplates", availableTemplates);
-        response.put("allTemplates", config.getTemplates());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok().eTag(eTag).body(response);
     }
 
     @PostMapping("/api/generate-document/{templateId}")
@@ -95,28 +105,8 @@ public class DynamicFormController {
     
 
     private void saveFieldValuesToHistory(Map<String, String> formData) {
-        AppConfig config = configService.getConfig();
-        Map<String, Boolean> fieldRememberFlags = new HashMap<>();
-        Map<String, String> fieldIdToPlaceholder = new HashMap<>();
-
-        for (FieldConfig field : config.getFields()) {
-            if (field.isRememberValues()) {
-                fieldRememberFlags.put(field.getId(), Boolean.TRUE);
-                fieldIdToPlaceholder.put(field.getPlaceholder(), field.getId());
-            }
-        }
-
-        Map<String, String> fieldValuesByFieldId = new HashMap<>();
-        for (Map.Entry<String, String> entry : formData.entrySet()) {
-            String placeholder = entry.getKey();
-            String value = entry.getValue();
-            String fieldId = fieldIdToPlaceholder.get(placeholder);
-            if (fieldId != null && value != null && !value.trim().isEmpty()) {
-                fieldValuesByFieldId.put(fieldId, value);
-            }
-        }
-
-        fieldValuesHistoryService.saveValuesForFields(fieldValuesByFieldId, fieldRememberFlags);
+        fieldValuesHistoryService.saveFormValues(
+                configService.getSnapshot().getRememberedFieldIdsByPlaceholder(), formData);
     }
 
     @GetMapping("/api/field-values-history")
@@ -125,6 +115,15 @@ public class DynamicFormController {
         return ResponseEntity.ok(fieldValuesHistoryService.getAllHistory());
     }
 
+    @GetMapping("/api/field-values-history/{fieldId}/suggestions")
+    @ResponseBody
+    public ResponseEntity<List<String>> suggestFieldValues(
+            @PathVariable String fieldId,
+            @RequestParam(value = "q", defaultValue = "") String query,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(fieldValuesHistoryService.suggest(fieldId, query, limit));
+    }
+
     @DeleteMapping("/api/field-values-history/{fieldId}")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> removeFieldValue(
@@ -139,80 +138,152 @@ public class DynamicFormController {
     @PostMapping("/api/calculate-formulas")
     @ResponseBody
     public ResponseEntity<Map<String, String>> calculateFormulas(@RequestBody Map<String, String> formData) {
-        AppConfig config = configService.getConfig();
-        Map<String, String> calculatedValues = formulaCalculationService.calculateAllFormulas(
-                config.getFields(), formData);
+        Map<String, String> calculatedValues = formulaCalculationService.calculateAllFormulas(formData);
         return ResponseEntity.ok(calculatedValues);
     }
 
+    @PostMapping("/api/calculate-formulas/incremental")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> recalculateFormulas(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> formData = (Map<String, String>) request.get("formData");
+
+        @SuppressWarnings("unchecked")
+        List<String> changed = (List<String>) request.get("changed");
+
+        if (formData == null || changed == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(formulaCalculationService.recalculateFormulas(formData, changed));
+    }
+
     @PostMapping("/api/generate-archive")
-    public ResponseEntity<byte[]> generateArchive(@RequestBody Map<String, Object> request) {
-        try {
-            @SuppressWarnings("unchecked")
-            Map<String, String> formData = (Map<String, String>) request.get("formData");
-            
-            @SuppressWarnings("unchecked")
-            List<String> templateIds = (List<String>) request.get("templateIds");
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Boolean> originalFlags = (Map<String, Boolean>) request.get("originalFlags");
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Boolean> pdfFlags = (Map<String, Boolean>) request.get("pdfFlags");
-            
-            if (templateIds == null || templateIds.isEmpty()) {
-                return ResponseEntity.badRequest().build();
-            }
+    public ResponseEntity<StreamingResponseBody> generateArchive(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> formData = (Map<String, String>) request.get("formData");
+        
+        @SuppressWarnings("unchecked")
+        List<String> templateIds = (List<String>) request.get("templateIds");
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> originalFlags = (Map<String, Boolean>) request.get("originalFlags");
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> pdfFlags = (Map<String, Boolean>) request.get("pdfFlags");
+        
+        if (templateIds == null || templateIds.isEmpty() || formData == null) {
+            return ResponseEntity.badRequest().build();
+        }
 
-            if (originalFlags == null) {
-                originalFlags = new HashMap<>();
-            }
-            if (pdfFlags == null) {
-                pdfFlags = new HashMap<>();
-            }
-            
-            byte[] archive = documentGenerationService.generateArchive(templateIds, formData, originalFlags, pdfFlags);
+        Map<String, Boolean> requestedOriginals = originalFlags != null ? originalFlags : new HashMap<>();
+        Map<String, Boolean> requestedPdfs = pdfFlags != null ? pdfFlags : new HashMap<>();
 
-            saveFieldValuesToHistory(formData);
+        saveFieldValuesToHistory(formData);
+
+        String archiveName = documentGenerationService.archiveFileName(formData);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.add("Content-Disposition", 
+            "attachment; filename*=UTF-8''" + encodeFileName(archiveName));
 
-            String archiveName = "Documents";
-            String contractNumber = formData.get("{{CONTRACT_NUMBER}}");
-            if (contractNumber != null && !contractNumber.isEmpty()) {
-                archiveName = "Documents_" + contractNumber;
+        StreamingResponseBody body = out -> {
+            try {
+                documentGenerationService.writeArchive(out, templateIds, formData, requestedOriginals, requestedPdfs);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Помилка створення архіву: " + e.getMessage(), e);
             }
-            archiveName += ".zip";
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-            headers.add("Content-Disposition", 
-                "attachment; filename*=UTF-8''" + encodeFileName(archiveName));
-            
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(archive);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+        };
+        
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    @PostMapping(value = "/api/generate-batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBatch(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> rawRecords = (List<Map<String, Object>>) request.get("records");
+        
+        @SuppressWarnings("unchecked")
+        List<String> templateIds = (List<String>) request.get("templateIds");
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> originalFlags = (Map<String, Boolean>) request.get("originalFlags");
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> pdfFlags = (Map<String, Boolean>) request.get("pdfFlags");
+
+        if (rawRecords == null || templateIds == null || templateIds.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Map<String, String>> records;
+        try {
+            records = batchRecordReader.normalizeRecords(rawRecords);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+
+        return streamBatch(records, templateIds,
+                originalFlags != null ? originalFlags : new HashMap<>(),
+                pdfFlags != null ? pdfFlags : new HashMap<>());
     }
 
-    private boolean isTemplateAvailable(TemplateConfig template, Map<String, String> formData, List<FieldConfig> fields) {
+    @PostMapping(value = "/api/generate-batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBatchFromFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "templateIds", required = false) List<String> templateIds,
+            @RequestParam(value = "pdfTemplateIds", required = false) List<String> pdfTemplateIds) {
+        List<String> originals = templateIds != null ? templateIds : List.of();
+        List<String> pdfs = pdfTemplateIds != null ? pdfTemplateIds : List.of();
+        if (originals.isEmpty() && pdfs.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        for (String fieldId : template.getRequiredFieldIds()) {
-            FieldConfig field = fields.stream()
-                    .filter(f -> f.getId().equals(fieldId))
-                    .findFirst()
-                    .orElse(null);
-            
-            if (field == null) continue;
-            
-            String value = formData.get(field.getPlaceholder());
-            if (value == null || value.trim().isEmpty()) {
-                return false;
-            }
+        List<Map<String, String>> records;
+        try (java.io.InputStream input = file.getInputStream()) {
+            records = batchRecordReader.readRecords(file.getOriginalFilename(), input);
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().build();
         }
-        
-        return true;
+
+        java.util.LinkedHashSet<String> allTemplateIds = new java.util.LinkedHashSet<>(originals);
+        allTemplateIds.addAll(pdfs);
+        Map<String, Boolean> originalFlags = new HashMap<>();
+        Map<String, Boolean> pdfFlags = new HashMap<>();
+        for (String templateId : allTemplateIds) {
+            originalFlags.put(templateId, Boolean.valueOf(originals.contains(templateId)));
+            pdfFlags.put(templateId, Boolean.valueOf(pdfs.contains(templateId)));
+        }
+
+        return streamBatch(records, List.copyOf(allTemplateIds), originalFlags, pdfFlags);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamBatch(List<Map<String, String>> records, List<String> templateIds,
+                                                              Map<String, Boolean> originalFlags,
+                                                              Map<String, Boolean> pdfFlags) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.add("Content-Disposition", 
+            "attachment; filename*=UTF-8''" + encodeFileName("Batch_" + records.size() + ".zip"));
+
+        StreamingResponseBody body = out -> {
+            try {
+                documentGenerationService.writeBatchArchive(out, records, templateIds, originalFlags, pdfFlags);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Помилка створення архіву: " + e.getMessage(), e);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
     }
 
     private String generateFileName(String pattern, Map<String, String> formData) {
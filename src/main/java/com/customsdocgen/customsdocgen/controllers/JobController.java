@@ -0,0 +1,136 @@
+package com.customsdocgen.customsdocgen.controllers;
+
+import com.customsdocgen.customsdocgen.services.BatchRecordReader;
+import com.customsdocgen.customsdocgen.services.ConfigService;
+import com.customsdocgen.customsdocgen.services.FieldValuesHistoryService;
+import com.customsdocgen.customsdocgen.services.GenerationJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/jobs")
+@RequiredArgsConstructor
+public class JobController {
+
+    private final GenerationJobService generationJobService;
+    private final ConfigService configService;
+    private final FieldValuesHistoryService fieldValuesHistoryService;
+    private final BatchRecordReader batchRecordReader;
+
+    @PostMapping("/archive")
+    public ResponseEntity<Map<String, Object>> submitArchive(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> formData = (Map<String, String>) request.get("formData");
+
+        @SuppressWarnings("unchecked")
+        List<String> templateIds = (List<String>) request.get("templateIds");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> originalFlags = (Map<String, Boolean>) request.get("originalFlags");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> pdfFlags = (Map<String, Boolean>) request.get("pdfFlags");
+
+        if (templateIds == null || templateIds.isEmpty() || formData == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Не вказано шаблони або дані форми"));
+        }
+
+        fieldValuesHistoryService.saveFormValues(
+                configService.getSnapshot().getRememberedFieldIdsByPlaceholder(), formData);
+
+        try {
+            String jobId = generationJobService.submitArchive(templateIds, formData,
+                    originalFlags != null ? originalFlags : new HashMap<>(),
+                    pdfFlags != null ? pdfFlags : new HashMap<>());
+            return ResponseEntity.accepted().body(Map.of("jobId", jobId));
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> submitBatch(@RequestBody Map<String, Object> request) {
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> rawRecords = (List<Map<String, Object>>) request.get("records");
+
+        @SuppressWarnings("unchecked")
+        List<String> templateIds = (List<String>) request.get("templateIds");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> originalFlags = (Map<String, Boolean>) request.get("originalFlags");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Boolean> pdfFlags = (Map<String, Boolean>) request.get("pdfFlags");
+
+        if (rawRecords == null || templateIds == null || templateIds.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Не вказано шаблони або записи"));
+        }
+
+        try {
+            String jobId = generationJobService.submitBatch(batchRecordReader.normalizeRecords(rawRecords), templateIds,
+                    originalFlags != null ? originalFlags : new HashMap<>(),
+                    pdfFlags != null ? pdfFlags : new HashMap<>());
+            return ResponseEntity.accepted().body(Map.of("jobId", jobId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String jobId) {
+        Map<String, Object> status = generationJobService.getStatus(jobId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<Resource> getResult(@PathVariable String jobId) {
+        if (generationJobService.getStatus(jobId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        GenerationJobService.JobResult result = generationJobService.getResult(jobId);
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.add("Content-Disposition",
+            "attachment; filename*=UTF-8''" + URLEncoder.encode(result.fileName(), StandardCharsets.UTF_8).replace("+", "%20"));
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(new FileSystemResource(result.file()));
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> cancel(@PathVariable String jobId) {
+        if (!generationJobService.cancel(jobId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<Map<String, Object>> queueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Черга генерації заповнена, спробуйте пізніше"));
+    }
+}
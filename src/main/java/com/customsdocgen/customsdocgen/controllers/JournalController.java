@@ -0,0 +1,169 @@
+package com.customsdocgen.customsdocgen.controllers;
+
+import com.customsdocgen.customsdocgen.services.DocumentGenerationService;
+import com.customsdocgen.customsdocgen.services.GenerationJournal;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/journal")
+@RequiredArgsConstructor
+public class JournalController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final GenerationJournal generationJournal;
+    private final DocumentGenerationService documentGenerationService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam(required = false) String contract,
+                                    @RequestParam(required = false) String from,
+                                    @RequestParam(required = false) String to,
+                                    @RequestParam(defaultValue = "100") int limit) {
+        Long fromMillis;
+        Long toMillis;
+        try {
+            fromMillis = parseDate(from, false);
+            toMillis = parseDate(to, true);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Невірний формат дати: " + e.getParsedString()));
+        }
+
+        try {
+            return ResponseEntity.ok(generationJournal.search(contract, fromMillis, toMillis,
+                    Math.max(1, Math.min(limit, MAX_LIMIT))));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Помилка читання журналу: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{entryId}")
+    public ResponseEntity<?> getEntry(@PathVariable String entryId) {
+        try {
+            GenerationJournal.JournalEntry entry = generationJournal.get(entryId);
+            if (entry == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(entry);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Помилка читання журналу: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{entryId}/document")
+    public ResponseEntity<?> regenerate(@PathVariable String entryId) {
+        try {
+            GenerationJournal.JournalEntry entry = generationJournal.get(entryId);
+            if (entry == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            byte[] document = documentGenerationService.regenerate(entry);
+            String fileName = entry.fileName().substring(entry.fileName().lastIndexOf('/') + 1);
+            return attachment(document, fileName, entry.pdf() ? MediaType.APPLICATION_PDF : MediaType.APPLICATION_OCTET_STREAM);
+        } catch (FileNotFoundException e) {
+            return templateVersionMissing(e);
+        } catch (Exception e) {
+            return regenerationFailed(e);
+        }
+    }
+
+    @PostMapping("/regenerate")
+    public ResponseEntity<StreamingResponseBody> regenerateArchive(@RequestBody Map<String, Object> request)
+            throws JsonProcessingException {
+        @SuppressWarnings("unchecked")
+        List<String> entryIds = (List<String>) request.get("entryIds");
+        if (entryIds == null || entryIds.isEmpty()) {
+            return streamedError(HttpStatus.BAD_REQUEST, "Не вказано записи журналу");
+        }
+
+        try {
+            List<GenerationJournal.JournalEntry> entries = new ArrayList<>(entryIds.size());
+            for (String entryId : entryIds) {
+                GenerationJournal.JournalEntry entry = generationJournal.get(entryId);
+                if (entry == null) {
+                    return streamedError(HttpStatus.NOT_FOUND, "Запис журналу не знайдено: " + entryId);
+                }
+                entries.add(entry);
+            }
+
+            documentGenerationService.requireTemplateVersions(entries);
+
+            StreamingResponseBody body = out -> {
+                try {
+                    documentGenerationService.writeRegeneratedArchive(out, entries);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Помилка повторної генерації: " + e.getMessage(), e);
+                }
+            };
+            return ResponseEntity.ok()
+                    .headers(attachmentHeaders("documents.zip", MediaType.APPLICATION_OCTET_STREAM))
+                    .body(body);
+        } catch (FileNotFoundException e) {
+            return streamedError(HttpStatus.GONE, e.getMessage());
+        } catch (Exception e) {
+            return streamedError(HttpStatus.INTERNAL_SERVER_ERROR, "Помилка повторної генерації: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamedError(HttpStatus status, String message)
+            throws JsonProcessingException {
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("error", message));
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(out -> out.write(body));
+    }
+
+    private ResponseEntity<byte[]> attachment(byte[] content, String fileName, MediaType contentType) {
+        return ResponseEntity.ok().headers(attachmentHeaders(fileName, contentType)).body(content);
+    }
+
+    private HttpHeaders attachmentHeaders(String fileName, MediaType contentType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.add("Content-Disposition",
+            "attachment; filename*=UTF-8''" + URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20"));
+        return headers;
+    }
+
+    private ResponseEntity<Map<String, Object>> templateVersionMissing(FileNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.GONE).body(Map.of("error", e.getMessage()));
+    }
+
+    private ResponseEntity<Map<String, Object>> regenerationFailed(Exception e) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Помилка повторної генерації: " + e.getMessage()));
+    }
+
+    private Long parseDate(String value, boolean endOfDay) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        LocalDateTime dateTime = value.length() <= 10
+                ? (endOfDay ? LocalDate.parse(value).plusDays(1).atStartOfDay().minusNanos(1) : LocalDate.parse(value).atStartOfDay())
+                : LocalDateTime.parse(value);
+        return Long.valueOf(dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,75 @@
+package com.customsdocgen.customsdocgen.controllers;
+
+import com.customsdocgen.customsdocgen.services.DocumentGenerationService;
+import com.customsdocgen.customsdocgen.services.FieldValuesHistoryService;
+import com.customsdocgen.customsdocgen.services.GenerationJobService;
+import com.customsdocgen.customsdocgen.services.GenerationJournal;
+import com.customsdocgen.customsdocgen.services.PdfCacheService;
+import com.customsdocgen.customsdocgen.services.PdfConversionService;
+import com.customsdocgen.customsdocgen.services.TemplateCacheService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final TemplateCacheService templateCacheService;
+    private final ObjectProvider<PdfConversionService> pdfConversionService;
+    private final PdfCacheService pdfCacheService;
+    private final DocumentGenerationService documentGenerationService;
+    private final GenerationJobService generationJobService;
+    private final FieldValuesHistoryService fieldValuesHistoryService;
+    private final GenerationJournal generationJournal;
+
+
+    @GetMapping("/template-cache")
+    public ResponseEntity<Map<String, Object>> getTemplateCacheStats() {
+        return ResponseEntity.ok(templateCacheService.getStats());
+    }
+
+
+    @GetMapping("/pdf-conversion")
+    public ResponseEntity<Map<String, Object>> getPdfConversionStats() {
+        PdfConversionService service = pdfConversionService.getIfAvailable();
+        if (service == null) {
+            return ResponseEntity.ok(Map.of("available", Boolean.FALSE));
+        }
+        return ResponseEntity.ok(service.getStats());
+    }
+
+
+    @GetMapping("/pdf-cache")
+    public ResponseEntity<Map<String, Object>> getPdfCacheStats() {
+        return ResponseEntity.ok(pdfCacheService.getStats());
+    }
+
+
+    @GetMapping("/render-cache")
+    public ResponseEntity<Map<String, Object>> getRenderCacheStats() {
+        return ResponseEntity.ok(documentGenerationService.getRenderCacheStats());
+    }
+
+
+    @GetMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> getJobStats() {
+        return ResponseEntity.ok(generationJobService.getStats());
+    }
+
+
+    @GetMapping("/history")
+    public ResponseEntity<Map<String, Object>> getHistoryStats() {
+        return ResponseEntity.ok(fieldValuesHistoryService.getStats());
+    }
+
+
+    @GetMapping("/journal")
+    public ResponseEntity<Map<String, Object>> getJournalStats() {
+        return ResponseEntity.ok(generationJournal.getStats());
+    }
+}
@@ -38,20 +38,40 @@ public class SettingsController {
     @PutMapping("/api/config")
     @ResponseBody
     public ResponseEntity<Map<String, String>> updateConfig(@RequestBody AppConfig config) {
-        configService.updateConfig(config);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Конфигурация успешно обновлена");
-        return ResponseEntity.ok(response);
+        try {
+            configService.updateConfig(config);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Конфигурация успешно обновлена");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
 
 
     @PostMapping("/api/fields")
     @ResponseBody
     public ResponseEntity<Map<String, String>> addField(@RequestBody FieldConfig field) {
-        configService.addField(field);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Поле успешно добавлено");
-        return ResponseEntity.ok(response);
+        try {
+            configService.addField(field);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Поле успешно добавлено");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
 
 
@@ -60,20 +80,36 @@ public class SettingsController {
     public ResponseEntity<Map<String, String>> updateField(
             @PathVariable String fieldId,
             @RequestBody FieldConfig field) {
-        configService.updateField(fieldId, field);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Поле успешно обновлено");
-        return ResponseEntity.ok(response);
+        try {
+            configService.updateField(fieldId, field);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Поле успешно обновлено");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
 
 
     @DeleteMapping("/api/fields/{fieldId}")
     @ResponseBody
     public ResponseEntity<Map<String, String>> deleteField(@PathVariable String fieldId) {
-        configService.deleteField(fieldId);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Поле успешно удалено");
-        return ResponseEntity.ok(response);
+        try {
+            configService.deleteField(fieldId);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Поле успешно удалено");
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
 
 
@@ -97,10 +133,16 @@ public class SettingsController {
     @PostMapping("/api/templates")
     @ResponseBody
     public ResponseEntity<Map<String, String>> addTemplate(@RequestBody TemplateConfig template) {
-        configService.addTemplate(template);
-        Map<String, String> response = new HashMap<>();
-        response.put("message", "Шаблон успешно добавлен");
-        return ResponseEntity.ok(response);
+        try {
+            configService.addTemplate(template);
+            Map<String, String> response = new HashMap<>();
+            response.put("message", "Шаблон успешно добавлен");
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
     }
 
 
@@ -125,6 +167,10 @@ public class SettingsController {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Шаблон успешно обновлен");
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
         } catch (Exception e) {
             Map<String, String> response = new HashMap<>();
             response.put("error", e.getMessage());
@@ -144,6 +190,10 @@ public class SettingsController {
             Map<String, String> response = new HashMap<>();
             response.put("message", "Шаблон успешно удален");
             return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
         } catch (Exception e) {
             Map<String, String> response = new HashMap<>();
             response.put("error", e.getMessage());
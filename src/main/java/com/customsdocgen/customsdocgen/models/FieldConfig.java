@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,5 +25,7 @@ public class FieldConfig {
     private boolean rememberValues;
     
     private Integer decimalPlaces;
+    
+    private List<FieldConfig> columns;
 }
 
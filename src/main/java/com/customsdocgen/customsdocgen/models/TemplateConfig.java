@@ -15,5 +15,8 @@ public class TemplateConfig {
     private String displayName;
     private String downloadPattern;
     private List<String> requiredFieldIds;
+    private Boolean cacheResults;
+    private String renderEngine;
+    private Boolean evaluateFormulas;
 }
 
@@ -0,0 +1,194 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@Service
+public class BatchRecordReader {
+
+    private final ConfigService configService;
+    private final int maxRecords;
+
+    public BatchRecordReader(ConfigService configService,
+                             @Value("${generation.batch.max-records:500}") int maxRecords) {
+        this.configService = configService;
+        this.maxRecords = maxRecords;
+    }
+
+
+    public List<Map<String, String>> readRecords(String fileName, InputStream input) throws IOException {
+        String lowerName = fileName != null ? fileName.toLowerCase(Locale.ROOT) : "";
+        List<List<String>> rows;
+        if (lowerName.endsWith(".xlsx") || lowerName.endsWith(".xls")) {
+            rows = readSpreadsheet(input);
+        } else if (lowerName.endsWith(".csv") || lowerName.endsWith(".txt")) {
+            rows = readCsv(new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        } else {
+            throw new IllegalArgumentException("Непідтримуваний формат файлу: " + fileName);
+        }
+
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Файл не містить рядка заголовків");
+        }
+
+        List<String> placeholders = rows.get(0).stream().map(this::resolvePlaceholder).toList();
+        List<Map<String, String>> records = new ArrayList<>();
+        for (List<String> row : rows.subList(1, rows.size())) {
+            Map<String, String> record = new LinkedHashMap<>();
+            for (int column = 0; column < placeholders.size() && column < row.size(); column++) {
+                String value = row.get(column).trim();
+                if (placeholders.get(column) != null && !value.isEmpty()) {
+                    record.put(placeholders.get(column), value);
+                }
+            }
+            if (!record.isEmpty()) {
+                records.add(record);
+            }
+        }
+        return validate(records);
+    }
+
+
+    public List<Map<String, String>> normalizeRecords(List<Map<String, Object>> rawRecords) {
+        List<Map<String, String>> records = new ArrayList<>(rawRecords.size());
+        for (Map<String, Object> rawRecord : rawRecords) {
+            Map<String, String> record = new LinkedHashMap<>();
+            rawRecord.forEach((key, value) -> {
+                if (value != null) {
+                    record.put(key, String.valueOf(value));
+                }
+            });
+            records.add(record);
+        }
+        return validate(records);
+    }
+
+
+    private List<Map<String, String>> validate(List<Map<String, String>> records) {
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("Не знайдено жодного запису для генерації");
+        }
+        if (records.size() > maxRecords) {
+            throw new IllegalArgumentException("Забагато записів: " + records.size() + " (максимум " + maxRecords + ")");
+        }
+        return records;
+    }
+
+
+    private String resolvePlaceholder(String header) {
+        String name = header.replace("\uFEFF", "").trim();
+        if (name.isEmpty()) {
+            return null;
+        }
+        if (name.startsWith("{{") && name.endsWith("}}")) {
+            return name;
+        }
+
+        ConfigSnapshot snapshot = configService.getSnapshot();
+        FieldConfig field = snapshot.getFieldByPlaceholder("{{" + name + "}}");
+        if (field == null) {
+            field = snapshot.getFieldById(name);
+        }
+        if (field == null) {
+            field = snapshot.getFields().stream()
+                    .filter(f -> name.equalsIgnoreCase(f.getDisplayName()))
+                    .findFirst()
+                    .orElse(null);
+        }
+        return field != null ? field.getPlaceholder() : "{{" + name + "}}";
+    }
+
+
+    private List<List<String>> readSpreadsheet(InputStream input) throws IOException {
+        DataFormatter formatter = new DataFormatter();
+        List<List<String>> rows = new ArrayList<>();
+        try (Workbook workbook = WorkbookFactory.create(input)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            for (Row row : sheet) {
+                List<String> values = new ArrayList<>();
+                for (int column = 0; column < row.getLastCellNum(); column++) {
+                    Cell cell = row.getCell(column);
+                    values.add(cell != null ? formatter.formatCellValue(cell) : "");
+                }
+                rows.add(values);
+            }
+        }
+        return rows;
+    }
+
+
+    static List<List<String>> readCsv(String content) {
+        char delimiter = detectDelimiter(content);
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                row.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < content.length() && content.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                row.add(value.toString());
+                value.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+            } else {
+                value.append(c);
+            }
+        }
+
+        if (value.length() > 0 || !row.isEmpty()) {
+            row.add(value.toString());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+
+    private static char detectDelimiter(String content) {
+        int lineEnd = content.indexOf('\n');
+        String header = lineEnd >= 0 ? content.substring(0, lineEnd) : content;
+        char delimiter = ',';
+        long bestCount = 0;
+        for (char candidate : new char[] {';', ',', '\t'}) {
+            long count = header.chars().filter(c -> c == candidate).count();
+            if (count > bestCount) {
+                delimiter = candidate;
+                bestCount = count;
+            }
+        }
+        return delimiter;
+    }
+}
@@ -0,0 +1,300 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.IRunBody;
+import org.apache.poi.xwpf.usermodel.XWPFAbstractFootnoteEndnote;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFFooter;
+import org.apache.poi.xwpf.usermodel.XWPFHeader;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTR;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BodyWalker {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String MC = "http://schemas.openxmlformats.org/markup-compatibility/2006";
+    private static final QName TEXT_BOX_CONTENT = new QName(W, "txbxContent");
+
+    private final BodyVisitor visitor;
+    private final boolean extendedContent;
+    private boolean extendedContentFound;
+    private int ordinal;
+    private List<XWPFParagraph> partParagraphs;
+    private int nextPartParagraph;
+
+    private BodyWalker(BodyVisitor visitor, boolean extendedContent) {
+        this.visitor = visitor;
+        this.extendedContent = extendedContent;
+    }
+
+
+    static boolean walk(XWPFDocument document, BodyVisitor visitor) {
+        return walk(document, true, visitor);
+    }
+
+
+    static boolean walk(XWPFDocument document, boolean extendedContent, BodyVisitor visitor) {
+        BodyWalker walker = new BodyWalker(visitor, extendedContent);
+        walker.walkPart(document, document.getDocument().getBody());
+        for (XWPFHeader header : document.getHeaderList()) {
+            walker.walkPart(header, header._getHdrFtr());
+        }
+        for (XWPFFooter footer : document.getFooterList()) {
+            walker.walkPart(footer, footer._getHdrFtr());
+        }
+        for (XWPFAbstractFootnoteEndnote footnote : document.getFootnotes()) {
+            walker.walkPart(footnote, footnote.getCTFtnEdn());
+        }
+        for (XWPFAbstractFootnoteEndnote endnote : document.getEndnotes()) {
+            walker.walkPart(endnote, endnote.getCTFtnEdn());
+        }
+        return walker.extendedContentFound;
+    }
+
+
+    private void walkPart(IBody part, XmlObject root) {
+        visitor.enterPart(part);
+        if (!extendedContent) {
+            walkElements(part, part.getBodyElements());
+            return;
+        }
+        partParagraphs = part.getParagraphs();
+        nextPartParagraph = 0;
+        try (XmlCursor cursor = root.newCursor()) {
+            walkChildren(cursor, part);
+        }
+    }
+
+
+    private void walkElements(IBody part, List<IBodyElement> elements) {
+        for (IBodyElement element : elements) {
+            if (element instanceof XWPFParagraph paragraph) {
+                visitor.paragraph(new Block(ordinal++, paragraph.getCTP(), part, paragraph, null, null));
+            } else if (element instanceof XWPFTable table) {
+                for (XWPFTableRow row : table.getRows()) {
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        walkElements(part, cell.getBodyElements());
+                    }
+                }
+            }
+        }
+    }
+
+
+    private void walkChildren(XmlCursor cursor, IBody part) {
+        if (!cursor.toFirstChild()) {
+            return;
+        }
+        do {
+            QName name = cursor.getName();
+            if (!W.equals(name.getNamespaceURI())) {
+                continue;
+            }
+            switch (name.getLocalPart()) {
+                case "p" -> walkParagraph(cursor, part);
+                case "tbl", "tr", "tc", "sdt", "sdtContent", "customXml" -> {
+                    if (name.getLocalPart().equals("sdt") || name.getLocalPart().equals("customXml")) {
+                        extendedContentFound = true;
+                    }
+                    cursor.push();
+                    walkChildren(cursor, part);
+                    cursor.pop();
+                }
+                default -> {
+                }
+            }
+        } while (cursor.toNextSibling());
+    }
+
+
+    private void walkParagraph(XmlCursor cursor, IBody part) {
+        CTP ctp = (CTP) cursor.getObject();
+        XWPFParagraph existing = null;
+        if (nextPartParagraph < partParagraphs.size() && partParagraphs.get(nextPartParagraph).getCTP() == ctp) {
+            existing = partParagraphs.get(nextPartParagraph++);
+        }
+        Block block = new Block(ordinal++, ctp, part, existing, null, null);
+
+        List<XmlObject> textBoxes = null;
+        cursor.push();
+        if (cursor.toFirstChild()) {
+            do {
+                QName name = cursor.getName();
+                if (!W.equals(name.getNamespaceURI())) {
+                    continue;
+                }
+                if ("r".equals(name.getLocalPart())) {
+                    textBoxes = collectTextBoxes(cursor, textBoxes);
+                } else if ("sdt".equals(name.getLocalPart())) {
+                    walkInlineContentControl(cursor, block);
+                }
+            } while (cursor.toNextSibling());
+        }
+        cursor.pop();
+
+        if (textBoxes != null) {
+            extendedContentFound = true;
+            for (XmlObject textBox : textBoxes) {
+                try (XmlCursor textBoxCursor = textBox.newCursor()) {
+                    walkChildren(textBoxCursor, part);
+                }
+            }
+        }
+        visitor.paragraph(block);
+    }
+
+
+    private void walkInlineContentControl(XmlCursor cursor, Block paragraph) {
+        List<CTR> runs = new ArrayList<>();
+        cursor.push();
+        if (cursor.toChild(W, "sdtContent") && cursor.toFirstChild()) {
+            do {
+                if (cursor.getObject() instanceof CTR run) {
+                    runs.add(run);
+                }
+            } while (cursor.toNextSibling());
+        }
+        cursor.pop();
+
+        if (!runs.isEmpty()) {
+            extendedContentFound = true;
+            visitor.contentControl(new Block(ordinal++, paragraph.ctp, paragraph.part, null, paragraph, runs));
+        }
+    }
+
+
+    private static List<XmlObject> collectTextBoxes(XmlCursor cursor, List<XmlObject> textBoxes) {
+        cursor.push();
+        if (cursor.toFirstChild()) {
+            do {
+                QName name = cursor.getName();
+                boolean drawing = W.equals(name.getNamespaceURI())
+                    ? switch (name.getLocalPart()) {
+                        case "drawing", "pict", "object" -> true;
+                        default -> false;
+                    }
+                    : MC.equals(name.getNamespaceURI());
+                if (drawing) {
+                    if (textBoxes == null) {
+                        textBoxes = new ArrayList<>();
+                    }
+                    cursor.push();
+                    findTextBoxContent(cursor, textBoxes);
+                    cursor.pop();
+                }
+            } while (cursor.toNextSibling());
+        }
+        cursor.pop();
+        return textBoxes;
+    }
+
+
+    private static void findTextBoxContent(XmlCursor cursor, List<XmlObject> textBoxes) {
+        if (!cursor.toFirstChild()) {
+            return;
+        }
+        do {
+            if (TEXT_BOX_CONTENT.equals(cursor.getName())) {
+                textBoxes.add(cursor.getObject());
+            } else {
+                cursor.push();
+                findTextBoxContent(cursor, textBoxes);
+                cursor.pop();
+            }
+        } while (cursor.toNextSibling());
+    }
+
+
+    interface BodyVisitor {
+
+        default void enterPart(IBody part) {
+        }
+
+        void paragraph(Block paragraph);
+
+        default void contentControl(Block contentControl) {
+        }
+    }
+
+
+    static final class Block {
+
+        private final int ordinal;
+        private final CTP ctp;
+        private final IBody part;
+        private final Block enclosingParagraph;
+        private final List<CTR> contentRuns;
+        private XWPFParagraph paragraph;
+        private List<XWPFRun> runs;
+
+        private Block(int ordinal, CTP ctp, IBody part, XWPFParagraph paragraph, Block enclosingParagraph,
+                      List<CTR> contentRuns) {
+            this.ordinal = ordinal;
+            this.ctp = ctp;
+            this.part = part;
+            this.paragraph = paragraph;
+            this.enclosingParagraph = enclosingParagraph;
+            this.contentRuns = contentRuns;
+        }
+
+
+        int ordinal() {
+            return ordinal;
+        }
+
+
+        boolean isContentControl() {
+            return enclosingParagraph != null;
+        }
+
+
+        XWPFParagraph paragraph() {
+            if (enclosingParagraph != null) {
+                return enclosingParagraph.paragraph();
+            }
+            if (paragraph == null) {
+                paragraph = new XWPFParagraph(ctp, part);
+            }
+            return paragraph;
+        }
+
+
+        List<XWPFRun> runs() {
+            if (contentRuns == null) {
+                return paragraph().getRuns();
+            }
+            if (runs == null) {
+                IRunBody parent = paragraph();
+                runs = new ArrayList<>(contentRuns.size());
+                for (CTR run : contentRuns) {
+                    runs.add(new XWPFRun(run, parent));
+                }
+            }
+            return runs;
+        }
+
+
+        String text() {
+            StringBuilder text = new StringBuilder();
+            for (XWPFRun run : runs()) {
+                String runText = run.getText(0);
+                if (runText != null) {
+                    text.append(runText);
+                }
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import java.util.List;
+
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "op")
+@JsonSubTypes({
+    @JsonSubTypes.Type(value = ConfigMutation.AddField.class, name = "addField"),
+    @JsonSubTypes.Type(value = ConfigMutation.UpdateField.class, name = "updateField"),
+    @JsonSubTypes.Type(value = ConfigMutation.DeleteField.class, name = "deleteField"),
+    @JsonSubTypes.Type(value = ConfigMutation.AddTemplate.class, name = "addTemplate"),
+    @JsonSubTypes.Type(value = ConfigMutation.UpdateTemplate.class, name = "updateTemplate"),
+    @JsonSubTypes.Type(value = ConfigMutation.DeleteTemplate.class, name = "deleteTemplate"),
+    @JsonSubTypes.Type(value = ConfigMutation.ReplaceConfig.class, name = "replace")
+})
+public sealed interface ConfigMutation {
+
+    void apply(List<FieldConfig> fields, List<TemplateConfig> templates);
+
+
+    record AddField(FieldConfig field) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            fields.add(field);
+        }
+    }
+
+
+    record UpdateField(String fieldId, FieldConfig field) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            fields.removeIf(f -> f.getId().equals(fieldId));
+            fields.add(field);
+        }
+    }
+
+
+    record DeleteField(String fieldId) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            fields.removeIf(f -> f.getId().equals(fieldId));
+        }
+    }
+
+
+    record AddTemplate(TemplateConfig template) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            templates.add(template);
+        }
+    }
+
+
+    record UpdateTemplate(String templateId, TemplateConfig template) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            templates.removeIf(t -> t.getId().equals(templateId));
+            templates.add(template);
+        }
+    }
+
+
+    record DeleteTemplate(String templateId) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> fields, List<TemplateConfig> templates) {
+            templates.removeIf(t -> t.getId().equals(templateId));
+        }
+    }
+
+
+    record ReplaceConfig(List<FieldConfig> fields, List<TemplateConfig> templates) implements ConfigMutation {
+        @Override
+        public void apply(List<FieldConfig> currentFields, List<TemplateConfig> currentTemplates) {
+            currentFields.clear();
+            if (fields != null) {
+                currentFields.addAll(fields);
+            }
+            currentTemplates.clear();
+            if (templates != null) {
+                currentTemplates.addAll(templates);
+            }
+        }
+    }
+}
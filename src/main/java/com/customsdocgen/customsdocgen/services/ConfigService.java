@@ -3,32 +3,26 @@ package com.customsdocgen.customsdocgen.services;
 import com.customsdocgen.customsdocgen.models.AppConfig;
 import com.customsdocgen.customsdocgen.models.FieldConfig;
 import com.customsdocgen.customsdocgen.models.TemplateConfig;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class ConfigService {
 
-    private static final String CONFIG_FILE = "config.json";
     private static final Logger log = LoggerFactory.getLogger(ConfigService.class);
-    private final ObjectMapper objectMapper;
+    private final ConfigStore configStore;
     private final FileStorageService fileStorageService;
-    private AppConfig appConfig;
+    private volatile ConfigSnapshot snapshot = ConfigSnapshot.of(0, List.of(), List.of());
 
-    public ConfigService(FileStorageService fileStorageService) {
+    public ConfigService(ConfigStore configStore, FileStorageService fileStorageService) {
+        this.configStore = configStore;
         this.fileStorageService = fileStorageService;
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-
-        this.objectMapper.configure(com.fasterxml.jackson.core.JsonGenerator.Feature.ESCAPE_NON_ASCII, false);
     }
 
     @PostConstruct
@@ -38,35 +32,18 @@ public class ConfigService {
 
 
     private void loadConfig() {
-        File configFile = new File(CONFIG_FILE);
-        
-        if (configFile.exists()) {
-            try (java.io.FileInputStream fis = new java.io.FileInputStream(configFile);
-                 java.io.InputStreamReader reader = new java.io.InputStreamReader(fis, java.nio.charset.StandardCharsets.UTF_8)) {
-                appConfig = objectMapper.readValue(reader, AppConfig.class);
-                if (appConfig == null) {
-                    appConfig = new AppConfig();
-                }
-                if (appConfig.getFields() == null) {
-                    appConfig.setFields(new ArrayList<>());
-                }
-                if (appConfig.getTemplates() == null) {
-                    appConfig.setTemplates(new ArrayList<>());
-                }
-                log.info("Config loaded: {} (fields: {}, templates: {})", CONFIG_FILE,
-                        Integer.valueOf(appConfig.getFields().size()), 
-                        Integer.valueOf(appConfig.getTemplates().size()));
-            } catch (IOException e) {
-                log.warn("Failed to read config.json, running without configuration: {}", e.getMessage());
-                appConfig = new AppConfig();
-                appConfig.setFields(new ArrayList<>());
-                appConfig.setTemplates(new ArrayList<>());
+        try {
+            AppConfig loaded = configStore.load();
+            if (loaded != null) {
+                snapshot = ConfigSnapshot.of(1, loaded.getFields(), loaded.getTemplates());
+                log.info("Config loaded: {} (fields: {}, templates: {})", configStore.describe(),
+                        Integer.valueOf(snapshot.getFields().size()), 
+                        Integer.valueOf(snapshot.getTemplates().size()));
+            } else {
+                log.warn("Config not found: {}. Running without configuration.", configStore.describe());
             }
-        } else {
-            log.warn("Config not found: {}. Running without configuration.", CONFIG_FILE);
-            appConfig = new AppConfig();
-            appConfig.setFields(new ArrayList<>());
-            appConfig.setTemplates(new ArrayList<>());
+        } catch (IOException e) {
+            log.warn("Failed to read config from {}, running without configuration: {}", configStore.describe(), e.getMessage());
         }
 
         try {
@@ -82,74 +59,68 @@ public class ConfigService {
     }
 
 
-    public void saveConfig() {
-        try (java.io.FileOutputStream fos = new java.io.FileOutputStream(CONFIG_FILE);
-             java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(fos, java.nio.charset.StandardCharsets.UTF_8)) {
-            objectMapper.writeValue(writer, appConfig);
-        } catch (IOException e) {
+    private synchronized void publish(ConfigMutation mutation) {
+        ConfigSnapshot current = snapshot;
+        List<FieldConfig> fields = new ArrayList<>(current.getFields());
+        List<TemplateConfig> templates = new ArrayList<>(current.getTemplates());
+        mutation.apply(fields, templates);
 
+        ConfigSnapshot next = ConfigSnapshot.of(current.getVersion() + 1, fields, templates);
+        next.formulaGraph().requireAcyclic();
+        try {
+            configStore.save(mutation, next.getConfig());
+        } catch (IOException e) {
+            log.warn("Failed to save config to {}: {}", configStore.describe(), e.getMessage());
+            throw new IllegalStateException("Не вдалося зберегти конфігурацію: " + e.getMessage(), e);
         }
+        snapshot = next;
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
 
     public AppConfig getConfig() {
-        return appConfig;
+        return snapshot.getConfig();
+    }
+
+    public long getVersion() {
+        return snapshot.getVersion();
     }
 
     public void updateConfig(AppConfig newConfig) {
-        this.appConfig = newConfig;
-        saveConfig();
+        publish(new ConfigMutation.ReplaceConfig(newConfig.getFields(), newConfig.getTemplates()));
     }
 
     public void addField(FieldConfig field) {
-        if (appConfig.getFields() == null) {
-            appConfig.setFields(new ArrayList<>());
-        }
-        appConfig.getFields().add(field);
-        saveConfig();
+        publish(new ConfigMutation.AddField(field));
     }
 
     public void updateField(String fieldId, FieldConfig updatedField) {
-        appConfig.getFields().removeIf(f -> f.getId().equals(fieldId));
-        appConfig.getFields().add(updatedField);
-        saveConfig();
+        publish(new ConfigMutation.UpdateField(fieldId, updatedField));
     }
 
     public void deleteField(String fieldId) {
-        appConfig.getFields().removeIf(f -> f.getId().equals(fieldId));
-        saveConfig();
+        publish(new ConfigMutation.DeleteField(fieldId));
     }
 
     public void addTemplate(TemplateConfig template) {
-        if (appConfig.getTemplates() == null) {
-            appConfig.setTemplates(new ArrayList<>());
-        }
-        appConfig.getTemplates().add(template);
-        saveConfig();
+        publish(new ConfigMutation.AddTemplate(template));
     }
 
     public void updateTemplate(String templateId, TemplateConfig updatedTemplate) {
-        appConfig.getTemplates().removeIf(t -> t.getId().equals(templateId));
-        appConfig.getTemplates().add(updatedTemplate);
-        saveConfig();
+        publish(new ConfigMutation.UpdateTemplate(templateId, updatedTemplate));
     }
 
     public void deleteTemplate(String templateId) {
-        appConfig.getTemplates().removeIf(t -> t.getId().equals(templateId));
-        saveConfig();
+        publish(new ConfigMutation.DeleteTemplate(templateId));
     }
 
     public TemplateConfig getTemplateById(String templateId) {
-        return appConfig.getTemplates().stream()
-                .filter(t -> t.getId().equals(templateId))
-                .findFirst()
-                .orElse(null);
+        return snapshot.getTemplateById(templateId);
     }
 
     public FieldConfig getFieldById(String fieldId) {
-        return appConfig.getFields().stream()
-                .filter(f -> f.getId().equals(fieldId))
-                .findFirst()
-                .orElse(null);
+        return snapshot.getFieldById(fieldId);
     }
 }
-
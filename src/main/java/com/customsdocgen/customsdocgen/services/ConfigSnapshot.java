@@ -0,0 +1,170 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.AppConfig;
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class ConfigSnapshot {
+
+    private final long version;
+    private final AppConfig config;
+    private final Map<String, FieldConfig> fieldsById;
+    private final Map<String, FieldConfig> fieldsByPlaceholder;
+    private final Map<String, TemplateConfig> templatesById;
+    private final Map<String, List<String>> requiredPlaceholdersByTemplate;
+    private final Map<String, String> rememberedFieldIdsByPlaceholder;
+    private final FormulaGraph formulaGraph;
+    private final TemplateAvailability availability;
+
+    private ConfigSnapshot(long version, AppConfig config) {
+        this.version = version;
+        this.config = config;
+
+        Map<String, FieldConfig> byId = new HashMap<>();
+        Map<String, FieldConfig> byPlaceholder = new HashMap<>();
+        Map<String, String> remembered = new HashMap<>();
+        for (FieldConfig field : config.getFields()) {
+            byId.putIfAbsent(field.getId(), field);
+            byPlaceholder.putIfAbsent(field.getPlaceholder(), field);
+            if (field.isRememberValues()) {
+                remembered.put(field.getPlaceholder(), field.getId());
+            }
+        }
+
+        Map<String, TemplateConfig> templates = new HashMap<>();
+        Map<String, List<String>> requiredPlaceholders = new HashMap<>();
+        for (TemplateConfig template : config.getTemplates()) {
+            templates.putIfAbsent(template.getId(), template);
+            List<String> placeholders = new ArrayList<>();
+            if (template.getRequiredFieldIds() != null) {
+                for (String fieldId : template.getRequiredFieldIds()) {
+                    FieldConfig field = byId.get(fieldId);
+                    if (field != null) {
+                        placeholders.add(field.getPlaceholder());
+                    }
+                }
+            }
+            requiredPlaceholders.putIfAbsent(template.getId(), List.copyOf(placeholders));
+        }
+
+        this.fieldsById = Collections.unmodifiableMap(byId);
+        this.fieldsByPlaceholder = Collections.unmodifiableMap(byPlaceholder);
+        this.templatesById = Collections.unmodifiableMap(templates);
+        this.requiredPlaceholdersByTemplate = Collections.unmodifiableMap(requiredPlaceholders);
+        this.rememberedFieldIdsByPlaceholder = Collections.unmodifiableMap(remembered);
+        this.formulaGraph = FormulaGraph.build(config.getFields());
+        this.availability = new TemplateAvailability(config.getTemplates(), requiredPlaceholders);
+    }
+
+
+    static ConfigSnapshot of(long version, List<FieldConfig> fields, List<TemplateConfig> templates) {
+        List<FieldConfig> fieldCopies = new ArrayList<>();
+        if (fields != null) {
+            fields.forEach(field -> fieldCopies.add(copy(field)));
+        }
+        List<TemplateConfig> templateCopies = new ArrayList<>();
+        if (templates != null) {
+            templates.forEach(template -> templateCopies.add(copy(template)));
+        }
+        AppConfig config = new AppConfig(Collections.unmodifiableList(fieldCopies),
+            Collections.unmodifiableList(templateCopies));
+        return new ConfigSnapshot(version, config);
+    }
+
+
+    private static FieldConfig copy(FieldConfig field) {
+        List<FieldConfig> columns = null;
+        if (field.getColumns() != null) {
+            columns = new ArrayList<>(field.getColumns().size());
+            for (FieldConfig column : field.getColumns()) {
+                columns.add(copy(column));
+            }
+        }
+        return new FieldConfig(field.getId(), field.getPlaceholder(), field.getDisplayName(), field.getFieldType(),
+            field.isRequired(), field.getOrder(), field.getFormula(), field.isCalculated(), field.isRememberValues(),
+            field.getDecimalPlaces(), columns);
+    }
+
+
+    private static TemplateConfig copy(TemplateConfig template) {
+        return new TemplateConfig(template.getId(), template.getFileName(), template.getDisplayName(),
+            template.getDownloadPattern(),
+            template.getRequiredFieldIds() != null ? new ArrayList<>(template.getRequiredFieldIds()) : null,
+            template.getCacheResults(), template.getRenderEngine(), template.getEvaluateFormulas());
+    }
+
+
+    public long getVersion() {
+        return version;
+    }
+
+
+    public AppConfig getConfig() {
+        List<FieldConfig> fields = new ArrayList<>(config.getFields().size());
+        config.getFields().forEach(field -> fields.add(copy(field)));
+        List<TemplateConfig> templates = new ArrayList<>(config.getTemplates().size());
+        config.getTemplates().forEach(template -> templates.add(copy(template)));
+        return new AppConfig(fields, templates);
+    }
+
+
+    List<FieldConfig> getFields() {
+        return config.getFields();
+    }
+
+
+    List<TemplateConfig> getTemplates() {
+        return config.getTemplates();
+    }
+
+
+    public FieldConfig getFieldById(String fieldId) {
+        FieldConfig field = fieldId != null ? fieldsById.get(fieldId) : null;
+        return field != null ? copy(field) : null;
+    }
+
+
+    public FieldConfig getFieldByPlaceholder(String placeholder) {
+        FieldConfig field = placeholder != null ? fieldsByPlaceholder.get(placeholder) : null;
+        return field != null ? copy(field) : null;
+    }
+
+
+    public TemplateConfig getTemplateById(String templateId) {
+        TemplateConfig template = templateId != null ? templatesById.get(templateId) : null;
+        return template != null ? copy(template) : null;
+    }
+
+
+    public List<String> getRequiredPlaceholders(String templateId) {
+        return requiredPlaceholdersByTemplate.getOrDefault(templateId, List.of());
+    }
+
+
+    public List<String> getAvailableTemplateIds(Map<String, String> formData) {
+        return availability.availableTemplateIds(formData);
+    }
+
+
+    public String availabilityTag(List<String> availableTemplateIds) {
+        List<String> sorted = new ArrayList<>(availableTemplateIds);
+        Collections.sort(sorted);
+        return "\"" + version + "-" + ContentHash.valuesDigest(sorted, Map.of()) + "\"";
+    }
+
+
+    public Map<String, String> getRememberedFieldIdsByPlaceholder() {
+        return rememberedFieldIdsByPlaceholder;
+    }
+
+
+    FormulaGraph formulaGraph() {
+        return formulaGraph;
+    }
+}
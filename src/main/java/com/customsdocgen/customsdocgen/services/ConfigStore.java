@@ -0,0 +1,14 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.AppConfig;
+
+import java.io.IOException;
+
+public interface ConfigStore {
+
+    AppConfig load() throws IOException;
+
+    void save(ConfigMutation mutation, AppConfig config) throws IOException;
+
+    String describe();
+}
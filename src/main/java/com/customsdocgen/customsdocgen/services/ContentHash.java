@@ -0,0 +1,69 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+final class ContentHash {
+
+    private ContentHash() {
+    }
+
+
+    static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(newDigest().digest(content));
+    }
+
+
+    static String valuesDigest(Iterable<String> keys, java.util.Map<String, String> values) {
+        MessageDigest digest = newDigest();
+        for (String key : keys) {
+            String value = values.get(key);
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+
+    static String packageDigest(byte[] packageBytes) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(packageBytes))) {
+            ZipEntry entry;
+            boolean anyEntry = false;
+            while ((entry = zip.getNextEntry()) != null) {
+                anyEntry = true;
+                digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                int read;
+                while ((read = zip.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                }
+                digest.update((byte) 0);
+            }
+            if (!anyEntry) {
+                return sha256(packageBytes);
+            }
+        } catch (IOException e) {
+            return sha256(packageBytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,15 +3,31 @@ package com.customsdocgen.customsdocgen.services;
 import com.customsdocgen.customsdocgen.models.DocumentData;
 import com.customsdocgen.customsdocgen.models.FieldConfig;
 import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import com.customsdocgen.customsdocgen.services.TemplateCacheService.CachedTemplate;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -20,17 +36,52 @@ import org.springframework.beans.factory.annotation.Autowired;
 @Service
 public class DocumentGenerationService {
 
+    private static final Logger log = LoggerFactory.getLogger(DocumentGenerationService.class);
+    private static final String MANIFEST_NAME = "manifest.json";
+    private static final String STREAMING_ENGINE = "streaming";
+    private static final com.fasterxml.jackson.databind.ObjectWriter MANIFEST_WRITER =
+        new com.fasterxml.jackson.databind.ObjectMapper().writerWithDefaultPrettyPrinter();
+
     private final ConfigService configService;
     private final FormulaCalculationService formulaCalculationService;
     private final PdfConversionService pdfConversionService;
+    private final TemplateCacheService templateCacheService;
+    private final GenerationJournal generationJournal;
+    private final ExecutorService archiveExecutor;
+    private final int archiveParallelism;
+    private final int archiveCompressionLevel;
+    private final java.util.Set<String> storedExtensions;
+    private final boolean renderCacheEnabled;
+    private final LruByteCache<String, byte[]> renderCache;
+    private final java.util.concurrent.atomic.AtomicLong renderCacheConfigVersion = new java.util.concurrent.atomic.AtomicLong(-1);
     
     @Autowired
     public DocumentGenerationService(ConfigService configService, 
                                       FormulaCalculationService formulaCalculationService,
-                                      @Autowired(required = false) PdfConversionService pdfConversionService) {
+                                      @Autowired(required = false) PdfConversionService pdfConversionService,
+                                      TemplateCacheService templateCacheService,
+                                      GenerationJournal generationJournal,
+                                      @Value("${generation.archive.parallelism:0}") int archiveParallelism,
+                                      @Value("${generation.archive.compression-level:6}") int archiveCompressionLevel,
+                                      @Value("${generation.archive.stored-extensions:}") List<String> storedExtensions,
+                                      @Value("${render.cache.enabled:true}") boolean renderCacheEnabled,
+                                      @Value("${render.cache.max-bytes:67108864}") long renderCacheMaxBytes) {
         this.configService = configService;
         this.formulaCalculationService = formulaCalculationService;
         this.pdfConversionService = pdfConversionService;
+        this.templateCacheService = templateCacheService;
+        this.generationJournal = generationJournal;
+
+        this.archiveParallelism = archiveParallelism > 0 ? archiveParallelism : Runtime.getRuntime().availableProcessors();
+        this.archiveExecutor = Executors.newFixedThreadPool(this.archiveParallelism,
+            Thread.ofVirtual().name("archive-", 0).factory());
+        this.archiveCompressionLevel = archiveCompressionLevel;
+        this.storedExtensions = storedExtensions.stream()
+            .map(extension -> extension.trim().toLowerCase(java.util.Locale.ROOT))
+            .filter(extension -> !extension.isEmpty())
+            .collect(java.util.stream.Collectors.toUnmodifiableSet());
+        this.renderCacheEnabled = renderCacheEnabled;
+        this.renderCache = new LruByteCache<>(renderCacheMaxBytes, 0, content -> content.length);
     }
 
     public byte[] generateDocument(String templateId, Map<String, String> fieldValues) throws Exception {
@@ -43,39 +94,123 @@ public class DocumentGenerationService {
             throw new Exception("Шаблон не знайдено: " + templateId);
         }
 
+        long started = System.nanoTime();
+        RenderedDocument rendered = renderDocument(template, resolveFieldValues(fieldValues));
+        byte[] documentBytes = convertToPdf ? convertToPdf(template, rendered.content()) : rendered.content();
+
+        String fileName = generateFileName(template.getDownloadPattern(), fieldValues);
+        if (convertToPdf) {
+            fileName = fileName.replaceAll("\\.(docx|xlsx)$", ".pdf");
+        }
+        generationJournal.record(template, rendered.templateHash(), rendered.cellTypes(), fileName, rendered.values(),
+            convertToPdf,
+            documentBytes.length, System.nanoTime() - started);
+        
+        return documentBytes;
+    }
+
+
+    private Map<String, String> resolveFieldValues(Map<String, String> fieldValues) {
         Map<String, String> calculatedValues = formulaCalculationService.calculateAllFormulas(
-            configService.getConfig().getFields(), fieldValues);
+            configService.getSnapshot().getFields(), fieldValues);
 
         Map<String, String> allFieldValues = new java.util.HashMap<>(fieldValues);
         allFieldValues.putAll(calculatedValues);
+        return allFieldValues;
+    }
 
+
+    private RenderedDocument renderDocument(TemplateConfig template, Map<String, String> resolvedValues) throws Exception {
+        Map<String, String> allFieldValues = new java.util.HashMap<>(resolvedValues);
         addEmptyValuesForOptionalFields(template, allFieldValues);
         
-        String templatePath = "templates/" + template.getFileName();
+        CachedTemplate cachedTemplate = templateCacheService.getTemplate(template.getFileName());
+        return render(template, cachedTemplate, allFieldValues, cellTypes(cachedTemplate));
+    }
+
+
+    private TypedCellValues cellTypes(CachedTemplate cachedTemplate) {
+        if (!cachedTemplate.fileName().endsWith(".xlsx")) {
+            return TypedCellValues.NONE;
+        }
+        return TypedCellValues.of(configService.getSnapshot().getFields())
+            .restrictTo(cachedTemplate.analysis().placeholders());
+    }
+
+
+    private RenderedDocument render(TemplateConfig template, CachedTemplate cachedTemplate,
+                                    Map<String, String> allFieldValues, TypedCellValues types) throws Exception {
+        Map<String, RepeatingSections.Section> sections =
+            RepeatingSections.find(cachedTemplate.analysis().placeholders(), allFieldValues);
+        String cacheKey = renderCacheKey(template, cachedTemplate, allFieldValues, sections, types);
+        if (cacheKey != null) {
+            byte[] cached = renderCache.get(cacheKey);
+            if (cached != null) {
+                return new RenderedDocument(cached, cachedTemplate.contentHash(), allFieldValues, types.asMap());
+            }
+        }
 
         byte[] documentBytes;
-        if (template.getFileName().endsWith(".xlsx")) {
-            documentBytes = generateExcelFromTemplate(templatePath, allFieldValues);
+        boolean streaming = STREAMING_ENGINE.equals(template.getRenderEngine()) && sections.isEmpty();
+        if (cachedTemplate.fileName().endsWith(".xlsx")) {
+            boolean evaluateFormulas = Boolean.TRUE.equals(template.getEvaluateFormulas());
+            documentBytes = streaming && !evaluateFormulas && types.isEmpty()
+                ? generateExcelStreaming(cachedTemplate, allFieldValues)
+                : generateExcelFromTemplate(cachedTemplate, allFieldValues, sections, types, evaluateFormulas);
         } else {
-            documentBytes = generateWordFromTemplate(templatePath, allFieldValues);
+            documentBytes = streaming
+                ? generateWordStreaming(cachedTemplate, allFieldValues)
+                : generateWordFromTemplate(cachedTemplate, allFieldValues, sections);
         }
 
-        if (convertToPdf) {
-            if (pdfConversionService == null) {
-                throw new Exception("PDF конвертація недоступна. Встановіть LibreOffice та налаштуйте jodconverter.local.enabled=true");
-            }
-            try {
-                return pdfConversionService.convertToPdf(documentBytes, template.getFileName());
-            } catch (Exception e) {
-                throw new Exception("Помилка конвертації в PDF: " + e.getMessage(), e);
-            }
+        if (cacheKey != null) {
+            renderCache.put(cacheKey, documentBytes);
+        }
+        return new RenderedDocument(documentBytes, cachedTemplate.contentHash(), allFieldValues, types.asMap());
+    }
+
+
+    private String renderCacheKey(TemplateConfig template, CachedTemplate cachedTemplate,
+                                  Map<String, String> allFieldValues, Map<String, RepeatingSections.Section> sections,
+                                  TypedCellValues types) {
+        if (!renderCacheEnabled || Boolean.FALSE.equals(template.getCacheResults())) {
+            return null;
+        }
+
+        long configVersion = configService.getVersion();
+        if (renderCacheConfigVersion.getAndSet(configVersion) != configVersion) {
+            renderCache.clear();
+        }
+
+        java.util.Set<String> placeholders = cachedTemplate.analysis().placeholders();
+        return template.getId() + ":" + configVersion + ":" + cachedTemplate.contentHash() + ":"
+            + template.getRenderEngine() + ":" + template.getEvaluateFormulas() + ":" + types.asMap() + ":"
+            + ContentHash.valuesDigest(sections.isEmpty() ? placeholders
+                : RepeatingSections.digestKeys(placeholders, sections), allFieldValues);
+    }
+
+
+    public Map<String, Object> getRenderCacheStats() {
+        Map<String, Object> stats = new java.util.LinkedHashMap<>();
+        stats.put("enabled", Boolean.valueOf(renderCacheEnabled));
+        stats.putAll(renderCache.getStats());
+        return stats;
+    }
+
+
+    private byte[] convertToPdf(TemplateConfig template, byte[] documentBytes) throws Exception {
+        if (pdfConversionService == null) {
+            throw new Exception("PDF конвертація недоступна. Встановіть LibreOffice та налаштуйте jodconverter.local.enabled=true");
+        }
+        try {
+            return pdfConversionService.convertToPdf(documentBytes, template.getFileName());
+        } catch (Exception e) {
+            throw new Exception("Помилка конвертації в PDF: " + e.getMessage(), e);
         }
-        
-        return documentBytes;
     }
 
     private void addEmptyValuesForOptionalFields(TemplateConfig template, Map<String, String> fieldValues) {
-        List<FieldConfig> allFields = configService.getConfig().getFields();
+        List<FieldConfig> allFields = configService.getSnapshot().getFields();
         if (allFields == null) {
             return;
         }
@@ -115,468 +250,494 @@ public class DocumentGenerationService {
             Map.entry("{{UNLOADING_COUNTRY}}", getOrEmpty(data.getUnloadingCountry()))
         );
         
-        return generateWordFromTemplate("templates/invoice_template.docx", fieldValues);
+        return generateWordFromTemplate(templateCacheService.getTemplate("invoice_template.docx"), fieldValues, Map.of());
     }
 
 
-    private byte[] generateWordFromTemplate(String templatePath, Map<String, String> fieldValues) throws Exception {
-        java.io.File templateFile = new java.io.File(templatePath);
-        
-        try (InputStream templateStream = new java.io.FileInputStream(templateFile);
+    private byte[] generateWordFromTemplate(CachedTemplate template, Map<String, String> fieldValues,
+                                            Map<String, RepeatingSections.Section> sections) throws Exception {
+        if (!template.analysis().hasPlaceholders()) {
+            return template.content().clone();
+        }
+
+        try (InputStream templateStream = new ByteArrayInputStream(template.content());
              XWPFDocument document = new XWPFDocument(templateStream);
              ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                replacePlaceholders(paragraph, fieldValues);
-            }
+            TemplateAnalysis analysis = template.analysis();
+            Map<String, String> values = sections.isEmpty()
+                ? fieldValues
+                : RepeatingSections.keepRowPlaceholders(fieldValues, sections);
+            BodyWalker.walk(document, analysis.extendedContent(), new BodyWalker.BodyVisitor() {
+                @Override
+                public void paragraph(BodyWalker.Block paragraph) {
+                    if (analysis.containsParagraph(paragraph.ordinal())) {
+                        WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), values);
+                    }
+                }
 
-            for (XWPFTable table : document.getTables()) {
-                for (XWPFTableRow row : table.getRows()) {
-                    for (XWPFTableCell cell : row.getTableCells()) {
-                        for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                            replacePlaceholders(paragraph, fieldValues);
-                        }
+                @Override
+                public void contentControl(BodyWalker.Block contentControl) {
+                    if (analysis.containsParagraph(contentControl.ordinal())) {
+                        WordPlaceholderReplacer.replaceAcrossRuns(contentControl.runs(), values);
                     }
                 }
+            });
+            if (!sections.isEmpty()) {
+                RepeatingSections.expandTables(document, sections);
             }
             
             document.write(out);
-            return out.toByteArray();
+            return ZipTimestamps.normalize(out.toByteArray());
         }
     }
 
 
-    private void replacePlaceholders(XWPFParagraph paragraph, Map<String, String> fieldValues) {
-        List<XWPFRun> runs = paragraph.getRuns();
-        if (runs == null || runs.isEmpty()) {
-            return;
+    private byte[] generateWordStreaming(CachedTemplate template, Map<String, String> fieldValues) throws Exception {
+        if (!template.analysis().hasPlaceholders()) {
+            return template.content().clone();
         }
 
-        StringBuilder fullText = new StringBuilder();
-        java.util.List<RunStyleInfo> styleInfoList = new java.util.ArrayList<>();
-        
-        int currentPos = 0;
-        for (XWPFRun run : runs) {
-            String runText = run.getText(0);
-            if (runText != null && !runText.isEmpty()) {
-
-                VerticalAlign vertAlign = getVerticalAlign(run);
-
-                RunStyleInfo styleInfo = new RunStyleInfo(
-                    currentPos,
-                    currentPos + runText.length(),
-                    run.getFontFamily(),
-                    run.getFontSizeAsDouble(),
-                    run.isBold(),
-                    run.isItalic(),
-                    run.getColor(),
-                    run.getUnderline(),
-                    vertAlign
-                );
-                styleInfoList.add(styleInfo);
-                
-                fullText.append(runText);
-                currentPos += runText.length();
-            }
+        try {
+            return ZipTimestamps.normalize(StreamingDocxRenderer.render(template.content(), fieldValues));
+        } catch (javax.xml.stream.XMLStreamException | java.io.IOException e) {
+            log.warn("Streaming render of {} failed, falling back to POI: {}", template.fileName(), e.getMessage());
+            return generateWordFromTemplate(template, fieldValues, Map.of());
         }
-        
-        String text = fullText.toString();
-        boolean hasPlaceholder = false;
+    }
 
-        java.util.regex.Pattern placeholderPattern = java.util.regex.Pattern.compile("\\{\\{([^}]+)\\}\\}");
-        java.util.regex.Matcher matcher = placeholderPattern.matcher(text);
-        java.util.Set<String> allPlaceholders = new java.util.HashSet<>();
-        while (matcher.find()) {
-            allPlaceholders.add(matcher.group(0));
-            hasPlaceholder = true;
+
+    private byte[] generateExcelFromTemplate(CachedTemplate template, Map<String, String> fieldValues,
+                                             Map<String, RepeatingSections.Section> sections, TypedCellValues types,
+                                             boolean evaluateFormulas) throws Exception {
+        if (!template.analysis().hasPlaceholders()) {
+            return template.content().clone();
         }
 
-        if (hasPlaceholder) {
+        try (InputStream templateStream = new ByteArrayInputStream(template.content());
+             XSSFWorkbook workbook = new XSSFWorkbook(templateStream);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 
-            for (String placeholder : allPlaceholders) {
-                String value = fieldValues.getOrDefault(placeholder, "");
-                text = text.replace(placeholder, value);
+            Map<String, String> values = sections.isEmpty()
+                ? fieldValues
+                : RepeatingSections.keepRowPlaceholders(fieldValues, sections);
+            FormulaRecalculator recalculator = new FormulaRecalculator(workbook, evaluateFormulas);
+            for (CellLocation location : template.analysis().cells()) {
+                Row row = workbook.getSheetAt(location.sheetIndex()).getRow(location.rowIndex());
+                Cell cell = row != null ? row.getCell(location.columnIndex()) : null;
+                if (cell != null) {
+                    replacePlaceholdersInCell(cell, location.placeholders(), values, types);
+                    recalculator.changed(cell);
+                }
             }
-
-            for (int i = runs.size() - 1; i >= 0; i--) {
-                paragraph.removeRun(i);
+            if (!sections.isEmpty()) {
+                RepeatingSections.expandRows(workbook, template.analysis().cells(), sections, types, recalculator);
             }
+            int evaluated = recalculator.recalculate();
+            if (evaluated > 0) {
+                log.debug("Evaluated {} dependent formulas in {}", Integer.valueOf(evaluated), template.fileName());
+            }
+            
+            workbook.write(out);
+            return ZipTimestamps.normalize(out.toByteArray());
+        }
+    }
 
-            createRunsWithStyles(paragraph, text, styleInfoList, fullText.toString(), fieldValues);
-        } else {
-
-            for (XWPFRun run : runs) {
-                String runText = run.getText(0);
-                if (runText != null) {
 
-                    for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
-                        runText = runText.replace(entry.getKey(), entry.getValue());
-                    }
+    private byte[] generateExcelStreaming(CachedTemplate template, Map<String, String> fieldValues) throws Exception {
+        if (!template.analysis().hasPlaceholders()) {
+            return template.content().clone();
+        }
 
-                    java.util.regex.Pattern remainingPattern = java.util.regex.Pattern.compile("\\{\\{([^}]+)\\}\\}");
-                    java.util.regex.Matcher remainingMatcher = remainingPattern.matcher(runText);
-                    while (remainingMatcher.find()) {
-                        String placeholder = remainingMatcher.group(0);
-                        if (!fieldValues.containsKey(placeholder)) {
-                            runText = runText.replace(placeholder, "");
-                        }
-                    }
-                    run.setText(runText, 0);
-                }
-            }
+        try {
+            return ZipTimestamps.normalize(StreamingXlsxRenderer.render(template.content(), fieldValues));
+        } catch (javax.xml.stream.XMLStreamException | java.io.IOException e) {
+            log.warn("Streaming render of {} failed, falling back to POI: {}", template.fileName(), e.getMessage());
+            return generateExcelFromTemplate(template, fieldValues, Map.of(), TypedCellValues.NONE, false);
         }
     }
-    
 
-    private void createRunsWithStyles(XWPFParagraph paragraph, String newText, 
-                                      java.util.List<RunStyleInfo> styleInfoList,
-                                      String originalText, Map<String, String> fieldValues) {
-        if (styleInfoList.isEmpty()) {
 
-            paragraph.createRun().setText(newText);
+    private void replacePlaceholdersInCell(Cell cell, java.util.Set<String> placeholders, Map<String, String> fieldValues,
+                                           TypedCellValues types) {
+        if (cell.getCellType() != CellType.STRING) {
             return;
         }
 
-        java.util.List<TextSegment> segments = buildTextSegments(originalText, newText, 
-            styleInfoList, fieldValues);
+        String cellValue = cell.getStringCellValue();
+        CellStyle originalStyle = cell.getCellStyle();
 
-        for (TextSegment segment : segments) {
-            if (!segment.text.isEmpty()) {
-                XWPFRun run = paragraph.createRun();
-                run.setText(segment.text);
-                applyStyle(run, segment.style);
+        if (placeholders.size() == 1) {
+            String placeholder = placeholders.iterator().next();
+            if (types.write(cell, cellValue, placeholder, fieldValues.getOrDefault(placeholder, ""))) {
+                return;
             }
         }
+
+        for (String placeholder : placeholders) {
+            String value = fieldValues.getOrDefault(placeholder, "");
+            cellValue = cellValue.replace(placeholder, value);
+        }
+
+        cell.setCellValue(cellValue);
+
+        if (originalStyle != null) {
+            cell.setCellStyle(originalStyle);
+        }
+    }
+
+
+    private String getOrEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+
+    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues) throws Exception {
+        return generateArchive(templateIds, fieldValues, new java.util.HashMap<>(), new java.util.HashMap<>());
+    }
+    
+    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues, 
+                                   Map<String, Boolean> pdfFlags) throws Exception {
+        return generateArchive(templateIds, fieldValues, new java.util.HashMap<>(), pdfFlags);
     }
     
+    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues,
+                                   Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeArchive(baos, templateIds, fieldValues, originalFlags, pdfFlags);
+        return baos.toByteArray();
+    }
 
-    private java.util.List<TextSegment> buildTextSegments(String originalText, String newText,
-        java.util.List<RunStyleInfo> styleInfoList, Map<String, String> fieldValues) {
-        
-        java.util.List<TextSegment> segments = new java.util.ArrayList<>();
-        java.util.List<PlaceholderRange> placeholderRanges = new java.util.ArrayList<>();
 
-        for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
-            String placeholder = entry.getKey();
-            String replacement = entry.getValue();
-            int pos = originalText.indexOf(placeholder);
-            while (pos >= 0) {
-
-                RunStyleInfo placeholderStyle = findStyleForOriginalPosition(pos, styleInfoList);
-                placeholderRanges.add(new PlaceholderRange(pos, pos + placeholder.length(), 
-                    replacement, placeholderStyle));
-                pos = originalText.indexOf(placeholder, pos + 1);
-            }
+    public String archiveFileName(Map<String, String> fieldValues) {
+        String archiveName = "Documents";
+        String contractNumber = fieldValues.get("{{CONTRACT_NUMBER}}");
+        if (contractNumber != null && !contractNumber.isEmpty()) {
+            archiveName = "Documents_" + contractNumber;
         }
+        return archiveName + ".zip";
+    }
 
-        placeholderRanges.sort((a, b) -> Integer.compare(a.startPos, b.startPos));
 
-        int currentOriginalPos = 0;
-        int currentNewPos = 0;
-        
-        for (PlaceholderRange range : placeholderRanges) {
+    public void writeArchive(OutputStream out, List<String> templateIds, Map<String, String> fieldValues,
+                             Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) throws Exception {
+        writeArchive(out, templateIds, fieldValues, originalFlags, pdfFlags, ArchiveProgress.NONE);
+    }
 
-            if (range.startPos > currentOriginalPos) {
-                String beforeText = originalText.substring(currentOriginalPos, range.startPos);
 
-                String beforeNewText = newText.substring(currentNewPos, 
-                    currentNewPos + beforeText.length());
+    public void writeArchive(OutputStream out, List<String> templateIds, Map<String, String> fieldValues,
+                             Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags,
+                             ArchiveProgress progress) throws Exception {
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.setLevel(archiveCompressionLevel);
 
-                splitTextByStyles(beforeText, beforeNewText, currentOriginalPos, segments, styleInfoList);
-                
-                currentNewPos += beforeText.length();
-                currentOriginalPos = range.startPos;
+            List<RecordResult> results = writeRecords(zos, List.of(fieldValues), false,
+                templateIds, originalFlags, pdfFlags, false, progress);
+            if (!results.get(0).errors().isEmpty()) {
+                writeManifest(zos, results);
             }
 
-            String replacementText = range.replacementValue;
-            if (!replacementText.isEmpty()) {
-                segments.add(new TextSegment(replacementText, range.style));
-                currentNewPos += replacementText.length();
-            }
-            
-            currentOriginalPos = range.endPos;
+            zos.finish();
         }
+    }
 
-        if (currentOriginalPos < originalText.length()) {
-            String afterText = originalText.substring(currentOriginalPos);
-            String afterNewText = newText.substring(currentNewPos);
-            
-            splitTextByStyles(afterText, afterNewText, currentOriginalPos, segments, styleInfoList);
-        }
-        
-        return segments;
+
+    public void writeBatchArchive(OutputStream out, List<Map<String, String>> records, List<String> templateIds,
+                                  Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) throws Exception {
+        writeBatchArchive(out, records, templateIds, originalFlags, pdfFlags, ArchiveProgress.NONE);
     }
-    
 
-    private void splitTextByStyles(String originalText, String newText, int startOffset,
-        java.util.List<TextSegment> segments, java.util.List<RunStyleInfo> styleInfoList) {
-        
-        if (originalText.length() != newText.length()) {
 
-            RunStyleInfo style = findStyleForOriginalPosition(startOffset, styleInfoList);
-            segments.add(new TextSegment(newText, style));
-            return;
-        }
+    public void writeBatchArchive(OutputStream out, List<Map<String, String>> records, List<String> templateIds,
+                                  Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags,
+                                  ArchiveProgress progress) throws Exception {
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.setLevel(archiveCompressionLevel);
 
-        int textPos = 0;
-        while (textPos < newText.length()) {
-            int originalPos = startOffset + textPos;
-            RunStyleInfo currentStyle = findStyleForOriginalPosition(originalPos, styleInfoList);
+            List<RecordResult> results = writeRecords(zos, records, true, templateIds, originalFlags, pdfFlags, true,
+                progress);
+            writeManifest(zos, results);
 
-            int segmentEnd = textPos;
-            for (int i = textPos + 1; i < newText.length(); i++) {
-                RunStyleInfo nextStyle = findStyleForOriginalPosition(startOffset + i, styleInfoList);
-                if (!stylesMatch(currentStyle, nextStyle)) {
-                    break;
-                }
-                segmentEnd = i;
-            }
-            
-            String segmentText = newText.substring(textPos, segmentEnd + 1);
-            segments.add(new TextSegment(segmentText, currentStyle));
-            textPos = segmentEnd + 1;
+            zos.finish();
         }
     }
-    
 
-    private RunStyleInfo findStyleForOriginalPosition(int pos, java.util.List<RunStyleInfo> styleInfoList) {
-        for (RunStyleInfo styleInfo : styleInfoList) {
-            if (pos >= styleInfo.startPos && pos < styleInfo.endPos) {
-                return styleInfo;
-            }
-        }
-        return styleInfoList.isEmpty() ? null : styleInfoList.get(styleInfoList.size() - 1);
+
+    public byte[] regenerate(GenerationJournal.JournalEntry entry) throws Exception {
+        TemplateConfig current = configService.getTemplateById(entry.templateId());
+        TemplateConfig template = new TemplateConfig();
+        template.setId(entry.templateId());
+        template.setFileName(entry.templateFileName());
+        template.setCacheResults(current != null ? current.getCacheResults() : null);
+        template.setRenderEngine(entry.renderEngine());
+        template.setEvaluateFormulas(entry.evaluateFormulas());
+        TypedCellValues types = TypedCellValues.of(entry.cellTypes());
+
+        CachedTemplate cachedTemplate = templateCacheService.getTemplateVersion(entry.templateFileName(), entry.templateHash());
+        byte[] documentBytes = render(template, cachedTemplate, entry.values(), types).content();
+        return entry.pdf() ? convertToPdf(template, documentBytes) : documentBytes;
     }
-    
 
-    private static class PlaceholderRange {
-        int startPos;
-        int endPos;
-        String replacementValue;
-        RunStyleInfo style;
-        
-        PlaceholderRange(int startPos, int endPos, String replacementValue, RunStyleInfo style) {
-            this.startPos = startPos;
-            this.endPos = endPos;
-            this.replacementValue = replacementValue;
-            this.style = style;
+
+    public void requireTemplateVersions(List<GenerationJournal.JournalEntry> entries) throws java.io.IOException {
+        for (GenerationJournal.JournalEntry entry : entries) {
+            templateCacheService.getTemplateVersion(entry.templateFileName(), entry.templateHash());
         }
     }
-    
 
-    private static class TextSegment {
-        String text;
-        RunStyleInfo style;
-        
-        TextSegment(String text, RunStyleInfo style) {
-            this.text = text;
-            this.style = style;
+
+    public void writeRegeneratedArchive(OutputStream out, List<GenerationJournal.JournalEntry> entries) throws Exception {
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.setLevel(archiveCompressionLevel);
+
+            java.util.Set<String> entryNames = new java.util.HashSet<>();
+            for (GenerationJournal.JournalEntry entry : entries) {
+                writeEntry(zos, uniqueEntryName(entryNames, "", entry.fileName()), regenerate(entry), entry.timestamp());
+            }
+
+            zos.finish();
         }
     }
-    
 
-    private VerticalAlign getVerticalAlign(XWPFRun run) {
-        try {
-            if (run.getCTR() != null && run.getCTR().getRPr() != null) {
-                org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr rPr = run.getCTR().getRPr();
-                
-                try (org.apache.xmlbeans.XmlCursor cursor = rPr.newCursor()) {
-                    cursor.toFirstChild();
-                    do {
-                        if ("vertAlign".equals(cursor.getName().getLocalPart())) {
-                            String val = cursor.getAttributeText(new javax.xml.namespace.QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main", "val"));
-                            if ("superscript".equals(val)) {
-                                return VerticalAlign.SUPERSCRIPT;
-                            } else if ("subscript".equals(val)) {
-                                return VerticalAlign.SUBSCRIPT;
-                            } else {
-                                return VerticalAlign.BASELINE;
-                            }
-                        }
-                    } while (cursor.toNextSibling());
+
+    private List<RecordResult> writeRecords(ZipOutputStream zos, List<Map<String, String>> records, boolean useFolders,
+                                            List<String> templateIds, Map<String, Boolean> originalFlags,
+                                            Map<String, Boolean> pdfFlags, boolean checkAvailability,
+                                            ArchiveProgress progress) throws Exception {
+        ConfigSnapshot snapshot = configService.getSnapshot();
+        List<RecordResult> results = new java.util.ArrayList<>(records.size());
+        List<Callable<RenderedEntry>> renderTasks = new java.util.ArrayList<>();
+        int plannedPdfs = 0;
+
+        for (int index = 0; index < records.size(); index++) {
+            Map<String, String> fieldValues = records.get(index);
+            RecordResult result = new RecordResult(index + 1,
+                useFolders ? recordFolder(index, fieldValues) : "", new java.util.ArrayList<>(), new java.util.ArrayList<>());
+            results.add(result);
+
+            java.util.Set<String> availableTemplateIds = checkAvailability
+                ? new java.util.HashSet<>(snapshot.getAvailableTemplateIds(fieldValues)) : null;
+            Map<String, String> resolvedValues = null;
+
+            for (String templateId : templateIds) {
+                TemplateConfig template = snapshot.getTemplateById(templateId);
+                if (template == null) {
+                    if (checkAvailability) {
+                        result.errors().add(errorEntry(templateId, null, "Шаблон не знайдено"));
+                    }
+                    continue;
+                }
+
+                boolean needOriginal = originalFlags.getOrDefault(templateId, Boolean.TRUE);
+                boolean needPdf = pdfFlags.getOrDefault(templateId, Boolean.FALSE);
+                if (!needOriginal && !needPdf) continue;
+
+                String fileName = generateFileName(template.getDownloadPattern(), fieldValues);
+                if (availableTemplateIds != null && !availableTemplateIds.contains(templateId)) {
+                    result.errors().add(errorEntry(templateId, fileName, "Не заповнені обов'язкові поля"));
+                    continue;
                 }
+
+                if (resolvedValues == null) {
+                    resolvedValues = resolveFieldValues(fieldValues);
+                }
+                if (needPdf) {
+                    plannedPdfs++;
+                }
+                Map<String, String> values = resolvedValues;
+                renderTasks.add(() -> renderEntry(result, template, fileName, false,
+                    () -> renderDocument(template, values)));
             }
-        } catch (Exception e) {
+        }
+
+        CompletionService<RenderedEntry> completionService = new ExecutorCompletionService<>(archiveExecutor);
+        List<Future<RenderedEntry>> futures = new java.util.ArrayList<>();
+        java.util.Set<String> entryNames = new java.util.HashSet<>();
+        int maxInFlight = archiveParallelism * 2;
+        int total = renderTasks.size() + plannedPdfs;
+        int done = 0;
+        progress.update(done, total, "rendering");
 
+        try {
+            int nextTask = 0;
+            int pending = 0;
+            while (nextTask < renderTasks.size() || pending > 0) {
+                while (nextTask < renderTasks.size() && pending < maxInFlight) {
+                    futures.add(completionService.submit(renderTasks.get(nextTask++)));
+                    pending++;
+                }
+
+                RenderedEntry entry = completionService.take().get();
+                pending--;
+                progress.update(++done, total, entry.pdf() ? "pdf" : "rendering");
+
+                String templateId = entry.template().getId();
+                if (entry.error() != null) {
+                    log.warn("Archive entry skipped: {}", entry.error());
+                    entry.record().errors().add(errorEntry(templateId, entry.fileName(), entry.error()));
+                    if (!entry.pdf() && pdfFlags.getOrDefault(templateId, Boolean.FALSE)) {
+                        total--;
+                    }
+                    continue;
+                }
+
+                if (entry.pdf() || originalFlags.getOrDefault(templateId, Boolean.TRUE)) {
+                    String entryName = uniqueEntryName(entryNames, entry.record().folder(), entry.fileName());
+                    writeEntry(zos, entryName, entry.content());
+                    entry.record().documents().add(entryName);
+                    generationJournal.record(entry.template(), entry.templateHash(), entry.cellTypes(), entryName,
+                        entry.values(),
+                        entry.pdf(), entry.content().length, entry.elapsedNanos());
+                }
+
+                if (!entry.pdf() && pdfFlags.getOrDefault(templateId, Boolean.FALSE)) {
+                    String pdfFileName = entry.fileName().replaceAll("\\.(docx|xlsx)$", ".pdf");
+                    futures.add(completionService.submit(() -> renderEntry(entry.record(), entry.template(),
+                        pdfFileName, true, () -> new RenderedDocument(
+                            convertToPdf(entry.template(), entry.content()), entry.templateHash(), entry.values(),
+                            entry.cellTypes()))));
+                    pending++;
+                }
+            }
+        } finally {
+            for (Future<RenderedEntry> future : futures) {
+                future.cancel(true);
+            }
         }
-        return null;
-    }
-    
-    private boolean stylesMatch(RunStyleInfo style1, RunStyleInfo style2) {
-        if (style1 == null || style2 == null) {
-            return style1 == style2;
-        }
-        return java.util.Objects.equals(style1.fontFamily, style2.fontFamily) &&
-               java.util.Objects.equals(style1.fontSize, style2.fontSize) &&
-               style1.bold == style2.bold &&
-               style1.italic == style2.italic &&
-               java.util.Objects.equals(style1.color, style2.color) &&
-               style1.underline == style2.underline &&
-               java.util.Objects.equals(style1.subscript, style2.subscript);
+        return results;
     }
-    
 
-    private void applyStyle(XWPFRun run, RunStyleInfo styleInfo) {
-        if (styleInfo == null) return;
-        
-        if (styleInfo.fontFamily != null) {
-            run.setFontFamily(styleInfo.fontFamily);
-        }
-        if (styleInfo.fontSize != null && styleInfo.fontSize > 0) {
-            run.setFontSize(styleInfo.fontSize);
-        }
-        run.setBold(styleInfo.bold);
-        run.setItalic(styleInfo.italic);
-        if (styleInfo.color != null) {
-            run.setColor(styleInfo.color);
-        }
-        if (styleInfo.underline != null && styleInfo.underline != UnderlinePatterns.NONE) {
-            run.setUnderline(styleInfo.underline);
+
+    private RenderedEntry renderEntry(RecordResult record, TemplateConfig template, String fileName, boolean pdf,
+                                      Callable<RenderedDocument> renderer) {
+        long started = System.nanoTime();
+        try {
+            RenderedDocument rendered = renderer.call();
+            return new RenderedEntry(record, template, fileName, rendered.values(), rendered.content(), rendered.templateHash(),
+                rendered.cellTypes(), pdf, null, System.nanoTime() - started);
+        } catch (Exception e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new RenderedEntry(record, template, fileName, null, null, null, null, pdf, error, 0);
         }
-        if (styleInfo.subscript != null) {
-            run.setSubscript(styleInfo.subscript);
+    }
+
+
+    private String recordFolder(int index, Map<String, String> fieldValues) {
+        String folder = String.format("%03d", Integer.valueOf(index + 1));
+        String contractNumber = fieldValues.get("{{CONTRACT_NUMBER}}");
+        if (contractNumber != null && !contractNumber.isBlank()) {
+            folder += "_" + contractNumber.trim().replaceAll("[<>:\"/\\\\|?*]", "_");
         }
+        return folder;
     }
-    
 
-    private static class RunStyleInfo {
-        int startPos;
-        int endPos;
-        String fontFamily;
-        Double fontSize;
-        boolean bold;
-        boolean italic;
-        String color;
-        UnderlinePatterns underline;
-        VerticalAlign subscript;
-        
-        RunStyleInfo(int startPos, int endPos, String fontFamily, Double fontSize,
-                    boolean bold, boolean italic, String color, UnderlinePatterns underline,
-                    VerticalAlign subscript) {
-            this.startPos = startPos;
-            this.endPos = endPos;
-            this.fontFamily = fontFamily;
-            this.fontSize = fontSize;
-            this.bold = bold;
-            this.italic = italic;
-            this.color = color;
-            this.underline = underline;
-            this.subscript = subscript;
+
+    private String uniqueEntryName(java.util.Set<String> entryNames, String folder, String fileName) {
+        String prefix = folder.isEmpty() ? "" : folder + "/";
+        String entryName = prefix + fileName;
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        for (int copy = 2; !entryNames.add(entryName); copy++) {
+            entryName = prefix + baseName + " (" + copy + ")" + extension;
         }
+        return entryName;
     }
 
 
-    private byte[] generateExcelFromTemplate(String templatePath, Map<String, String> fieldValues) throws Exception {
+    private Map<String, String> errorEntry(String templateId, String fileName, String error) {
+        Map<String, String> entry = new java.util.LinkedHashMap<>();
+        entry.put("template", templateId);
+        if (fileName != null) {
+            entry.put("file", fileName);
+        }
+        entry.put("error", error);
+        return entry;
+    }
 
-        java.io.File templateFile = new java.io.File(templatePath);
-        
-        try (InputStream templateStream = new java.io.FileInputStream(templateFile);
-             XSSFWorkbook workbook = new XSSFWorkbook(templateStream);
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                Sheet sheet = workbook.getSheetAt(i);
-                replacePlaceholdersInSheet(sheet, fieldValues);
+    private void writeManifest(ZipOutputStream zos, List<RecordResult> results) throws java.io.IOException {
+        List<Map<String, Object>> items = new java.util.ArrayList<>(results.size());
+        int documents = 0;
+        int failures = 0;
+        for (RecordResult result : results) {
+            Map<String, Object> item = new java.util.LinkedHashMap<>();
+            item.put("record", Integer.valueOf(result.index()));
+            if (!result.folder().isEmpty()) {
+                item.put("folder", result.folder());
             }
-            
-            workbook.write(out);
-            return out.toByteArray();
+            item.put("status", result.errors().isEmpty() ? "ok" : result.documents().isEmpty() ? "failed" : "partial");
+            item.put("documents", result.documents());
+            item.put("errors", result.errors());
+            items.add(item);
+            documents += result.documents().size();
+            failures += result.errors().size();
         }
+
+        Map<String, Object> manifest = new java.util.LinkedHashMap<>();
+        manifest.put("records", Integer.valueOf(results.size()));
+        manifest.put("documents", Integer.valueOf(documents));
+        manifest.put("failures", Integer.valueOf(failures));
+        manifest.put("items", items);
+
+        writeEntry(zos, MANIFEST_NAME, MANIFEST_WRITER.writeValueAsBytes(manifest));
     }
 
 
-    private void replacePlaceholdersInSheet(Sheet sheet, Map<String, String> fieldValues) {
-        for (Row row : sheet) {
-            for (Cell cell : row) {
-                if (cell.getCellType() == CellType.STRING) {
-                    String cellValue = cell.getStringCellValue();
+    private void writeEntry(ZipOutputStream zos, String fileName, byte[] content) throws java.io.IOException {
+        writeEntry(zos, fileName, content, -1);
+    }
 
-                    java.util.regex.Pattern placeholderPattern = java.util.regex.Pattern.compile("\\{\\{([^}]+)\\}\\}");
-                    java.util.regex.Matcher matcher = placeholderPattern.matcher(cellValue);
-                    boolean hasPlaceholder = matcher.find();
 
-                    if (hasPlaceholder) {
+    private void writeEntry(ZipOutputStream zos, String fileName, byte[] content, long time) throws java.io.IOException {
+        ZipEntry zipEntry = new ZipEntry(fileName);
+        if (time >= 0) {
+            zipEntry.setTime(time);
+        }
 
-                        CellStyle originalStyle = cell.getCellStyle();
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(java.util.Locale.ROOT);
+        if (storedExtensions.contains(extension)) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(content.length);
+            zipEntry.setCompressedSize(content.length);
+            zipEntry.setCrc(crc.getValue());
+        }
 
-                        java.util.Set<String> allPlaceholders = new java.util.HashSet<>();
-                        matcher = placeholderPattern.matcher(cellValue);
-                        while (matcher.find()) {
-                            allPlaceholders.add(matcher.group(0));
-                        }
+        zos.putNextEntry(zipEntry);
+        zos.write(content);
+        zos.closeEntry();
+        zos.flush();
+    }
 
-                        for (String placeholder : allPlaceholders) {
-                            String value = fieldValues.getOrDefault(placeholder, "");
-                            cellValue = cellValue.replace(placeholder, value);
-                        }
-                        
-                        cell.setCellValue(cellValue);
 
-                        if (originalStyle != null) {
-                            cell.setCellStyle(originalStyle);
-                        }
-                    }
-                }
-            }
-        }
+    @FunctionalInterface
+    public interface ArchiveProgress {
+        ArchiveProgress NONE = (done, total, stage) -> { };
+
+        void update(int done, int total, String stage);
     }
 
 
-    private String getOrEmpty(String value) {
-        return value != null ? value : "";
+    private record RenderedEntry(RecordResult record, TemplateConfig template, String fileName,
+                                 Map<String, String> values, byte[] content, String templateHash,
+                                 Map<String, String> cellTypes, boolean pdf, String error, long elapsedNanos) {
     }
 
 
-    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues) throws Exception {
-        return generateArchive(templateIds, fieldValues, new java.util.HashMap<>(), new java.util.HashMap<>());
+    private record RenderedDocument(byte[] content, String templateHash, Map<String, String> values,
+                                    Map<String, String> cellTypes) {
     }
-    
-    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues, 
-                                   Map<String, Boolean> pdfFlags) throws Exception {
-        return generateArchive(templateIds, fieldValues, new java.util.HashMap<>(), pdfFlags);
+
+
+    private record RecordResult(int index, String folder, List<String> documents, List<Map<String, String>> errors) {
     }
-    
-    public byte[] generateArchive(List<String> templateIds, Map<String, String> fieldValues,
-                                   Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) throws Exception {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zos = new ZipOutputStream(baos)) {
-            
-            for (String templateId : templateIds) {
-                try {
-                    TemplateConfig template = configService.getTemplateById(templateId);
-                    if (template == null) continue;
-
-                    String fileName = generateFileName(template.getDownloadPattern(), fieldValues);
-
-                    boolean needOriginal = originalFlags.getOrDefault(templateId, Boolean.TRUE);
-                    boolean needPdf = pdfFlags.getOrDefault(templateId, Boolean.FALSE);
-                    
-                    if (needOriginal) {
-
-                        byte[] originalData = generateDocument(templateId, fieldValues, false);
-                        ZipEntry originalEntry = new ZipEntry(fileName);
-                        zos.putNextEntry(originalEntry);
-                        zos.write(originalData);
-                        zos.closeEntry();
-                    }
-                    
-                    if (needPdf) {
-
-                        byte[] pdfData = generateDocument(templateId, fieldValues, true);
-                        String pdfFileName = fileName.replaceAll("\\.(docx|xlsx)$", ".pdf");
-                        ZipEntry pdfEntry = new ZipEntry(pdfFileName);
-                        zos.putNextEntry(pdfEntry);
-                        zos.write(pdfData);
-                        zos.closeEntry();
-                    }
-                } catch (Exception e) {
 
-                }
-            }
-            
-            zos.finish();
-            return baos.toByteArray();
-        }
+
+    @PreDestroy
+    public void shutdown() {
+        archiveExecutor.shutdownNow();
     }
     
 
@@ -0,0 +1,181 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+final class FieldValueHistory {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern APOSTROPHES = Pattern.compile("['’ʼ`]");
+    private static final double RECENCY_HALF_LIFE = 50.0;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Usage> values = new LinkedHashMap<>();
+    private long clock;
+    private volatile List<String> view = List.of();
+    private volatile SuggestionIndex index = SuggestionIndex.EMPTY;
+    private volatile boolean stale;
+
+    FieldValueHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+
+    synchronized boolean promote(String value) {
+        Usage usage = values.remove(value);
+        values.put(value, new Usage(usage != null ? usage.uses() + 1 : 1, ++clock));
+        if (values.size() > capacity) {
+            Iterator<String> oldest = values.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        stale = true;
+        return true;
+    }
+
+
+    synchronized boolean remove(String value) {
+        boolean removed = values.remove(value) != null;
+        if (removed) {
+            stale = true;
+        }
+        return removed;
+    }
+
+
+    List<String> values() {
+        refresh();
+        return view;
+    }
+
+
+    List<String> suggest(String query, int limit) {
+        refresh();
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            List<String> recent = view;
+            return recent.subList(0, Math.min(limit, recent.size()));
+        }
+        return index.search(prefix, limit);
+    }
+
+
+    private void refresh() {
+        if (!stale) {
+            return;
+        }
+        synchronized (this) {
+            if (!stale) {
+                return;
+            }
+            List<String> mostRecentFirst = new ArrayList<>(values.keySet());
+            Collections.reverse(mostRecentFirst);
+            index = SuggestionIndex.build(values, clock);
+            view = Collections.unmodifiableList(mostRecentFirst);
+            stale = false;
+        }
+    }
+
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        String plain = APOSTROPHES.matcher(COMBINING_MARKS.matcher(decomposed).replaceAll("")).replaceAll("");
+        return plain.toLowerCase(Locale.ROOT);
+    }
+
+
+    private record Usage(int uses, long lastUsed) {
+    }
+
+
+    private static final class SuggestionIndex {
+
+        static final SuggestionIndex EMPTY = new SuggestionIndex(new String[0], new int[0], new String[0], new double[0]);
+
+        private final String[] keys;
+        private final int[] valueRefs;
+        private final String[] values;
+        private final double[] scores;
+
+        private SuggestionIndex(String[] keys, int[] valueRefs, String[] values, double[] scores) {
+            this.keys = keys;
+            this.valueRefs = valueRefs;
+            this.values = values;
+            this.scores = scores;
+        }
+
+
+        static SuggestionIndex build(Map<String, Usage> usages, long clock) {
+            String[] values = new String[usages.size()];
+            double[] scores = new double[usages.size()];
+            List<String> keys = new ArrayList<>();
+            List<Integer> refs = new ArrayList<>();
+
+            int ref = 0;
+            for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+                Usage usage = entry.getValue();
+                values[ref] = entry.getKey();
+                scores[ref] = usage.uses() / (1.0 + (clock - usage.lastUsed()) / RECENCY_HALF_LIFE);
+
+                String normalized = normalize(entry.getKey());
+                for (int i = 0; i < normalized.length(); i++) {
+                    if (Character.isLetterOrDigit(normalized.charAt(i))
+                            && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                        keys.add(normalized.substring(i));
+                        refs.add(Integer.valueOf(ref));
+                    }
+                }
+                ref++;
+            }
+
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(order, Comparator.comparing(i -> keys.get(i.intValue())));
+
+            String[] sortedKeys = new String[order.length];
+            int[] sortedRefs = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i].intValue());
+                sortedRefs[i] = refs.get(order[i].intValue()).intValue();
+            }
+            return new SuggestionIndex(sortedKeys, sortedRefs, values, scores);
+        }
+
+
+        List<String> search(String prefix, int limit) {
+            int position = Arrays.binarySearch(keys, prefix);
+            int start = position >= 0 ? position : -position - 1;
+
+            BitSet matches = new BitSet(values.length);
+            for (int i = start; i < keys.length && keys[i].startsWith(prefix); i++) {
+                matches.set(valueRefs[i]);
+            }
+
+            List<Integer> ranked = new ArrayList<>(matches.cardinality());
+            matches.stream().forEach(ref -> ranked.add(Integer.valueOf(ref)));
+            ranked.sort(Comparator.comparingDouble((Integer ref) -> scores[ref.intValue()]).reversed()
+                    .thenComparing(Comparator.reverseOrder()));
+
+            List<String> suggestions = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                suggestions.add(values[ranked.get(i).intValue()]);
+            }
+            return suggestions;
+        }
+    }
+}
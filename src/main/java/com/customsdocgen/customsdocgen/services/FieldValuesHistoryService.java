@@ -1,30 +1,41 @@
 package com.customsdocgen.customsdocgen.services;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.io.File;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class FieldValuesHistoryService {
 
-    private static final String HISTORY_FILE = "field-values-history.json";
     private static final Logger log = LoggerFactory.getLogger(FieldValuesHistoryService.class);
-    private static final int MAX_HISTORY_PER_FIELD = 50;
+    private static final int MAX_SUGGESTIONS = 50;
     
-    private final ObjectMapper objectMapper;
-    private Map<String, List<String>> fieldValuesHistory;
-
-    public FieldValuesHistoryService() {
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        this.fieldValuesHistory = new HashMap<>();
+    private final HistoryStore historyStore;
+    private final int maxHistoryPerField;
+    private final Object flushLock = new Object();
+    private final AtomicLong pendingChanges = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long lastFlushAt;
+    private final Map<String, FieldValueHistory> fieldValuesHistory = new ConcurrentHashMap<>();
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile HistorySnapshot snapshot = new HistorySnapshot(0, Map.of());
+
+    public FieldValuesHistoryService(HistoryStore historyStore,
+                                     @Value("${history.max-per-field:50}") int maxHistoryPerField) {
+        this.historyStore = historyStore;
+        this.maxHistoryPerField = Math.max(1, maxHistoryPerField);
     }
 
     @PostConstruct
@@ -34,79 +45,172 @@ public class FieldValuesHistoryService {
 
 
     private void loadHistory() {
-        File historyFile = new File(HISTORY_FILE);
-        
-        if (historyFile.exists()) {
-            try (java.io.FileInputStream fis = new java.io.FileInputStream(historyFile);
-                 java.io.InputStreamReader reader = new java.io.InputStreamReader(fis, java.nio.charset.StandardCharsets.UTF_8)) {
-                @SuppressWarnings("unchecked")
-                Map<String, List<String>> loaded = objectMapper.readValue(reader, Map.class);
-                if (loaded != null) {
-                    fieldValuesHistory = loaded;
+        try {
+            historyStore.load(new HistoryStore.HistoryReplay() {
+                @Override
+                public void used(String fieldId, String value) {
+                    if (fieldId != null && value != null && !value.trim().isEmpty()) {
+                        historyOf(fieldId).promote(value.trim());
+                        modificationCount.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void removed(String fieldId, String value) {
+                    FieldValueHistory history = fieldValuesHistory.get(fieldId);
+                    if (history != null && history.remove(value)) {
+                        modificationCount.incrementAndGet();
+                    }
                 }
-                log.info("Field values history loaded: {} fields", Integer.valueOf(fieldValuesHistory.size()));
+            });
+            log.info("Field values history loaded from {}: {} fields", historyStore.describe(),
+                    Integer.valueOf(fieldValuesHistory.size()));
+        } catch (IOException e) {
+            log.warn("Failed to read field values history, starting with empty history: {}", e.getMessage());
+            fieldValuesHistory.clear();
+        }
+    }
+
+
+    @Scheduled(fixedDelayString = "${history.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            if (pendingChanges.get() == 0) {
+                return;
+            }
+
+            long started = System.nanoTime();
+            long pending = pendingChanges.getAndSet(0);
+            try {
+                historyStore.flush(this::getAllHistory);
+                flushCount.incrementAndGet();
             } catch (IOException e) {
-                log.warn("Failed to read field values history, starting with empty history: {}", e.getMessage());
-                fieldValuesHistory = new HashMap<>();
+                pendingChanges.addAndGet(pending);
+                flushFailures.incrementAndGet();
+                log.warn("Failed to save field values history: {}", e.getMessage());
             }
-        } else {
-            log.info("Field values history file not found, starting with empty history");
-            fieldValuesHistory = new HashMap<>();
+
+            lastFlushNanos = System.nanoTime() - started;
+            totalFlushNanos.addAndGet(lastFlushNanos);
+            lastFlushAt = System.currentTimeMillis();
         }
     }
 
 
-    private void saveHistory() {
-        try (java.io.FileOutputStream fos = new java.io.FileOutputStream(HISTORY_FILE);
-             java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(fos, java.nio.charset.StandardCharsets.UTF_8)) {
-            objectMapper.writeValue(writer, fieldValuesHistory);
-        } catch (IOException e) {
-            log.warn("Failed to save field values history: {}", e.getMessage());
-        }
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long flushes = flushCount.get();
+        stats.put("pendingChanges", Long.valueOf(pendingChanges.get()));
+        stats.put("flushes", Long.valueOf(flushes));
+        stats.put("flushFailures", Long.valueOf(flushFailures.get()));
+        stats.put("lastFlushMillis", Double.valueOf(lastFlushNanos / 1_000_000.0));
+        stats.put("avgFlushMillis", Double.valueOf(flushes > 0 ? totalFlushNanos.get() / 1_000_000.0 / flushes : 0.0));
+        stats.put("lastFlushAt", Long.valueOf(lastFlushAt));
+        return stats;
     }
 
 
     public void addValue(String fieldId, String value) {
-        if (fieldId == null || value == null || value.trim().isEmpty()) {
-            return;
+        if (remember(fieldId, value)) {
+            pendingChanges.incrementAndGet();
         }
-        
-        String trimmedValue = value.trim();
-        fieldValuesHistory.computeIfAbsent(fieldId, k -> new ArrayList<>());
-        
-        List<String> values = fieldValuesHistory.get(fieldId);
+    }
 
-        values.remove(trimmedValue);
 
-        values.add(0, trimmedValue);
+    private boolean remember(String fieldId, String value) {
+        if (fieldId == null || value == null || value.trim().isEmpty()) {
+            return false;
+        }
 
-        if (values.size() > MAX_HISTORY_PER_FIELD) {
-            values.subList(MAX_HISTORY_PER_FIELD, values.size()).clear();
+        String trimmedValue = value.trim();
+        FieldValueHistory history = historyOf(fieldId);
+        synchronized (history) {
+            history.promote(trimmedValue);
+            historyStore.valueUsed(fieldId, trimmedValue);
         }
-        
-        saveHistory();
+        modificationCount.incrementAndGet();
+        return true;
+    }
+
+
+    private FieldValueHistory historyOf(String fieldId) {
+        return fieldValuesHistory.computeIfAbsent(fieldId, k -> new FieldValueHistory(maxHistoryPerField));
     }
 
 
     public List<String> getHistory(String fieldId) {
-        return fieldValuesHistory.getOrDefault(fieldId, new ArrayList<>());
+        FieldValueHistory history = fieldValuesHistory.get(fieldId);
+        return history != null ? history.values() : List.of();
+    }
+
+
+    public List<String> suggest(String fieldId, String query, int limit) {
+        FieldValueHistory history = fieldValuesHistory.get(fieldId);
+        if (history == null || limit <= 0) {
+            return List.of();
+        }
+        return history.suggest(query, Math.min(limit, MAX_SUGGESTIONS));
     }
 
 
     public void saveValuesForFields(Map<String, String> fieldValues, Map<String, Boolean> fieldRememberFlags) {
+        boolean changed = false;
         for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
             String fieldId = entry.getKey();
             String value = entry.getValue();
 
             if (fieldRememberFlags != null && fieldRememberFlags.getOrDefault(fieldId, Boolean.FALSE)) {
-                addValue(fieldId, value);
+                changed |= remember(fieldId, value);
             }
         }
+        if (changed) {
+            pendingChanges.incrementAndGet();
+        }
+    }
+
+
+    public void saveFormValues(Map<String, String> rememberedFieldIdsByPlaceholder, Map<String, String> formData) {
+        Map<String, Boolean> fieldRememberFlags = new HashMap<>();
+        for (String fieldId : rememberedFieldIdsByPlaceholder.values()) {
+            fieldRememberFlags.put(fieldId, Boolean.TRUE);
+        }
+
+        Map<String, String> fieldValuesByFieldId = new HashMap<>();
+        for (Map.Entry<String, String> entry : formData.entrySet()) {
+            String fieldId = rememberedFieldIdsByPlaceholder.get(entry.getKey());
+            String value = entry.getValue();
+            if (fieldId != null && value != null && !value.trim().isEmpty()) {
+                fieldValuesByFieldId.put(fieldId, value);
+            }
+        }
+
+        saveValuesForFields(fieldValuesByFieldId, fieldRememberFlags);
     }
 
 
     public Map<String, List<String>> getAllHistory() {
-        return new HashMap<>(fieldValuesHistory);
+        long version = modificationCount.get();
+        HistorySnapshot current = snapshot;
+        if (current.version() == version) {
+            return current.values();
+        }
+
+        Map<String, List<String>> values = new HashMap<>();
+        fieldValuesHistory.forEach((fieldId, history) -> {
+            List<String> fieldValues = history.values();
+            if (!fieldValues.isEmpty()) {
+                values.put(fieldId, fieldValues);
+            }
+        });
+        current = new HistorySnapshot(version, Collections.unmodifiableMap(values));
+        snapshot = current;
+        return current.values();
     }
     
 
@@ -115,20 +219,23 @@ public class FieldValuesHistoryService {
             return false;
         }
         
-        List<String> values = fieldValuesHistory.get(fieldId);
-        if (values == null) {
+        FieldValueHistory history = fieldValuesHistory.get(fieldId);
+        if (history == null) {
             return false;
         }
-
-        boolean removed = values.remove(value);
-        if (removed) {
-            if (values.isEmpty()) {
-                fieldValuesHistory.remove(fieldId);
+        synchronized (history) {
+            if (!history.remove(value)) {
+                return false;
             }
-            saveHistory();
+            historyStore.valueRemoved(fieldId, value);
         }
-        
-        return removed;
+
+        modificationCount.incrementAndGet();
+        pendingChanges.incrementAndGet();
+        return true;
     }
-}
 
+
+    private record HistorySnapshot(long version, Map<String, List<String>> values) {
+    }
+}
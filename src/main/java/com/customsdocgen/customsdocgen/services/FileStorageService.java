@@ -13,7 +13,13 @@ import java.nio.file.StandardCopyOption;
 @Service
 public class FileStorageService {
 
-    private static final String TEMPLATES_DIR = "templates/";
+    static final String TEMPLATES_DIR = "templates/";
+
+    private final TemplateCacheService templateCacheService;
+
+    public FileStorageService(TemplateCacheService templateCacheService) {
+        this.templateCacheService = templateCacheService;
+    }
 
     public String saveTemplate(MultipartFile file) throws IOException {
         if (file.isEmpty()) {
@@ -33,6 +39,7 @@ public class FileStorageService {
 
         Path targetPath = Paths.get(TEMPLATES_DIR + originalFilename);
         Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        templateCacheService.invalidate(originalFilename);
 
         return originalFilename;
     }
@@ -41,6 +48,7 @@ public class FileStorageService {
     public void deleteTemplate(String fileName) throws IOException {
         Path filePath = Paths.get(TEMPLATES_DIR + fileName);
         Files.deleteIfExists(filePath);
+        templateCacheService.invalidate(fileName);
     }
 
 
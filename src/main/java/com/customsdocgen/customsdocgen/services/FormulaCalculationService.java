@@ -1,12 +1,16 @@
 package com.customsdocgen.customsdocgen.services;
 
 import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.services.FormulaGraph.FormulaNode;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
@@ -14,73 +18,180 @@ public class FormulaCalculationService {
 
     private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{\\{([^}]+)\\}\\}");
 
+    private final ConfigService configService;
+
+    public FormulaCalculationService(ConfigService configService) {
+        this.configService = configService;
+    }
+
+
+    public Map<String, String> calculateAllFormulas(Map<String, String> fieldValues) {
+        return calculateAllFormulas(configService.getSnapshot().getFields(), fieldValues);
+    }
+
 
     public Map<String, String> calculateAllFormulas(List<FieldConfig> fields, Map<String, String> fieldValues) {
         Map<String, String> result = new HashMap<>(fieldValues);
+        for (FieldConfig field : fields) {
+            if (RepeatingSections.LIST_FIELD_TYPE.equals(field.getFieldType())) {
+                result.putAll(calculateList(field, result));
+            }
+        }
+        for (FormulaNode node : graphFor(fields).nodes()) {
+            result.put(node.placeholder(), calculateFormula(node, result));
+        }
+        return result;
+    }
 
-        List<FieldConfig> formulaFields = fields.stream()
-                .filter(field -> "formula".equals(field.getFieldType()) && field.getFormula() != null)
-                .toList();
 
-        formulaFields.stream()
-                .sorted((a, b) -> Integer.compare(a.getOrder(), b.getOrder()))
-                .forEach(field -> {
-                    try {
-                        String calculatedValue = calculateFormula(field.getFormula(), result, field.getDecimalPlaces());
-                        result.put(field.getPlaceholder(), calculatedValue);
-                    } catch (Exception e) {
-                        result.put(field.getPlaceholder(), "ОШИБКА");
-                    }
-                });
-        
-        return result;
+    public Map<String, String> recalculateFormulas(Map<String, String> fieldValues,
+                                                   Collection<String> changedPlaceholders) {
+        return recalculateFormulas(configService.getSnapshot().getFields(), fieldValues, changedPlaceholders);
     }
 
 
-    private String calculateFormula(String formula, Map<String, String> fieldValues, Integer decimalPlaces) {
-        if (formula == null || formula.trim().isEmpty()) {
+    public Map<String, String> recalculateFormulas(List<FieldConfig> fields, Map<String, String> fieldValues,
+                                                   Collection<String> changedPlaceholders) {
+        Map<String, String> values = new HashMap<>(fieldValues);
+        Map<String, String> updated = new LinkedHashMap<>();
+        List<String> changed = new ArrayList<>(changedPlaceholders);
+        for (FieldConfig field : fields) {
+            if (RepeatingSections.LIST_FIELD_TYPE.equals(field.getFieldType()) && listAffectedBy(field, changedPlaceholders)) {
+                Map<String, String> list = calculateList(field, values);
+                values.putAll(list);
+                updated.putAll(list);
+                changed.addAll(list.keySet());
+            }
+        }
+
+        FormulaGraph graph = graphFor(fields);
+        BitSet affected = graph.affectedBy(changed);
+        for (int i = affected.nextSetBit(0); i >= 0; i = affected.nextSetBit(i + 1)) {
+            FormulaNode node = graph.nodes().get(i);
+            String value = calculateFormula(node, values);
+            values.put(node.placeholder(), value);
+            updated.put(node.placeholder(), value);
+        }
+        return updated;
+    }
+
+
+    private FormulaGraph graphFor(List<FieldConfig> fields) {
+        ConfigSnapshot snapshot = configService.getSnapshot();
+        if (fields == snapshot.getFields()) {
+            return snapshot.formulaGraph();
+        }
+        return FormulaGraph.build(fields);
+    }
+
+
+    private String calculateFormula(FormulaNode node, Map<String, String> fieldValues) {
+        FieldConfig field = node.field();
+        if (field.getFormula().trim().isEmpty()) {
             return "";
         }
+        if (node.expression() == null || node.cyclic()) {
+            return "ОШИБКА";
+        }
 
-        String processedFormula = formula;
+        double result = node.expression().evaluate(placeholder -> numericValue(fieldValues.get(placeholder)));
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            return "ОШИБКА";
+        }
+        return formatNumber(result, field.getDecimalPlaces());
+    }
 
-        Matcher placeholderMatcher = PLACEHOLDER_PATTERN.matcher(processedFormula);
-        while (placeholderMatcher.find()) {
-            String placeholder = placeholderMatcher.group(0);
-            String value = fieldValues.getOrDefault(placeholder, "0");
 
-            try {
-                double numValue = Double.parseDouble(value);
-                processedFormula = processedFormula.replace(placeholder, String.valueOf(numValue));
-            } catch (NumberFormatException e) {
+    private Map<String, String> calculateList(FieldConfig field, Map<String, String> fieldValues) {
+        String name = RepeatingSections.listName(field.getPlaceholder());
+        String prefix = "{{" + name + ".";
+        List<FieldConfig> columns = field.getColumns() != null ? field.getColumns() : List.of();
+        List<Map<String, String>> rows = RepeatingSections.parseRows(fieldValues.get(field.getPlaceholder()));
+
+        FormulaExpression[] expressions = new FormulaExpression[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            FieldConfig column = columns.get(i);
+            if (isCalculatedField(column)) {
+                try {
+                    expressions[i] = FormulaExpression.compile(column.getFormula());
+                } catch (IllegalArgumentException e) {
+                    expressions[i] = null;
+                }
+            }
+        }
 
-                processedFormula = processedFormula.replace(placeholder, "0");
+        double[] totals = new double[columns.size()];
+        for (Map<String, String> row : rows) {
+            for (int i = 0; i < columns.size(); i++) {
+                FieldConfig column = columns.get(i);
+                if (isCalculatedField(column)) {
+                    row.put(column.getId(), calculateRowFormula(expressions[i], column, row, prefix, fieldValues));
+                }
+                if (isNumericColumn(column)) {
+                    totals[i] += numericValue(row.get(column.getId()));
+                }
             }
         }
 
-        return evaluateExpression(processedFormula, decimalPlaces);
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put(field.getPlaceholder(), RepeatingSections.writeRows(rows));
+        result.put(RepeatingSections.countPlaceholder(name), String.valueOf(rows.size()));
+        for (int i = 0; i < columns.size(); i++) {
+            FieldConfig column = columns.get(i);
+            if (isNumericColumn(column)) {
+                result.put(RepeatingSections.totalPlaceholder(name, column.getId()),
+                    formatNumber(totals[i], column.getDecimalPlaces()));
+            }
+        }
+        return result;
     }
 
-    private String evaluateExpression(String expression, Integer decimalPlaces) {
-        try {
 
-            expression = expression.replaceAll("\\s+", "");
+    private String calculateRowFormula(FormulaExpression expression, FieldConfig column, Map<String, String> row,
+                                       String prefix, Map<String, String> fieldValues) {
+        if (expression == null) {
+            return "ОШИБКА";
+        }
 
-            while (expression.contains("*") || expression.contains("/")) {
+        double result = expression.evaluate(placeholder -> numericValue(placeholder.startsWith(prefix)
+            ? row.get(placeholder.substring(prefix.length(), placeholder.length() - 2))
+            : fieldValues.get(placeholder)));
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            return "ОШИБКА";
+        }
+        return formatNumber(result, column.getDecimalPlaces());
+    }
 
-                expression = processOperation(expression, "[*/]");
-            }
-            
-            while (expression.contains("+") || expression.contains("-")) {
 
-                expression = processOperation(expression, "[+-]");
+    private static boolean listAffectedBy(FieldConfig field, Collection<String> changedPlaceholders) {
+        if (changedPlaceholders.contains(field.getPlaceholder())) {
+            return true;
+        }
+        if (field.getColumns() == null) {
+            return false;
+        }
+        for (FieldConfig column : field.getColumns()) {
+            if (column.getFormula() != null && changedPlaceholders.stream().anyMatch(column.getFormula()::contains)) {
+                return true;
             }
-            
-            double result = Double.parseDouble(expression);
+        }
+        return false;
+    }
 
-            return formatNumber(result, decimalPlaces);
-        } catch (Exception e) {
-            return "ОШИБКА";
+
+    private static boolean isNumericColumn(FieldConfig column) {
+        return "number".equals(column.getFieldType()) || "formula".equals(column.getFieldType());
+    }
+
+
+    private static double numericValue(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
         }
     }
 
@@ -102,40 +213,6 @@ public class FormulaCalculationService {
     }
 
 
-    private String processOperation(String expression, String operationPattern) {
-        Pattern pattern = Pattern.compile("(-?\\d+(?:\\.\\d+)?)\\s*(" + operationPattern + ")\\s*(-?\\d+(?:\\.\\d+)?)");
-        Matcher matcher = pattern.matcher(expression);
-        
-        if (matcher.find()) {
-            double left = Double.parseDouble(matcher.group(1));
-            String operator = matcher.group(2);
-            double right = Double.parseDouble(matcher.group(3));
-            
-            double result;
-            switch (operator) {
-                case "+":
-                    result = left + right;
-                    break;
-                case "-":
-                    result = left - right;
-                    break;
-                case "*":
-                    result = left * right;
-                    break;
-                case "/":
-                    result = right != 0 ? left / right : 0;
-                    break;
-                default:
-                    result = 0;
-            }
-            
-            return expression.replace(matcher.group(0), String.valueOf(result));
-        }
-        
-        return expression;
-    }
-
-
     public boolean isCalculatedField(FieldConfig field) {
         return "formula".equals(field.getFieldType()) && 
                field.getFormula() != null && 
@@ -151,4 +228,5 @@ public class FormulaCalculationService {
                 .map(match -> match.group(1))
                 .toList();
     }
+
 }
@@ -0,0 +1,320 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+final class FormulaExpression {
+
+    @FunctionalInterface
+    interface ValueLookup {
+        double valueOf(String placeholder);
+    }
+
+    private final Node root;
+    private final List<String> placeholders;
+
+    private FormulaExpression(Node root, List<String> placeholders) {
+        this.root = root;
+        this.placeholders = placeholders;
+    }
+
+
+    static FormulaExpression compile(String formula) {
+        Parser parser = new Parser(formula);
+        Node root = parser.parseExpression();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw parser.error("Неочікуваний символ");
+        }
+        return new FormulaExpression(root, List.copyOf(parser.placeholders));
+    }
+
+
+    double evaluate(ValueLookup lookup) {
+        return root.eval(lookup);
+    }
+
+
+    List<String> placeholders() {
+        return placeholders;
+    }
+
+
+    private sealed interface Node permits Constant, Variable, Negate, Binary, Compare, Round, Extremum, Conditional {
+        double eval(ValueLookup lookup);
+    }
+
+    private record Constant(double value) implements Node {
+        public double eval(ValueLookup lookup) {
+            return value;
+        }
+    }
+
+    private record Variable(String placeholder) implements Node {
+        public double eval(ValueLookup lookup) {
+            return lookup.valueOf(placeholder);
+        }
+    }
+
+    private record Negate(Node operand) implements Node {
+        public double eval(ValueLookup lookup) {
+            return -operand.eval(lookup);
+        }
+    }
+
+    private record Binary(char operator, Node left, Node right) implements Node {
+        public double eval(ValueLookup lookup) {
+            double l = left.eval(lookup);
+            double r = right.eval(lookup);
+            return switch (operator) {
+                case '+' -> l + r;
+                case '-' -> l - r;
+                case '*' -> l * r;
+                default -> r != 0 ? l / r : 0;
+            };
+        }
+    }
+
+    private record Compare(String operator, Node left, Node right) implements Node {
+        public double eval(ValueLookup lookup) {
+            double l = left.eval(lookup);
+            double r = right.eval(lookup);
+            boolean result = switch (operator) {
+                case "=" -> l == r;
+                case "<>" -> l != r;
+                case "<" -> l < r;
+                case "<=" -> l <= r;
+                case ">" -> l > r;
+                default -> l >= r;
+            };
+            return result ? 1 : 0;
+        }
+    }
+
+    private record Round(Node value, Node digits) implements Node {
+        public double eval(ValueLookup lookup) {
+            double x = value.eval(lookup);
+            double scale = Math.pow(10, digits != null ? Math.rint(digits.eval(lookup)) : 0);
+            return Math.signum(x) * Math.floor(Math.abs(x) * scale + 0.5) / scale;
+        }
+    }
+
+    private record Extremum(boolean max, Node[] arguments) implements Node {
+        public double eval(ValueLookup lookup) {
+            double result = arguments[0].eval(lookup);
+            for (int i = 1; i < arguments.length; i++) {
+                double next = arguments[i].eval(lookup);
+                result = max ? Math.max(result, next) : Math.min(result, next);
+            }
+            return result;
+        }
+    }
+
+    private record Conditional(Node condition, Node whenTrue, Node whenFalse) implements Node {
+        public double eval(ValueLookup lookup) {
+            return condition.eval(lookup) != 0 ? whenTrue.eval(lookup) : whenFalse.eval(lookup);
+        }
+    }
+
+
+    private static final class Parser {
+        private final String source;
+        private final Set<String> placeholders = new LinkedHashSet<>();
+        private int position;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        Node parseExpression() {
+            Node left = parseAdditive();
+            skipWhitespace();
+            String operator = comparisonOperator();
+            if (operator == null) {
+                return left;
+            }
+            position += operator.length();
+            return new Compare(operator, left, parseAdditive());
+        }
+
+        private String comparisonOperator() {
+            if (atEnd()) {
+                return null;
+            }
+            char c = source.charAt(position);
+            char next = position + 1 < source.length() ? source.charAt(position + 1) : 0;
+            if (c == '<') {
+                return next == '=' ? "<=" : next == '>' ? "<>" : "<";
+            }
+            if (c == '>') {
+                return next == '=' ? ">=" : ">";
+            }
+            if (c == '=') {
+                return "=";
+            }
+            return null;
+        }
+
+        private Node parseAdditive() {
+            Node node = parseTerm();
+            while (true) {
+                skipWhitespace();
+                if (consume('+')) {
+                    node = new Binary('+', node, parseTerm());
+                } else if (consume('-')) {
+                    node = new Binary('-', node, parseTerm());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseTerm() {
+            Node node = parseUnary();
+            while (true) {
+                skipWhitespace();
+                if (consume('*')) {
+                    node = new Binary('*', node, parseUnary());
+                } else if (consume('/')) {
+                    node = new Binary('/', node, parseUnary());
+                } else {
+                    return node;
+                }
+            }
+        }
+
+        private Node parseUnary() {
+            skipWhitespace();
+            if (consume('-')) {
+                Node operand = parseUnary();
+                return operand instanceof Constant constant ? new Constant(-constant.value()) : new Negate(operand);
+            }
+            if (consume('+')) {
+                return parseUnary();
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            skipWhitespace();
+            if (atEnd()) {
+                throw error("Неочікуваний кінець формули");
+            }
+            char c = source.charAt(position);
+            if (consume('(')) {
+                Node inner = parseExpression();
+                expect(')');
+                return inner;
+            }
+            if (source.startsWith("{{", position)) {
+                return parsePlaceholder();
+            }
+            if (Character.isDigit(c) || c == '.') {
+                return parseNumber();
+            }
+            if (Character.isLetter(c)) {
+                return parseFunction();
+            }
+            throw error("Неочікуваний символ");
+        }
+
+        private Node parsePlaceholder() {
+            int end = source.indexOf("}}", position + 2);
+            if (end < 0 || end == position + 2) {
+                throw error("Незакритий плейсхолдер");
+            }
+            String placeholder = source.substring(position, end + 2);
+            position = end + 2;
+            placeholders.add(placeholder);
+            return new Variable(placeholder);
+        }
+
+        private Node parseNumber() {
+            int start = position;
+            while (!atEnd() && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                position++;
+            }
+            try {
+                return new Constant(Double.parseDouble(source.substring(start, position)));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Некоректне число");
+            }
+        }
+
+        private Node parseFunction() {
+            int start = position;
+            while (!atEnd() && Character.isLetter(source.charAt(position))) {
+                position++;
+            }
+            String name = source.substring(start, position).toUpperCase(Locale.ROOT);
+            skipWhitespace();
+            expect('(');
+            List<Node> arguments = new ArrayList<>();
+            skipWhitespace();
+            if (!consume(')')) {
+                do {
+                    arguments.add(parseExpression());
+                    skipWhitespace();
+                } while (consume(',') || consume(';'));
+                expect(')');
+            }
+
+            int count = arguments.size();
+            switch (name) {
+                case "ROUND":
+                    requireArguments(name, count, 1, 2, start);
+                    return new Round(arguments.get(0), count == 2 ? arguments.get(1) : null);
+                case "MIN":
+                case "MAX":
+                    requireArguments(name, count, 1, Integer.MAX_VALUE, start);
+                    return new Extremum("MAX".equals(name), arguments.toArray(new Node[0]));
+                case "IF":
+                    requireArguments(name, count, 3, 3, start);
+                    return new Conditional(arguments.get(0), arguments.get(1), arguments.get(2));
+                default:
+                    position = start;
+                    throw error("Невідома функція " + name);
+            }
+        }
+
+        private void requireArguments(String name, int count, int min, int max, int start) {
+            if (count < min || count > max) {
+                position = start;
+                throw error("Неправильна кількість аргументів функції " + name);
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean atEnd() {
+            return position >= source.length();
+        }
+
+        private boolean consume(char expected) {
+            if (!atEnd() && source.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            skipWhitespace();
+            if (!consume(expected)) {
+                throw error("Очікується '" + expected + "'");
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " у позиції " + (position + 1) + ": " + source);
+        }
+    }
+}
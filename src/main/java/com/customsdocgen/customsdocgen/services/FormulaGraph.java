@@ -0,0 +1,169 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+final class FormulaGraph {
+
+    private final List<FormulaNode> nodes;
+    private final Map<String, BitSet> downstream;
+    private final List<String> cyclicPlaceholders;
+
+    private FormulaGraph(List<FormulaNode> nodes, Map<String, BitSet> downstream, List<String> cyclicPlaceholders) {
+        this.nodes = nodes;
+        this.downstream = downstream;
+        this.cyclicPlaceholders = cyclicPlaceholders;
+    }
+
+
+    static FormulaGraph build(List<FieldConfig> fields) {
+        List<FieldConfig> formulaFields = fields.stream()
+                .filter(field -> "formula".equals(field.getFieldType()) && field.getFormula() != null)
+                .toList();
+
+        Map<String, Integer> indexByPlaceholder = new HashMap<>();
+        for (int i = 0; i < formulaFields.size(); i++) {
+            indexByPlaceholder.putIfAbsent(formulaFields.get(i).getPlaceholder(), Integer.valueOf(i));
+        }
+
+        List<Set<String>> inputs = new ArrayList<>(formulaFields.size());
+        int[] pendingInputs = new int[formulaFields.size()];
+        List<List<Integer>> dependents = new ArrayList<>(formulaFields.size());
+        for (int i = 0; i < formulaFields.size(); i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < formulaFields.size(); i++) {
+            Set<String> used = placeholdersIn(formulaFields.get(i).getFormula());
+            inputs.add(used);
+            for (String placeholder : used) {
+                Integer source = indexByPlaceholder.get(placeholder);
+                if (source != null) {
+                    pendingInputs[i]++;
+                    dependents.get(source.intValue()).add(Integer.valueOf(i));
+                }
+            }
+        }
+
+        Comparator<Integer> byOrder = Comparator
+                .comparingInt((Integer i) -> formulaFields.get(i.intValue()).getOrder())
+                .thenComparingInt(Integer::intValue);
+        PriorityQueue<Integer> ready = new PriorityQueue<>(byOrder);
+        for (int i = 0; i < formulaFields.size(); i++) {
+            if (pendingInputs[i] == 0) {
+                ready.add(Integer.valueOf(i));
+            }
+        }
+
+        List<Integer> sorted = new ArrayList<>(formulaFields.size());
+        while (!ready.isEmpty()) {
+            Integer next = ready.poll();
+            sorted.add(next);
+            for (Integer dependent : dependents.get(next.intValue())) {
+                if (--pendingInputs[dependent.intValue()] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        List<String> cyclic = new ArrayList<>();
+        if (sorted.size() < formulaFields.size()) {
+            BitSet placed = new BitSet(formulaFields.size());
+            sorted.forEach(i -> placed.set(i.intValue()));
+            for (int i = placed.nextClearBit(0); i < formulaFields.size(); i = placed.nextClearBit(i + 1)) {
+                sorted.add(Integer.valueOf(i));
+                cyclic.add(formulaFields.get(i).getPlaceholder());
+            }
+        }
+
+        List<FormulaNode> nodes = new ArrayList<>(sorted.size());
+        for (Integer index : sorted) {
+            FieldConfig field = formulaFields.get(index.intValue());
+            nodes.add(new FormulaNode(field, compileOrNull(field.getFormula()),
+                    cyclic.contains(field.getPlaceholder()), inputs.get(index.intValue())));
+        }
+
+        return new FormulaGraph(List.copyOf(nodes), downstreamClosures(nodes), List.copyOf(cyclic));
+    }
+
+
+    private static Map<String, BitSet> downstreamClosures(List<FormulaNode> nodes) {
+        Map<String, BitSet> downstream = new HashMap<>();
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            FormulaNode node = nodes.get(i);
+            BitSet reach = new BitSet(nodes.size());
+            reach.set(i);
+            BitSet fromOutput = downstream.get(node.placeholder());
+            if (fromOutput != null) {
+                reach.or(fromOutput);
+            }
+            for (String input : node.inputs()) {
+                downstream.computeIfAbsent(input, key -> new BitSet(nodes.size())).or(reach);
+            }
+        }
+        return downstream;
+    }
+
+
+    private static FormulaExpression compileOrNull(String formula) {
+        if (formula.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return FormulaExpression.compile(formula);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    private static Set<String> placeholdersIn(String formula) {
+        Set<String> placeholders = new LinkedHashSet<>();
+        Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(formula);
+        while (matcher.find()) {
+            placeholders.add(matcher.group(0));
+        }
+        return placeholders;
+    }
+
+
+    void requireAcyclic() {
+        if (!cyclicPlaceholders.isEmpty()) {
+            throw new IllegalArgumentException("Циклічна залежність у формулах: " + String.join(", ", cyclicPlaceholders));
+        }
+    }
+
+
+    List<FormulaNode> nodes() {
+        return nodes;
+    }
+
+
+    BitSet affectedBy(Collection<String> changedPlaceholders) {
+        BitSet affected = new BitSet(nodes.size());
+        for (String placeholder : changedPlaceholders) {
+            BitSet reach = downstream.get(placeholder);
+            if (reach != null) {
+                affected.or(reach);
+            }
+        }
+        return affected;
+    }
+
+
+    record FormulaNode(FieldConfig field, FormulaExpression expression, boolean cyclic, Set<String> inputs) {
+        String placeholder() {
+            return field.getPlaceholder();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.Pxg3D;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+final class FormulaRecalculator {
+
+    private static final Logger log = LoggerFactory.getLogger(FormulaRecalculator.class);
+    private static final Set<String> INDIRECT_FUNCTIONS = Set.of("INDIRECT", "OFFSET");
+
+    private final XSSFWorkbook workbook;
+    private final boolean enabled;
+    private final Set<Cell> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    FormulaRecalculator(XSSFWorkbook workbook, boolean enabled) {
+        this.workbook = workbook;
+        this.enabled = enabled;
+    }
+
+
+    void changed(Cell cell) {
+        if (enabled && cell.getCellType() != CellType.FORMULA) {
+            changed.add(cell);
+        }
+    }
+
+
+    void removed(Row row) {
+        if (enabled && !changed.isEmpty()) {
+            changed.removeIf(cell -> cell.getRow() == row);
+        }
+    }
+
+
+    int recalculate() {
+        if (!enabled || changed.isEmpty()) {
+            return 0;
+        }
+
+        Map<Integer, NavigableMap<Integer, BitSet>> index = new HashMap<>();
+        for (Cell cell : changed) {
+            mark(index, workbook.getSheetIndex(cell.getSheet()), cell.getRowIndex(), cell.getColumnIndex());
+        }
+
+        XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(workbook);
+        List<FormulaCell> formulas = formulaCells();
+        List<Cell> dependents = new ArrayList<>();
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (FormulaCell formula : formulas) {
+                if (formula.dependent || !formula.crossSheet && !index.containsKey(Integer.valueOf(formula.sheetIndex))) {
+                    continue;
+                }
+                if (formula.areas == null) {
+                    parse(evaluationWorkbook, formula);
+                }
+                if (formula.dependsOn(index)) {
+                    formula.dependent = true;
+                    dependents.add(formula.cell);
+                    mark(index, formula.sheetIndex, formula.cell.getRowIndex(), formula.cell.getColumnIndex());
+                    found = true;
+                }
+            }
+        }
+
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        int failed = 0;
+        for (Cell cell : dependents) {
+            try {
+                evaluator.evaluateFormulaCell(cell);
+            } catch (RuntimeException e) {
+                failed++;
+                log.debug("Formula {}!{} was not evaluated: {}", cell.getSheet().getSheetName(),
+                    cell.getAddress(), e.getMessage());
+            }
+        }
+        if (failed > 0) {
+            log.warn("{} of {} dependent formulas could not be evaluated and keep their cached values",
+                Integer.valueOf(failed), Integer.valueOf(dependents.size()));
+        }
+        return dependents.size() - failed;
+    }
+
+
+    private List<FormulaCell> formulaCells() {
+        boolean indirectSheets = hasUserNamesOrTables();
+        List<FormulaCell> formulas = new ArrayList<>();
+        for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+            XSSFSheet sheet = workbook.getSheetAt(sheetIndex);
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        formulas.add(new FormulaCell((XSSFCell) cell, sheetIndex,
+                            indirectSheets || referencesOtherSheets(sheet, (XSSFCell) cell)));
+                    }
+                }
+            }
+        }
+        return formulas;
+    }
+
+
+    private boolean hasUserNamesOrTables() {
+        for (Name name : workbook.getAllNames()) {
+            if (!name.getNameName().startsWith("_xlnm.")) {
+                return true;
+            }
+        }
+        for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+            if (!workbook.getSheetAt(sheetIndex).getTables().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean referencesOtherSheets(XSSFSheet sheet, XSSFCell cell) {
+        CTCellFormula formula = cell.getCTCell().getF();
+        if (formula.getT() == STCellFormulaType.SHARED) {
+            CTCellFormula master = sheet.getSharedFormula((int) formula.getSi());
+            if (master != null) {
+                formula = master;
+            }
+        }
+        return formula.getStringValue().indexOf('!') >= 0;
+    }
+
+
+    private void parse(XSSFEvaluationWorkbook evaluationWorkbook, FormulaCell formula) {
+        Ptg[] tokens;
+        try {
+            tokens = FormulaParser.parse(formula.cell.getCellFormula(), evaluationWorkbook, FormulaType.CELL,
+                formula.sheetIndex, formula.cell.getRowIndex());
+        } catch (RuntimeException e) {
+            formula.indirect = true;
+            formula.areas = List.of();
+            return;
+        }
+
+        List<int[]> areas = new ArrayList<>();
+        for (Ptg token : tokens) {
+            if (token instanceof NamePtg || token instanceof NameXPxg || token instanceof Pxg3D
+                || token instanceof AbstractFunctionPtg function && INDIRECT_FUNCTIONS.contains(function.getName())) {
+                formula.indirect = true;
+                formula.areas = List.of();
+                return;
+            }
+            int targetSheet = formula.sheetIndex;
+            if (token instanceof Pxg reference) {
+                if (reference.getExternalWorkbookNumber() > 0) {
+                    continue;
+                }
+                targetSheet = workbook.getSheetIndex(reference.getSheetName());
+            }
+            if (token instanceof RefPtgBase ref) {
+                areas.add(new int[] {targetSheet, ref.getRow(), ref.getRow(), ref.getColumn(), ref.getColumn()});
+            } else if (token instanceof AreaPtgBase area) {
+                areas.add(new int[] {targetSheet, area.getFirstRow(), area.getLastRow(),
+                    area.getFirstColumn(), area.getLastColumn()});
+            }
+        }
+        formula.areas = areas;
+    }
+
+
+    private static void mark(Map<Integer, NavigableMap<Integer, BitSet>> index, int sheetIndex, int row, int column) {
+        index.computeIfAbsent(Integer.valueOf(sheetIndex), key -> new TreeMap<>())
+            .computeIfAbsent(Integer.valueOf(column), key -> new BitSet())
+            .set(row);
+    }
+
+
+    private static final class FormulaCell {
+
+        private final XSSFCell cell;
+        private final int sheetIndex;
+        private final boolean crossSheet;
+        private List<int[]> areas;
+        private boolean indirect;
+        private boolean dependent;
+
+        private FormulaCell(XSSFCell cell, int sheetIndex, boolean crossSheet) {
+            this.cell = cell;
+            this.sheetIndex = sheetIndex;
+            this.crossSheet = crossSheet;
+        }
+
+
+        private boolean dependsOn(Map<Integer, NavigableMap<Integer, BitSet>> index) {
+            if (indirect) {
+                return true;
+            }
+            for (int[] area : areas) {
+                NavigableMap<Integer, BitSet> columns = index.get(Integer.valueOf(area[0]));
+                if (columns == null) {
+                    continue;
+                }
+                for (BitSet rows : columns.subMap(Integer.valueOf(area[3]), true, Integer.valueOf(area[4]), true).values()) {
+                    int row = rows.nextSetBit(area[1]);
+                    if (row >= 0 && row <= area[2]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+@Service
+public class GenerationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationJobService.class);
+
+    public enum JobStatus { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final DocumentGenerationService documentGenerationService;
+    private final ThreadPoolExecutor executor;
+    private final Path spoolDir;
+    private final long ttlMillis;
+    private final Map<String, GenerationJob> jobs = new ConcurrentHashMap<>();
+
+    public GenerationJobService(DocumentGenerationService documentGenerationService,
+                                @Value("${jobs.max-concurrent:2}") int maxConcurrent,
+                                @Value("${jobs.queue-capacity:16}") int queueCapacity,
+                                @Value("${jobs.spool-dir:}") String spoolDir,
+                                @Value("${jobs.ttl-minutes:60}") long ttlMinutes) throws IOException {
+        this.documentGenerationService = documentGenerationService;
+        int threads = Math.max(1, maxConcurrent);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            Thread.ofPlatform().name("generation-job-", 0).daemon(true).factory());
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.spoolDir = spoolDir.isBlank()
+            ? Path.of(System.getProperty("java.io.tmpdir"), "customs-doc-gen-jobs")
+            : Path.of(spoolDir);
+        Files.createDirectories(this.spoolDir);
+        clearSpoolDir();
+    }
+
+
+    public String submitArchive(List<String> templateIds, Map<String, String> fieldValues,
+                                Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) {
+        return submit(documentGenerationService.archiveFileName(fieldValues), (out, progress) ->
+            documentGenerationService.writeArchive(out, templateIds, fieldValues, originalFlags, pdfFlags, progress));
+    }
+
+
+    public String submitBatch(List<Map<String, String>> records, List<String> templateIds,
+                              Map<String, Boolean> originalFlags, Map<String, Boolean> pdfFlags) {
+        return submit("Batch_" + records.size() + ".zip", (out, progress) ->
+            documentGenerationService.writeBatchArchive(out, records, templateIds, originalFlags, pdfFlags, progress));
+    }
+
+
+    private String submit(String fileName, ArchiveJob work) {
+        GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), fileName);
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, work));
+        } catch (RuntimeException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job.id;
+    }
+
+
+    private void run(GenerationJob job, ArchiveJob work) {
+        if (!job.status.compareAndSet(JobStatus.QUEUED, JobStatus.RUNNING)) {
+            return;
+        }
+        job.stage = "rendering";
+
+        Path partFile = spoolDir.resolve(job.id + ".part");
+        Path resultFile = spoolDir.resolve(job.id + ".zip");
+        try {
+            try (OutputStream out = Files.newOutputStream(partFile)) {
+                work.write(out, (done, total, stage) -> {
+                    job.done = done;
+                    job.total = total;
+                    job.stage = stage;
+                });
+            }
+            Files.move(partFile, resultFile, StandardCopyOption.REPLACE_EXISTING);
+            job.resultFile = resultFile;
+            if (!job.status.compareAndSet(JobStatus.RUNNING, JobStatus.COMPLETED)) {
+                deleteQuietly(resultFile);
+                return;
+            }
+            job.stage = "done";
+        } catch (Exception e) {
+            deleteQuietly(partFile);
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (job.status.compareAndSet(JobStatus.RUNNING, JobStatus.FAILED)) {
+                log.warn("Generation job {} failed: {}", job.id, e.getMessage());
+            }
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+
+    public Map<String, Object> getStatus(String jobId) {
+        GenerationJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", job.id);
+        status.put("status", job.status.get().name());
+        status.put("stage", job.stage);
+        status.put("done", Integer.valueOf(job.done));
+        status.put("total", Integer.valueOf(job.total));
+        status.put("fileName", job.fileName);
+        if (job.error != null) {
+            status.put("error", job.error);
+        }
+        status.put("createdAt", Long.valueOf(job.createdAt));
+        if (job.finishedAt > 0) {
+            status.put("expiresAt", Long.valueOf(job.finishedAt + ttlMillis));
+        }
+        return status;
+    }
+
+
+    public JobResult getResult(String jobId) {
+        GenerationJob job = jobs.get(jobId);
+        if (job == null || job.status.get() != JobStatus.COMPLETED || !Files.exists(job.resultFile)) {
+            return null;
+        }
+        return new JobResult(job.resultFile, job.fileName);
+    }
+
+
+    public boolean cancel(String jobId) {
+        GenerationJob job = jobs.remove(jobId);
+        if (job == null) {
+            return false;
+        }
+        JobStatus current;
+        do {
+            current = job.status.get();
+        } while (isActive(current) && !job.status.compareAndSet(current, JobStatus.CANCELLED));
+        if (isActive(current) && job.future != null) {
+            job.future.cancel(true);
+        }
+        Path resultFile = job.resultFile;
+        if (resultFile != null) {
+            deleteQuietly(resultFile);
+        }
+        return true;
+    }
+
+
+    private static boolean isActive(JobStatus status) {
+        return status == JobStatus.QUEUED || status == JobStatus.RUNNING;
+    }
+
+
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval-ms:60000}")
+    public void expireJobs() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt > 0 && now - job.finishedAt > ttlMillis;
+            if (expired && job.resultFile != null) {
+                deleteQuietly(job.resultFile);
+            }
+            return expired;
+        });
+    }
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", Integer.valueOf(executor.getActiveCount()));
+        stats.put("queueSize", Integer.valueOf(executor.getQueue().size()));
+        stats.put("maxConcurrent", Integer.valueOf(executor.getMaximumPoolSize()));
+        for (JobStatus status : JobStatus.values()) {
+            stats.put(status.name().toLowerCase(Locale.ROOT), Long.valueOf(
+                jobs.values().stream().filter(job -> job.status.get() == status).count()));
+        }
+        return stats;
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        clearSpoolDir();
+    }
+
+
+    private void clearSpoolDir() {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".zip")
+                    || file.getFileName().toString().endsWith(".part"))
+                .forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Failed to clean job spool directory {}: {}", spoolDir, e.getMessage());
+        }
+    }
+
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    public record JobResult(Path file, String fileName) {
+    }
+
+
+    @FunctionalInterface
+    private interface ArchiveJob {
+        void write(OutputStream out, DocumentGenerationService.ArchiveProgress progress) throws Exception;
+    }
+
+
+    private static final class GenerationJob {
+        private final String id;
+        private final String fileName;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicReference<JobStatus> status = new AtomicReference<>(JobStatus.QUEUED);
+        private volatile String stage = "queued";
+        private volatile int done;
+        private volatile int total;
+        private volatile String error;
+        private volatile Path resultFile;
+        private volatile long finishedAt;
+        private volatile Future<?> future;
+
+        GenerationJob(String id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+    }
+}
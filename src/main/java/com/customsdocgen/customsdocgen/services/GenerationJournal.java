@@ -0,0 +1,374 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class GenerationJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationJournal.class);
+    private static final String CONTRACT_PLACEHOLDER = "{{CONTRACT_NUMBER}}";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d{6})\\.jsonl(\\.gz)?");
+    private static final int WRITE_BATCH = 512;
+
+    private final boolean enabled;
+    private final Path journalDir;
+    private final long segmentMaxBytes;
+    private final int indexMaxEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<JournalEntry> queue;
+    private final StorageLog indexLog;
+    private final Deque<IndexEntry> index = new ArrayDeque<>();
+    private final Map<String, IndexEntry> indexById = new HashMap<>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private int segment;
+    private BufferedWriter segmentWriter;
+    private long segmentSize;
+
+    public GenerationJournal(@Value("${journal.enabled:true}") boolean enabled,
+                             @Value("${journal.dir:data/journal}") String journalDir,
+                             @Value("${journal.segment-max-bytes:16777216}") long segmentMaxBytes,
+                             @Value("${journal.queue-capacity:10000}") int queueCapacity,
+                             @Value("${journal.index-max-entries:200000}") int indexMaxEntries) throws IOException {
+        this.enabled = enabled;
+        this.journalDir = Path.of(journalDir);
+        this.segmentMaxBytes = Math.max(1024, segmentMaxBytes);
+        this.indexMaxEntries = Math.max(1, indexMaxEntries);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.indexLog = new StorageLog(this.journalDir.resolve("index.jsonl"), objectMapper);
+
+        if (!enabled) {
+            this.writerThread = null;
+            return;
+        }
+
+        Files.createDirectories(this.journalDir);
+        openLatestSegment();
+        indexLog.replay(IndexEntry.class, this::addToIndex);
+        if (indexLog.entries() > index.size()) {
+            indexLog.rewrite(index);
+        }
+        log.info("Generation journal opened: {} entries indexed, current segment {}",
+                Integer.valueOf(index.size()), Integer.valueOf(segment));
+
+        this.writerThread = Thread.ofPlatform().name("generation-journal").daemon(true).start(this::writeLoop);
+    }
+
+
+    public void record(TemplateConfig template, String templateHash, Map<String, String> cellTypes, String fileName,
+                       Map<String, String> values, boolean pdf, long outputSize, long elapsedNanos) {
+        if (!enabled) {
+            return;
+        }
+        JournalEntry entry = new JournalEntry(UUID.randomUUID().toString(), System.currentTimeMillis(),
+                template.getId(), template.getFileName(), templateHash, template.getRenderEngine(),
+                template.getEvaluateFormulas(), cellTypes.isEmpty() ? null : cellTypes, fileName,
+                values.get(CONTRACT_PLACEHOLDER), pdf, outputSize, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), values);
+        if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+
+    public List<JournalEntry> search(String contractNumber, Long fromMillis, Long toMillis, int limit) throws IOException {
+        String contract = contractNumber != null && !contractNumber.isBlank()
+                ? contractNumber.trim().toLowerCase(Locale.ROOT) : null;
+
+        List<String> matchedIds = new ArrayList<>();
+        Map<Integer, Set<String>> idsBySegment = new TreeMap<>();
+        synchronized (index) {
+            for (Iterator<IndexEntry> newest = index.descendingIterator(); newest.hasNext() && matchedIds.size() < limit; ) {
+                IndexEntry entry = newest.next();
+                if ((contract == null || contract.equals(entry.contract()))
+                        && (fromMillis == null || entry.timestamp() >= fromMillis.longValue())
+                        && (toMillis == null || entry.timestamp() <= toMillis.longValue())) {
+                    idsBySegment.computeIfAbsent(Integer.valueOf(entry.segment()), key -> new HashSet<>()).add(entry.id());
+                    matchedIds.add(entry.id());
+                }
+            }
+        }
+
+        Map<String, JournalEntry> byId = new HashMap<>();
+        for (Map.Entry<Integer, Set<String>> segmentIds : idsBySegment.entrySet()) {
+            for (JournalEntry entry : readSegment(segmentIds.getKey().intValue(), segmentIds.getValue())) {
+                byId.put(entry.id(), entry);
+            }
+        }
+
+        List<JournalEntry> entries = new ArrayList<>(matchedIds.size());
+        for (String id : matchedIds) {
+            JournalEntry entry = byId.get(id);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+
+    public JournalEntry get(String id) throws IOException {
+        IndexEntry entry;
+        synchronized (index) {
+            entry = indexById.get(id);
+        }
+        if (entry == null) {
+            return null;
+        }
+        List<JournalEntry> entries = readSegment(entry.segment(), Set.of(id));
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", Boolean.valueOf(enabled));
+        stats.put("queued", Integer.valueOf(queue.size()));
+        stats.put("written", Long.valueOf(written.get()));
+        stats.put("dropped", Long.valueOf(dropped.get()));
+        stats.put("failures", Long.valueOf(failures.get()));
+        synchronized (index) {
+            stats.put("indexed", Integer.valueOf(index.size()));
+        }
+        return stats;
+    }
+
+
+    private void writeLoop() {
+        List<JournalEntry> batch = new ArrayList<>(WRITE_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalEntry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, WRITE_BATCH - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                failures.addAndGet(batch.size());
+                log.warn("Failed to write generation journal: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+
+    private void writeBatch(List<JournalEntry> batch) throws IOException {
+        List<IndexEntry> indexed = new ArrayList<>(batch.size());
+        for (JournalEntry entry : batch) {
+            String line = objectMapper.writeValueAsString(entry);
+            segmentWriter.write(line);
+            segmentWriter.write('\n');
+            segmentSize += line.getBytes(StandardCharsets.UTF_8).length + 1;
+
+            String contract = entry.contractNumber() != null ? entry.contractNumber().trim().toLowerCase(Locale.ROOT) : null;
+            IndexEntry indexEntry = new IndexEntry(entry.id(), entry.timestamp(), contract, segment);
+            indexLog.append(indexEntry);
+            indexed.add(indexEntry);
+        }
+        segmentWriter.flush();
+        indexLog.flush(false);
+
+        List<IndexEntry> retained = null;
+        synchronized (index) {
+            indexed.forEach(this::addToIndex);
+            if (indexLog.entries() >= 2L * indexMaxEntries) {
+                retained = new ArrayList<>(index);
+            }
+        }
+        if (retained != null) {
+            indexLog.rewrite(retained);
+        }
+        written.addAndGet(batch.size());
+
+        if (segmentSize >= segmentMaxBytes) {
+            rotate();
+        }
+    }
+
+
+    private void addToIndex(IndexEntry entry) {
+        index.addLast(entry);
+        indexById.put(entry.id(), entry);
+        if (index.size() > indexMaxEntries) {
+            IndexEntry evicted = index.removeFirst();
+            indexById.remove(evicted.id(), evicted);
+        }
+    }
+
+
+    private void openLatestSegment() throws IOException {
+        int latest = 0;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    latest = Math.max(latest, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+
+        segment = Files.exists(segmentFile(latest, true)) || latest == 0 ? latest + 1 : latest;
+        openSegment();
+    }
+
+
+    private void openSegment() throws IOException {
+        Path file = segmentFile(segment, false);
+        segmentWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        segmentSize = Files.size(file);
+    }
+
+
+    private void rotate() throws IOException {
+        int closed = segment;
+        try {
+            segmentWriter.close();
+        } finally {
+            segment++;
+            openSegment();
+        }
+        compressSegment(closed);
+    }
+
+
+    private void compressSegment(int segmentNumber) {
+        Path plain = segmentFile(segmentNumber, false);
+        Path compressed = segmentFile(segmentNumber, true);
+        Path temp = compressed.resolveSibling(compressed.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                Files.copy(plain, out);
+            }
+            Files.move(temp, compressed, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(plain);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to compress generation journal segment {}, keeping it uncompressed: {}",
+                    Integer.valueOf(segmentNumber), e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException deleteFailure) {
+                log.debug("Failed to delete {}: {}", temp, deleteFailure.getMessage());
+            }
+        }
+    }
+
+
+    private List<JournalEntry> readSegment(int segmentNumber, Set<String> ids) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openSegmentForRead(segmentNumber),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && entries.size() < ids.size()) {
+                try {
+                    JournalEntry entry = objectMapper.readValue(line, JournalEntry.class);
+                    if (ids.contains(entry.id())) {
+                        entries.add(entry);
+                    }
+                } catch (IOException e) {
+                    log.debug("Skipping unreadable journal line in segment {}", Integer.valueOf(segmentNumber));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.warn("Generation journal segment {} is missing", Integer.valueOf(segmentNumber));
+        }
+        return entries;
+    }
+
+
+    private InputStream openSegmentForRead(int segmentNumber) throws IOException {
+        Path compressed = segmentFile(segmentNumber, true);
+        if (Files.exists(compressed)) {
+            return new GZIPInputStream(Files.newInputStream(compressed));
+        }
+        try {
+            return Files.newInputStream(segmentFile(segmentNumber, false));
+        } catch (NoSuchFileException e) {
+            return new GZIPInputStream(Files.newInputStream(compressed));
+        }
+    }
+
+
+    private Path segmentFile(int segmentNumber, boolean compressed) {
+        return journalDir.resolve(String.format("journal-%06d.jsonl%s", Integer.valueOf(segmentNumber),
+                compressed ? ".gz" : ""));
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            segmentWriter.close();
+            indexLog.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to close generation journal: {}", e.getMessage());
+        }
+    }
+
+
+    public record JournalEntry(String id, long timestamp, String templateId, String templateFileName,
+                               String templateHash, String renderEngine, Boolean evaluateFormulas,
+                               Map<String, String> cellTypes, String fileName, String contractNumber, boolean pdf,
+                               long outputSize, long durationMillis, Map<String, String> values) {
+    }
+
+
+    record IndexEntry(String id, long timestamp, String contract, int segment) {
+    }
+}
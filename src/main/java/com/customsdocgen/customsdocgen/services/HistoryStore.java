@@ -0,0 +1,26 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public interface HistoryStore {
+
+    void load(HistoryReplay replay) throws IOException;
+
+    void valueUsed(String fieldId, String value);
+
+    void valueRemoved(String fieldId, String value);
+
+    void flush(Supplier<Map<String, List<String>>> history) throws IOException;
+
+    String describe();
+
+
+    interface HistoryReplay {
+        void used(String fieldId, String value);
+
+        void removed(String fieldId, String value);
+    }
+}
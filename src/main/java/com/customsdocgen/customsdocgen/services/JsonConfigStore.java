@@ -0,0 +1,61 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.AppConfig;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Service
+@ConditionalOnProperty(name = "storage.engine", havingValue = "json", matchIfMissing = true)
+public class JsonConfigStore implements ConfigStore {
+
+    private final Path configFile;
+    private final ObjectMapper objectMapper;
+
+    public JsonConfigStore(@Value("${storage.base-dir:.}") String baseDir,
+                           @Value("${config.file:config.json}") String configFile) {
+        this.configFile = StorageLog.resolve(baseDir, configFile);
+        this.objectMapper = JsonMapper.builder()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(JsonWriteFeature.ESCAPE_NON_ASCII)
+            .build();
+    }
+
+
+    @Override
+    public AppConfig load() throws IOException {
+        if (!Files.exists(configFile)) {
+            return null;
+        }
+        try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(configFile), StandardCharsets.UTF_8)) {
+            return objectMapper.readValue(reader, AppConfig.class);
+        }
+    }
+
+
+    @Override
+    public void save(ConfigMutation mutation, AppConfig config) throws IOException {
+        export(config);
+    }
+
+
+    void export(AppConfig config) throws IOException {
+        StorageLog.writeAtomically(configFile, objectMapper.writeValueAsBytes(config));
+    }
+
+
+    @Override
+    public String describe() {
+        return configFile.toString();
+    }
+}
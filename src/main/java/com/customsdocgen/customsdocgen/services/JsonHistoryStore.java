@@ -0,0 +1,78 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Service
+@ConditionalOnProperty(name = "storage.engine", havingValue = "json", matchIfMissing = true)
+public class JsonHistoryStore implements HistoryStore {
+
+    private final Path historyFile;
+    private final ObjectMapper objectMapper;
+
+    public JsonHistoryStore(@Value("${storage.base-dir:.}") String baseDir,
+                            @Value("${history.file:field-values-history.json}") String historyFile) {
+        this.historyFile = StorageLog.resolve(baseDir, historyFile);
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+    }
+
+
+    @Override
+    public void load(HistoryReplay replay) throws IOException {
+        Map<String, List<String>> loaded = read();
+        if (loaded == null) {
+            return;
+        }
+        loaded.forEach((fieldId, values) -> {
+            for (int i = values.size() - 1; i >= 0; i--) {
+                replay.used(fieldId, values.get(i));
+            }
+        });
+    }
+
+
+    Map<String, List<String>> read() throws IOException {
+        if (!Files.exists(historyFile)) {
+            return null;
+        }
+        try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(historyFile), StandardCharsets.UTF_8)) {
+            return objectMapper.readValue(reader, new TypeReference<Map<String, List<String>>>() {});
+        }
+    }
+
+
+    @Override
+    public void valueUsed(String fieldId, String value) {
+    }
+
+
+    @Override
+    public void valueRemoved(String fieldId, String value) {
+    }
+
+
+    @Override
+    public void flush(Supplier<Map<String, List<String>>> history) throws IOException {
+        StorageLog.writeAtomically(historyFile, objectMapper.writeValueAsBytes(history.get()));
+    }
+
+
+    @Override
+    public String describe() {
+        return historyFile.toString();
+    }
+}
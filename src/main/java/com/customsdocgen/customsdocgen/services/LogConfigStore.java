@@ -0,0 +1,102 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.AppConfig;
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "storage.engine", havingValue = "log")
+public class LogConfigStore implements ConfigStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogConfigStore.class);
+
+    private final Path logFile;
+    private final StorageLog storageLog;
+    private final JsonConfigStore jsonExport;
+    private final int compactThreshold;
+    private volatile AppConfig current;
+
+    public LogConfigStore(@Value("${storage.base-dir:.}") String baseDir,
+                          @Value("${storage.dir:data}") String storageDir,
+                          @Value("${config.file:config.json}") String configFile,
+                          @Value("${storage.compact-threshold:1000}") int compactThreshold) {
+        this.logFile = StorageLog.resolve(baseDir, storageDir).resolve("config.log");
+        this.storageLog = new StorageLog(logFile, new ObjectMapper());
+        this.jsonExport = new JsonConfigStore(baseDir, configFile);
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+
+    @Override
+    public synchronized AppConfig load() throws IOException {
+        if (!storageLog.exists()) {
+            AppConfig imported = jsonExport.load();
+            if (imported != null) {
+                storageLog.rewrite(List.of(new ConfigMutation.ReplaceConfig(imported.getFields(), imported.getTemplates())));
+                log.info("Config imported from {} into {}", jsonExport.describe(), describe());
+            }
+            current = imported;
+            return imported;
+        }
+
+        List<FieldConfig> fields = new ArrayList<>();
+        List<TemplateConfig> templates = new ArrayList<>();
+        long entries = storageLog.replay(ConfigMutation.class, mutation -> mutation.apply(fields, templates));
+        log.info("Config log replayed: {} entries", Long.valueOf(entries));
+        current = new AppConfig(fields, templates);
+        return current;
+    }
+
+
+    @Override
+    public synchronized void save(ConfigMutation mutation, AppConfig config) throws IOException {
+        storageLog.append(mutation);
+        storageLog.flush(true);
+        current = config;
+        if (storageLog.entries() > compactThreshold) {
+            compact(config);
+        }
+    }
+
+
+    private void compact(AppConfig config) {
+        try {
+            storageLog.rewrite(List.of(new ConfigMutation.ReplaceConfig(config.getFields(), config.getTemplates())));
+            jsonExport.export(config);
+            log.info("Config log compacted and exported to {}", jsonExport.describe());
+        } catch (IOException e) {
+            log.warn("Failed to compact config log {}: {}", describe(), e.getMessage());
+        }
+    }
+
+
+    @Override
+    public String describe() {
+        return logFile.toString();
+    }
+
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            storageLog.close();
+            if (current != null) {
+                jsonExport.export(current);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close config log: {}", e.getMessage());
+        }
+    }
+}
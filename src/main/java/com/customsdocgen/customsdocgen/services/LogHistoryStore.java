@@ -0,0 +1,143 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Service
+@ConditionalOnProperty(name = "storage.engine", havingValue = "log")
+public class LogHistoryStore implements HistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogHistoryStore.class);
+
+    private final Path logFile;
+    private final StorageLog storageLog;
+    private final JsonHistoryStore jsonExport;
+    private final int compactThreshold;
+    private final List<HistoryEntry> buffer = new ArrayList<>();
+    private Supplier<Map<String, List<String>>> lastHistory;
+
+    public LogHistoryStore(@Value("${storage.base-dir:.}") String baseDir,
+                           @Value("${storage.dir:data}") String storageDir,
+                           @Value("${history.file:field-values-history.json}") String historyFile,
+                           @Value("${storage.compact-threshold:1000}") int compactThreshold) {
+        this.logFile = StorageLog.resolve(baseDir, storageDir).resolve("history.log");
+        this.storageLog = new StorageLog(logFile, new ObjectMapper());
+        this.jsonExport = new JsonHistoryStore(baseDir, historyFile);
+        this.compactThreshold = Math.max(1, compactThreshold);
+    }
+
+
+    @Override
+    public synchronized void load(HistoryReplay replay) throws IOException {
+        if (!storageLog.exists()) {
+            Map<String, List<String>> imported = jsonExport.read();
+            if (imported != null) {
+                storageLog.rewrite(entriesOf(imported));
+                jsonExport.load(replay);
+                log.info("Field values history imported from {} into {}", jsonExport.describe(), describe());
+            }
+            return;
+        }
+
+        long entries = storageLog.replay(HistoryEntry.class, entry -> {
+            if (HistoryEntry.REMOVE.equals(entry.op())) {
+                replay.removed(entry.field(), entry.value());
+            } else {
+                replay.used(entry.field(), entry.value());
+            }
+        });
+        log.info("Field values history log replayed: {} entries", Long.valueOf(entries));
+    }
+
+
+    @Override
+    public void valueUsed(String fieldId, String value) {
+        synchronized (buffer) {
+            buffer.add(new HistoryEntry(HistoryEntry.USE, fieldId, value));
+        }
+    }
+
+
+    @Override
+    public void valueRemoved(String fieldId, String value) {
+        synchronized (buffer) {
+            buffer.add(new HistoryEntry(HistoryEntry.REMOVE, fieldId, value));
+        }
+    }
+
+
+    @Override
+    public synchronized void flush(Supplier<Map<String, List<String>>> history) throws IOException {
+        lastHistory = history;
+        List<HistoryEntry> batch;
+        synchronized (buffer) {
+            batch = new ArrayList<>(buffer);
+        }
+        if (!batch.isEmpty()) {
+            for (HistoryEntry entry : batch) {
+                storageLog.append(entry);
+            }
+            storageLog.flush(false);
+            synchronized (buffer) {
+                buffer.subList(0, batch.size()).clear();
+            }
+        }
+
+        if (storageLog.entries() > compactThreshold) {
+            List<HistoryEntry> live = entriesOf(history.get());
+            if (storageLog.entries() > 2L * live.size()) {
+                storageLog.rewrite(live);
+                jsonExport.flush(history);
+                log.info("Field values history log compacted to {} entries", Integer.valueOf(live.size()));
+            }
+        }
+    }
+
+
+    private static List<HistoryEntry> entriesOf(Map<String, List<String>> history) {
+        List<HistoryEntry> entries = new ArrayList<>();
+        history.forEach((fieldId, values) -> {
+            for (int i = values.size() - 1; i >= 0; i--) {
+                entries.add(new HistoryEntry(HistoryEntry.USE, fieldId, values.get(i)));
+            }
+        });
+        return entries;
+    }
+
+
+    @Override
+    public String describe() {
+        return logFile.toString();
+    }
+
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            storageLog.close();
+            if (lastHistory != null) {
+                jsonExport.flush(lastHistory);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close field values history log: {}", e.getMessage());
+        }
+    }
+
+
+    record HistoryEntry(String op, String field, String value) {
+        static final String USE = "use";
+        static final String REMOVE = "remove";
+    }
+}
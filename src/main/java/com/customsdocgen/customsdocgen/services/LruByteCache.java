@@ -0,0 +1,128 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+final class LruByteCache<K, V> {
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    LruByteCache(long maxBytes, long ttlMillis, ToLongFunction<V> weigher) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.weigher = weigher;
+    }
+
+
+    synchronized V get(K key) {
+        return get(key, value -> true);
+    }
+
+
+    synchronized V get(K key, Predicate<V> stillValid) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            removeEntry(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null || !stillValid.test(entry.value())) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+
+    synchronized boolean put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxBytes) {
+            removeEntry(key);
+            return false;
+        }
+
+        Entry<V> previous = entries.put(key, new Entry<>(value, weight, System.currentTimeMillis()));
+        if (previous != null) {
+            currentBytes -= previous.weight();
+        }
+        currentBytes += weight;
+
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().weight();
+            iterator.remove();
+            evictions++;
+        }
+        return true;
+    }
+
+
+    synchronized void remove(K key) {
+        removeEntry(key);
+    }
+
+
+    synchronized void removeIf(Predicate<K> keyFilter) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (keyFilter.test(entry.getKey())) {
+                currentBytes -= entry.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+
+    synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+
+    synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", Integer.valueOf(entries.size()));
+        stats.put("bytes", Long.valueOf(currentBytes));
+        stats.put("maxBytes", Long.valueOf(maxBytes));
+        stats.put("hits", Long.valueOf(hits));
+        stats.put("misses", Long.valueOf(misses));
+        stats.put("evictions", Long.valueOf(evictions));
+        stats.put("expirations", Long.valueOf(expirations));
+        return stats;
+    }
+
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt() > ttlMillis;
+    }
+
+
+    private void removeEntry(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.weight();
+        }
+    }
+
+
+    private record Entry<V>(V value, long weight, long createdAt) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Map;
+
+final class PackageRewriter {
+
+    private PackageRewriter() {
+    }
+
+
+    static byte[] rewrite(byte[] template, PartSelector selector, Map<String, String> fieldValues)
+            throws IOException, XMLStreamException {
+        SeekableInMemoryByteChannel output = new SeekableInMemoryByteChannel();
+        try (ZipFile zip = ZipFile.builder().setSeekableByteChannel(new SeekableInMemoryByteChannel(template)).get();
+             ZipArchiveOutputStream zos = new ZipArchiveOutputStream(output)) {
+            zos.setUseZip64(Zip64Mode.Never);
+            for (Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder(); entries.hasMoreElements(); ) {
+                ZipArchiveEntry entry = entries.nextElement();
+                XmlTextRewriter rewriter = selector.rewriterFor(zip, entry);
+                if (rewriter == null) {
+                    zos.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                    continue;
+                }
+
+                ZipArchiveEntry rewritten = new ZipArchiveEntry(entry.getName());
+                rewritten.setMethod(ZipArchiveEntry.DEFLATED);
+                rewritten.setTime(entry.getTime());
+                zos.putArchiveEntry(rewritten);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    rewriter.rewrite(in, zos, fieldValues);
+                }
+                zos.closeArchiveEntry();
+            }
+            zos.finish();
+        }
+        return Arrays.copyOf(output.array(), (int) output.size());
+    }
+
+
+    static boolean contains(InputStream in, byte[] marker) throws IOException {
+        byte[] buffer = new byte[65536];
+        int carried = 0;
+        int read;
+        while ((read = in.read(buffer, carried, buffer.length - carried)) > 0) {
+            int length = carried + read;
+            for (int start = 0; start + marker.length <= length; start++) {
+                if (buffer[start] == marker[0]
+                        && Arrays.equals(buffer, start, start + marker.length, marker, 0, marker.length)) {
+                    return true;
+                }
+            }
+            carried = Math.min(marker.length - 1, length);
+            System.arraycopy(buffer, length - carried, buffer, 0, carried);
+        }
+        return false;
+    }
+
+
+    interface PartSelector {
+
+        XmlTextRewriter rewriterFor(ZipFile zip, ZipArchiveEntry entry) throws IOException;
+    }
+}
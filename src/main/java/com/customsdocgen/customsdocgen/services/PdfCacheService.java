@@ -0,0 +1,221 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Service
+public class PdfCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfCacheService.class);
+    private static final String PDF_SUFFIX = ".pdf";
+
+    private final boolean enabled;
+    private final LruByteCache<String, byte[]> memory;
+    private final long ttlMillis;
+    private final Path diskDir;
+    private final long diskMaxBytes;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+
+    public PdfCacheService(@Value("${pdf.cache.enabled:true}") boolean enabled,
+                           @Value("${pdf.cache.max-bytes:134217728}") long maxBytes,
+                           @Value("${pdf.cache.ttl-minutes:1440}") long ttlMinutes,
+                           @Value("${pdf.cache.dir:}") String diskDir,
+                           @Value("${pdf.cache.disk-max-bytes:1073741824}") long diskMaxBytes) {
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.memory = new LruByteCache<>(maxBytes, ttlMillis, pdf -> pdf.length);
+        this.diskMaxBytes = diskMaxBytes;
+        this.diskDir = enabled && !diskDir.isBlank() ? initDiskDir(Path.of(diskDir)) : null;
+    }
+
+
+    public String keyFor(byte[] sourceBytes, String sourceFormat) {
+        return sourceFormat + "-" + ContentHash.packageDigest(sourceBytes);
+    }
+
+
+    public byte[] get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        lookups.incrementAndGet();
+
+        byte[] pdf = memory.get(key);
+        if (pdf != null) {
+            memoryHits.incrementAndGet();
+            bytesSaved.addAndGet(pdf.length);
+            return pdf;
+        }
+
+        pdf = readFromDisk(key);
+        if (pdf != null) {
+            diskHits.incrementAndGet();
+            bytesSaved.addAndGet(pdf.length);
+            memory.put(key, pdf);
+        }
+        return pdf;
+    }
+
+
+    public void put(String key, byte[] pdf) {
+        if (!enabled) {
+            return;
+        }
+        memory.put(key, pdf);
+        writeToDisk(key, pdf);
+    }
+
+
+    public Map<String, Object> getStats() {
+        long totalLookups = lookups.get();
+        long totalHits = memoryHits.get() + diskHits.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", Boolean.valueOf(enabled));
+        stats.put("lookups", Long.valueOf(totalLookups));
+        stats.put("hits", Long.valueOf(totalHits));
+        stats.put("hitRatio", Double.valueOf(totalLookups == 0 ? 0.0 : (double) totalHits / totalLookups));
+        stats.put("bytesSaved", Long.valueOf(bytesSaved.get()));
+        stats.put("memory", memory.getStats());
+
+        Map<String, Object> disk = new LinkedHashMap<>();
+        disk.put("enabled", Boolean.valueOf(diskDir != null));
+        disk.put("hits", Long.valueOf(diskHits.get()));
+        disk.put("bytes", Long.valueOf(diskBytes.get()));
+        disk.put("maxBytes", Long.valueOf(diskMaxBytes));
+        stats.put("disk", disk);
+        return stats;
+    }
+
+
+    private Path initDiskDir(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                diskBytes.set(files.filter(this::isCacheFile).mapToLong(this::sizeOf).sum());
+            }
+            return dir;
+        } catch (IOException e) {
+            log.warn("PDF disk cache disabled, cannot use {}: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+
+    private byte[] readFromDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        Path file = diskDir.resolve(key + PDF_SUFFIX);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            long lastUsed = Files.getLastModifiedTime(file).toMillis();
+            if (ttlMillis > 0 && System.currentTimeMillis() - lastUsed > ttlMillis) {
+                deleteFromDisk(file);
+                return null;
+            }
+            byte[] pdf = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return pdf;
+        } catch (IOException e) {
+            log.warn("Failed to read cached PDF {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+
+    private void writeToDisk(String key, byte[] pdf) {
+        if (diskDir == null || pdf.length > diskMaxBytes) {
+            return;
+        }
+        Path file = diskDir.resolve(key + PDF_SUFFIX);
+        try {
+            Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.write(temp, pdf);
+            long previousSize = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(pdf.length - previousSize) > diskMaxBytes) {
+                trimDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write cached PDF {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    private synchronized void trimDisk() {
+        if (diskBytes.get() <= diskMaxBytes) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(diskDir)) {
+            List<Path> oldestFirst = files.filter(this::isCacheFile)
+                .sorted(Comparator.comparingLong(this::lastModifiedOf))
+                .toList();
+            for (Path file : oldestFirst) {
+                if (diskBytes.get() <= diskMaxBytes) {
+                    break;
+                }
+                deleteFromDisk(file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to trim PDF disk cache: {}", e.getMessage());
+        }
+    }
+
+
+    private void deleteFromDisk(Path file) {
+        long size = sizeOf(file);
+        try {
+            if (Files.deleteIfExists(file)) {
+                diskBytes.addAndGet(-size);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete cached PDF {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    private boolean isCacheFile(Path file) {
+        return file.getFileName().toString().endsWith(PDF_SUFFIX);
+    }
+
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+
+    private long lastModifiedOf(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -1,74 +1,142 @@
 package com.customsdocgen.customsdocgen.services;
 
 import org.jodconverter.core.DocumentConverter;
+import org.jodconverter.core.document.DefaultDocumentFormatRegistry;
+import org.jodconverter.core.document.DocumentFormat;
 import org.jodconverter.core.office.OfficeException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @ConditionalOnProperty(name = "jodconverter.local.enabled", havingValue = "true", matchIfMissing = false)
 public class PdfConversionService {
 
     private final DocumentConverter documentConverter;
-    
-    @Autowired(required = false)
-    public PdfConversionService(DocumentConverter documentConverter) {
+    private final PdfCacheService pdfCacheService;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long queueTimeoutMillis;
+    private final Semaphore permits;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final TimingStats queueWait = new TimingStats();
+    private final TimingStats docxConversions = new TimingStats();
+    private final TimingStats xlsxConversions = new TimingStats();
+
+    @Autowired
+    public PdfConversionService(@Autowired(required = false) DocumentConverter documentConverter,
+                                PdfCacheService pdfCacheService,
+                                @Value("${jodconverter.local.port-numbers:2002}") int[] portNumbers,
+                                @Value("${conversion.pool.max-concurrent:0}") int maxConcurrent,
+                                @Value("${conversion.queue.capacity:32}") int queueCapacity,
+                                @Value("${conversion.queue.timeout-ms:60000}") long queueTimeoutMillis) {
         this.documentConverter = documentConverter;
+        this.pdfCacheService = pdfCacheService;
+        this.maxConcurrent = maxConcurrent > 0 ? maxConcurrent : Math.max(1, portNumbers.length);
+        this.queueCapacity = queueCapacity;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.permits = new Semaphore(this.maxConcurrent, true);
     }
 
 
     public byte[] convertDocxToPdf(byte[] docxBytes) throws IOException, OfficeException {
-        if (documentConverter == null) {
-            throw new IllegalStateException("LibreOffice не встановлено або JODConverter не налаштовано");
-        }
-        
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(docxBytes);
-             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            
-            documentConverter
-                    .convert(inputStream)
-                    .as(org.jodconverter.core.document.DefaultDocumentFormatRegistry.DOCX)
-                    .to(outputStream)
-                    .as(org.jodconverter.core.document.DefaultDocumentFormatRegistry.PDF)
-                    .execute();
-            
-            return outputStream.toByteArray();
-        }
+        return convert(docxBytes, DefaultDocumentFormatRegistry.DOCX, docxConversions);
     }
 
 
     public byte[] convertXlsxToPdf(byte[] xlsxBytes) throws IOException, OfficeException {
+        return convert(xlsxBytes, DefaultDocumentFormatRegistry.XLSX, xlsxConversions);
+    }
+
+
+    public byte[] convertToPdf(byte[] documentBytes, String fileName) throws IOException, OfficeException {
+        if (fileName.endsWith(".docx")) {
+            return convertDocxToPdf(documentBytes);
+        } else if (fileName.endsWith(".xlsx")) {
+            return convertXlsxToPdf(documentBytes);
+        } else {
+            throw new IllegalArgumentException("Непідтримуваний формат файлу: " + fileName);
+        }
+    }
+
+
+    private byte[] convert(byte[] documentBytes, DocumentFormat sourceFormat, TimingStats conversionStats)
+            throws IOException, OfficeException {
         if (documentConverter == null) {
             throw new IllegalStateException("LibreOffice не встановлено або JODConverter не налаштовано");
         }
-        
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(xlsxBytes);
+
+        String cacheKey = pdfCacheService.keyFor(documentBytes, sourceFormat.getExtension());
+        byte[] cached = pdfCacheService.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        acquirePermit();
+        active.incrementAndGet();
+        long started = System.nanoTime();
+        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(documentBytes);
              ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            
+
             documentConverter
                     .convert(inputStream)
-                    .as(org.jodconverter.core.document.DefaultDocumentFormatRegistry.XLSX)
+                    .as(sourceFormat)
                     .to(outputStream)
-                    .as(org.jodconverter.core.document.DefaultDocumentFormatRegistry.PDF)
+                    .as(DefaultDocumentFormatRegistry.PDF)
                     .execute();
-            
-            return outputStream.toByteArray();
+
+            conversionStats.record(System.nanoTime() - started);
+            byte[] pdf = outputStream.toByteArray();
+            pdfCacheService.put(cacheKey, pdf);
+            return pdf;
+        } catch (IOException | OfficeException | RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            permits.release();
         }
     }
 
 
-    public byte[] convertToPdf(byte[] documentBytes, String fileName) throws IOException, OfficeException {
-        if (fileName.endsWith(".docx")) {
-            return convertDocxToPdf(documentBytes);
-        } else if (fileName.endsWith(".xlsx")) {
-            return convertXlsxToPdf(documentBytes);
-        } else {
-            throw new IllegalArgumentException("Непідтримуваний формат файлу: " + fileName);
+    private void acquirePermit() throws OfficeException {
+        if (waiting.incrementAndGet() > queueCapacity) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Черга PDF конвертації переповнена, спробуйте пізніше");
+        }
+
+        long waitStarted = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OfficeException("Очікування PDF конвертації перервано", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        queueWait.record(System.nanoTime() - waitStarted);
+
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new OfficeException("Перевищено час очікування в черзі PDF конвертації");
         }
     }
 
@@ -80,5 +148,41 @@ public class PdfConversionService {
             return false;
         }
     }
-}
 
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", Integer.valueOf(maxConcurrent));
+        stats.put("queueCapacity", Integer.valueOf(queueCapacity));
+        stats.put("queueDepth", Integer.valueOf(waiting.get()));
+        stats.put("active", Integer.valueOf(active.get()));
+        stats.put("rejected", Long.valueOf(rejected.get()));
+        stats.put("failures", Long.valueOf(failures.get()));
+        stats.put("queueWait", queueWait.toMap());
+        stats.put("docx", docxConversions.toMap());
+        stats.put("xlsx", xlsxConversions.toMap());
+        return stats;
+    }
+
+
+    private static class TimingStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long n = count.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", Long.valueOf(n));
+            map.put("avgMillis", Long.valueOf(n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / n)));
+            map.put("maxMillis", Long.valueOf(TimeUnit.NANOSECONDS.toMillis(maxNanos.get())));
+            return map;
+        }
+    }
+}
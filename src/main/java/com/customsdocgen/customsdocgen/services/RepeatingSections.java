@@ -0,0 +1,389 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellCopyPolicy;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.apache.xmlbeans.XmlCursor;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRow;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+
+final class RepeatingSections {
+
+    static final String LIST_FIELD_TYPE = "list";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<LinkedHashMap<String, String>>> ROWS_TYPE = new TypeReference<>() {
+    };
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final QName TEXT = new QName(W, "t");
+    private static final QName SPACE = new QName(XMLConstants.XML_NS_URI, "space", "xml");
+    private static final CellCopyPolicy ROW_COPY_POLICY = new CellCopyPolicy.Builder().mergedRegions(false).build();
+
+    private RepeatingSections() {
+    }
+
+
+    static String listName(String listPlaceholder) {
+        return listPlaceholder.substring(2, listPlaceholder.length() - 2);
+    }
+
+
+    static String countPlaceholder(String listName) {
+        return "{{" + listName + ".COUNT}}";
+    }
+
+
+    static String totalPlaceholder(String listName, String column) {
+        return "{{" + listName + "." + column + ".TOTAL}}";
+    }
+
+
+    static List<Map<String, String>> parseRows(String json) {
+        if (json == null || json.isBlank()) {
+            return new ArrayList<>();
+        }
+        try {
+            return new ArrayList<>(OBJECT_MAPPER.readValue(json, ROWS_TYPE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Некоректні рядки списку: " + e.getOriginalMessage(), e);
+        }
+    }
+
+
+    static String writeRows(List<Map<String, String>> rows) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(rows);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не вдалося записати рядки списку", e);
+        }
+    }
+
+
+    static Map<String, Section> find(Set<String> placeholders, Map<String, String> fieldValues) {
+        Map<String, Section> sections = new HashMap<>();
+        Map<String, Section> byName = new HashMap<>();
+        for (String placeholder : placeholders) {
+            int dot = placeholder.indexOf('.');
+            if (dot < 0 || fieldValues.containsKey(placeholder)) {
+                continue;
+            }
+            String name = placeholder.substring(2, dot);
+            String listValue = fieldValues.get("{{" + name + "}}");
+            if (listValue == null || !listValue.stripLeading().startsWith("[")) {
+                continue;
+            }
+            sections.put(placeholder, byName.computeIfAbsent(name, key -> new Section(key, parseRows(listValue))));
+        }
+        return sections;
+    }
+
+
+    static Map<String, String> keepRowPlaceholders(Map<String, String> fieldValues, Map<String, Section> sections) {
+        Map<String, String> values = new HashMap<>(fieldValues);
+        for (String placeholder : sections.keySet()) {
+            values.put(placeholder, placeholder);
+        }
+        return values;
+    }
+
+
+    static Set<String> digestKeys(Set<String> placeholders, Map<String, Section> sections) {
+        Set<String> keys = new LinkedHashSet<>(placeholders);
+        for (String placeholder : placeholders) {
+            Section section = sections.get(placeholder);
+            if (section != null) {
+                keys.add(section.placeholder());
+            }
+        }
+        return keys;
+    }
+
+
+    static void expandTables(XWPFDocument document, Map<String, Section> sections) {
+        expandTables((IBody) document, sections);
+        document.getHeaderList().forEach(header -> expandTables(header, sections));
+        document.getFooterList().forEach(footer -> expandTables(footer, sections));
+    }
+
+
+    private static void expandTables(IBody body, Map<String, Section> sections) {
+        for (XWPFTable table : body.getTables()) {
+            expandTable(table, sections);
+        }
+    }
+
+
+    private static void expandTable(XWPFTable table, Map<String, Section> sections) {
+        List<XWPFTableRow> rows = List.copyOf(table.getRows());
+        Section[] owners = new Section[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            owners[i] = sectionOf(rows.get(i), sections);
+        }
+
+        int start = 0;
+        while (start < rows.size()) {
+            Section section = owners[start];
+            if (section == null) {
+                for (XWPFTableCell cell : rows.get(start).getTableCells()) {
+                    expandTables(cell, sections);
+                }
+                start++;
+                continue;
+            }
+            int end = start + 1;
+            while (end < rows.size() && owners[end] == section) {
+                end++;
+            }
+            expandRows(rows.subList(start, end), section);
+            start = end;
+        }
+    }
+
+
+    private static Section sectionOf(XWPFTableRow row, Map<String, Section> sections) {
+        String text;
+        try (XmlCursor cursor = row.getCtRow().newCursor()) {
+            text = cursor.getTextValue();
+        }
+        if (text.indexOf('{') < 0) {
+            return null;
+        }
+        Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text);
+        while (matcher.find()) {
+            Section section = sections.get(matcher.group());
+            if (section != null) {
+                return section;
+            }
+        }
+        return null;
+    }
+
+
+    private static void expandRows(List<XWPFTableRow> templateRows, Section section) {
+        List<CTRow> templates = templateRows.stream().map(XWPFTableRow::getCtRow).toList();
+        CTRow lastTemplate = templates.get(templates.size() - 1);
+
+        try (XmlCursor destination = lastTemplate.newCursor()) {
+            destination.toEndToken();
+            destination.toNextToken();
+            for (int item = 0; item < section.size(); item++) {
+                for (CTRow template : templates) {
+                    try (XmlCursor source = template.newCursor()) {
+                        source.copyXml(destination);
+                    }
+                }
+            }
+        }
+
+        try (XmlCursor cursor = lastTemplate.newCursor()) {
+            for (int item = 0; item < section.size(); item++) {
+                Map<String, String> values = section.rowValues(item);
+                for (int i = 0; i < templates.size(); i++) {
+                    cursor.toNextSibling();
+                    replaceInElement(cursor, values);
+                }
+            }
+        }
+
+        for (CTRow template : templates) {
+            try (XmlCursor cursor = template.newCursor()) {
+                cursor.removeXml();
+            }
+        }
+    }
+
+
+    private static void replaceInElement(XmlCursor cursor, Map<String, String> values) {
+        if (TEXT.equals(cursor.getName())) {
+            String text = cursor.getTextValue();
+            if (text.indexOf('{') >= 0) {
+                String replaced = replacePlaceholders(text, values);
+                cursor.setTextValue(replaced);
+                if (!replaced.equals(replaced.strip())) {
+                    cursor.setAttributeText(SPACE, "preserve");
+                }
+            }
+            return;
+        }
+        if (cursor.toFirstChild()) {
+            do {
+                replaceInElement(cursor, values);
+            } while (cursor.toNextSibling());
+            cursor.toParent();
+        }
+    }
+
+
+    static void expandRows(XSSFWorkbook workbook, List<CellLocation> cells, Map<String, Section> sections,
+                           TypedCellValues types, FormulaRecalculator recalculator) {
+        Map<Integer, NavigableMap<Integer, Section>> rowsBySheet = new TreeMap<>();
+        for (CellLocation location : cells) {
+            for (String placeholder : location.placeholders()) {
+                Section section = sections.get(placeholder);
+                if (section != null) {
+                    rowsBySheet.computeIfAbsent(Integer.valueOf(location.sheetIndex()), key -> new TreeMap<>())
+                        .put(Integer.valueOf(location.rowIndex()), section);
+                    break;
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, NavigableMap<Integer, Section>> sheetRows : rowsBySheet.entrySet()) {
+            XSSFSheet sheet = workbook.getSheetAt(sheetRows.getKey().intValue());
+            NavigableMap<Integer, Section> rows = sheetRows.getValue().descendingMap();
+            int last = -1;
+            int first = -1;
+            Section current = null;
+            for (Map.Entry<Integer, Section> row : rows.entrySet()) {
+                int rowIndex = row.getKey().intValue();
+                if (current == row.getValue() && rowIndex == first - 1) {
+                    first = rowIndex;
+                    continue;
+                }
+                if (current != null) {
+                    expandRows(sheet, first, last, current, types, recalculator);
+                }
+                current = row.getValue();
+                first = rowIndex;
+                last = rowIndex;
+            }
+            if (current != null) {
+                expandRows(sheet, first, last, current, types, recalculator);
+            }
+        }
+    }
+
+
+    private static void expandRows(XSSFSheet sheet, int first, int last, Section section, TypedCellValues types,
+                                   FormulaRecalculator recalculator) {
+        int height = last - first + 1;
+        List<CellRangeAddress> merged = new ArrayList<>();
+        List<Integer> mergedIndexes = new ArrayList<>();
+        for (int i = 0; i < sheet.getNumMergedRegions(); i++) {
+            CellRangeAddress region = sheet.getMergedRegion(i);
+            if (region.getFirstRow() >= first && region.getLastRow() <= last) {
+                merged.add(region);
+                mergedIndexes.add(Integer.valueOf(i));
+            }
+        }
+
+        if (section.size() == 0) {
+            sheet.removeMergedRegions(mergedIndexes);
+            for (int rowIndex = first; rowIndex <= last; rowIndex++) {
+                Row row = sheet.getRow(rowIndex);
+                if (row != null) {
+                    recalculator.removed(row);
+                    sheet.removeRow(row);
+                }
+            }
+            if (last < sheet.getLastRowNum()) {
+                sheet.shiftRows(last + 1, sheet.getLastRowNum(), -height);
+            }
+            return;
+        }
+
+        int shift = (section.size() - 1) * height;
+        if (shift > 0 && last < sheet.getLastRowNum()) {
+            sheet.shiftRows(last + 1, sheet.getLastRowNum(), shift);
+        }
+
+        for (int item = section.size() - 1; item > 0; item--) {
+            int offset = item * height;
+            for (int rowIndex = last; rowIndex >= first; rowIndex--) {
+                XSSFRow source = sheet.getRow(rowIndex);
+                if (source != null) {
+                    sheet.createRow(rowIndex + offset).copyRowFrom(source, ROW_COPY_POLICY);
+                }
+            }
+            for (CellRangeAddress region : merged) {
+                sheet.addMergedRegionUnsafe(new CellRangeAddress(region.getFirstRow() + offset,
+                    region.getLastRow() + offset, region.getFirstColumn(), region.getLastColumn()));
+            }
+        }
+
+        for (int item = 0; item < section.size(); item++) {
+            Map<String, String> values = section.rowValues(item);
+            for (int rowIndex = first; rowIndex <= last; rowIndex++) {
+                Row row = sheet.getRow(rowIndex + item * height);
+                if (row != null) {
+                    replaceInRow(row, values, types, recalculator);
+                }
+            }
+        }
+    }
+
+
+    private static void replaceInRow(Row row, Map<String, String> values, TypedCellValues types,
+                                     FormulaRecalculator recalculator) {
+        for (Cell cell : row) {
+            recalculator.changed(cell);
+            if (cell.getCellType() != CellType.STRING) {
+                continue;
+            }
+            String text = cell.getStringCellValue();
+            if (text.indexOf('{') < 0) {
+                continue;
+            }
+            Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text.strip());
+            if (matcher.matches() && types.write(cell, text, matcher.group(), values.getOrDefault(matcher.group(), ""))) {
+                continue;
+            }
+            cell.setCellValue(replacePlaceholders(text, values));
+        }
+    }
+
+
+    private static String replacePlaceholders(String text, Map<String, String> values) {
+        return TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text)
+            .replaceAll(match -> Matcher.quoteReplacement(values.getOrDefault(match.group(), "")));
+    }
+
+
+    record Section(String name, List<Map<String, String>> rows) {
+
+        String placeholder() {
+            return "{{" + name + "}}";
+        }
+
+
+        int size() {
+            return rows.size();
+        }
+
+
+        Map<String, String> rowValues(int index) {
+            Map<String, String> values = new HashMap<>();
+            for (Map.Entry<String, String> entry : rows.get(index).entrySet()) {
+                values.put("{{" + name + "." + entry.getKey() + "}}", entry.getValue() != null ? entry.getValue() : "");
+            }
+            values.put("{{" + name + ".INDEX}}", String.valueOf(index + 1));
+            return values;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+final class StorageLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageLog.class);
+
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private final UnaryOperator<OutputStream> outputDecorator;
+    private FileChannel channel;
+    private BufferedWriter writer;
+    private long entries;
+    private long committedLength;
+    private long committedEntries;
+
+    StorageLog(Path file, ObjectMapper objectMapper) {
+        this(file, objectMapper, UnaryOperator.identity());
+    }
+
+
+    StorageLog(Path file, ObjectMapper objectMapper, UnaryOperator<OutputStream> outputDecorator) {
+        this.file = file;
+        this.objectMapper = objectMapper;
+        this.outputDecorator = outputDecorator;
+    }
+
+
+    boolean exists() {
+        return Files.exists(file);
+    }
+
+
+    synchronized <T> long replay(Class<T> type, Consumer<T> handler) throws IOException {
+        entries = 0;
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        byte[] content = Files.readAllBytes(file);
+        int lineStart = 0;
+        while (lineStart < content.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < content.length && content[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == content.length) {
+                log.warn("Storage log {} ends with an incomplete entry, discarding {} bytes", file,
+                        Integer.valueOf(content.length - lineStart));
+                truncate(lineStart);
+                break;
+            }
+
+            String line = new String(content, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+            if (!line.isBlank()) {
+                T entry;
+                try {
+                    entry = objectMapper.readValue(line, type);
+                } catch (JsonProcessingException e) {
+                    log.warn("Storage log {} has a corrupted entry, discarding the tail from byte {}: {}",
+                            file, Integer.valueOf(lineStart), e.getOriginalMessage());
+                    truncate(lineStart);
+                    break;
+                }
+                handler.accept(entry);
+                entries++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return entries;
+    }
+
+
+    synchronized void append(Object entry) throws IOException {
+        BufferedWriter out = writer();
+        try {
+            out.write(objectMapper.writeValueAsString(entry));
+            out.write('\n');
+        } catch (IOException e) {
+            discardPending(e);
+            throw e;
+        }
+        entries++;
+    }
+
+
+    synchronized void flush(boolean sync) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+            if (sync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            discardPending(e);
+            throw e;
+        }
+        committedLength = channel.size();
+        committedEntries = entries;
+    }
+
+
+    synchronized void rewrite(Collection<?> snapshot) throws IOException {
+        closeWriter();
+        createParentDirectory();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream tempOutput = new FileOutputStream(temp.toFile());
+             BufferedWriter tempWriter = new BufferedWriter(new OutputStreamWriter(tempOutput, StandardCharsets.UTF_8))) {
+            for (Object entry : snapshot) {
+                tempWriter.write(objectMapper.writeValueAsString(entry));
+                tempWriter.write('\n');
+            }
+            tempWriter.flush();
+            tempOutput.getFD().sync();
+        }
+        moveAtomically(temp, file);
+        entries = snapshot.size();
+    }
+
+
+    synchronized long entries() {
+        return entries;
+    }
+
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeWriter();
+    }
+
+
+    static Path resolve(String baseDir, String path) {
+        return Path.of(baseDir).toAbsolutePath().resolve(path).normalize();
+    }
+
+
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        moveAtomically(temp, target);
+    }
+
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    private BufferedWriter writer() throws IOException {
+        if (writer == null) {
+            createParentDirectory();
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            committedLength = channel.size();
+            committedEntries = entries;
+            OutputStream output = outputDecorator.apply(Channels.newOutputStream(channel));
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+        return writer;
+    }
+
+
+    private void discardPending(IOException failure) {
+        FileChannel failed = channel;
+        writer = null;
+        channel = null;
+        entries = committedEntries;
+        try (failed) {
+            failed.truncate(committedLength);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        log.warn("Storage log {} rejected an append, rolled back to byte {}: {}", file,
+                Long.valueOf(committedLength), failure.getMessage());
+    }
+
+
+    private void createParentDirectory() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+
+    private void truncate(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            try {
+                writer.close();
+            } finally {
+                writer = null;
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.customsdocgen.customsdocgen.services;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+final class StreamingDocxRenderer {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final Pattern TEXT_PARTS =
+        Pattern.compile("word/(document|header\\d*|footer\\d*|footnotes|endnotes)\\.xml");
+    private static final byte[] PLACEHOLDER_MARKER = {'{'};
+    private static final XmlTextRewriter PARAGRAPHS =
+        new XmlTextRewriter(new QName(W, "p"), new QName(W, "sdtContent"), new QName(W, "t"), null);
+
+    private StreamingDocxRenderer() {
+    }
+
+
+    static byte[] render(byte[] template, Map<String, String> fieldValues) throws IOException, XMLStreamException {
+        return PackageRewriter.rewrite(template, (zip, entry) -> {
+            if (!TEXT_PARTS.matcher(entry.getName()).matches()) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return PackageRewriter.contains(in, PLACEHOLDER_MARKER) ? PARAGRAPHS : null;
+            }
+        }, fieldValues);
+    }
+}
@@ -0,0 +1,40 @@
+package com.customsdocgen.customsdocgen.services;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+final class StreamingXlsxRenderer {
+
+    private static final String S = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String SHARED_STRINGS_PART = "xl/sharedStrings.xml";
+    private static final Pattern WORKSHEET_PART = Pattern.compile("xl/worksheets/[^/]+\\.xml");
+    private static final byte[] INLINE_STRING_MARKER = "inlineStr".getBytes(StandardCharsets.US_ASCII);
+
+    private static final XmlTextRewriter SHARED_STRINGS =
+        new XmlTextRewriter(new QName(S, "si"), null, new QName(S, "t"), new QName(S, "rPh"));
+    private static final XmlTextRewriter INLINE_STRINGS =
+        new XmlTextRewriter(new QName(S, "is"), null, new QName(S, "t"), new QName(S, "rPh"));
+
+    private StreamingXlsxRenderer() {
+    }
+
+
+    static byte[] render(byte[] template, Map<String, String> fieldValues) throws IOException, XMLStreamException {
+        return PackageRewriter.rewrite(template, (zip, entry) -> {
+            if (SHARED_STRINGS_PART.equals(entry.getName())) {
+                return SHARED_STRINGS;
+            }
+            if (!WORKSHEET_PART.matcher(entry.getName()).matches()) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return PackageRewriter.contains(in, INLINE_STRING_MARKER) ? INLINE_STRINGS : null;
+            }
+        }, fieldValues);
+    }
+}
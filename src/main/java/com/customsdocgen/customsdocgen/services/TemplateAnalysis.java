@@ -0,0 +1,22 @@
+package com.customsdocgen.customsdocgen.services;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+public record TemplateAnalysis(Set<String> placeholders, BitSet paragraphOrdinals, boolean extendedContent,
+                               List<CellLocation> cells) {
+
+    public boolean hasPlaceholders() {
+        return !placeholders.isEmpty();
+    }
+
+
+    public boolean containsParagraph(int ordinal) {
+        return paragraphOrdinals.get(ordinal);
+    }
+
+
+    public record CellLocation(int sheetIndex, int rowIndex, int columnIndex, Set<String> placeholders) {
+    }
+}
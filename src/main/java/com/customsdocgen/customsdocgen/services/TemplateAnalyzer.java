@@ -0,0 +1,105 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class TemplateAnalyzer {
+
+    static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\{\\{([^}]+)\\}\\}");
+
+    private TemplateAnalyzer() {
+    }
+
+
+    static TemplateAnalysis analyze(String fileName, byte[] content) throws IOException {
+        Set<String> placeholders = new LinkedHashSet<>();
+        BitSet paragraphOrdinals = new BitSet();
+        List<CellLocation> cells = new ArrayList<>();
+        boolean extendedContent = false;
+
+        if (fileName.endsWith(".xlsx")) {
+            analyzeWorkbook(content, placeholders, cells);
+        } else {
+            extendedContent = analyzeDocument(content, placeholders, paragraphOrdinals);
+        }
+        return new TemplateAnalysis(Collections.unmodifiableSet(placeholders), paragraphOrdinals, extendedContent,
+                List.copyOf(cells));
+    }
+
+
+    private static boolean analyzeDocument(byte[] content, Set<String> placeholders,
+                                           BitSet paragraphOrdinals) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(content))) {
+            return BodyWalker.walk(document, new BodyWalker.BodyVisitor() {
+                @Override
+                public void paragraph(BodyWalker.Block paragraph) {
+                    collect(paragraph);
+                }
+
+                @Override
+                public void contentControl(BodyWalker.Block contentControl) {
+                    collect(contentControl);
+                }
+
+                private void collect(BodyWalker.Block block) {
+                    Set<String> found = findPlaceholders(block.text());
+                    if (!found.isEmpty()) {
+                        paragraphOrdinals.set(block.ordinal());
+                        placeholders.addAll(found);
+                    }
+                }
+            });
+        }
+    }
+
+
+    private static void analyzeWorkbook(byte[] content, Set<String> placeholders,
+                                        List<CellLocation> cells) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(content))) {
+            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+                Sheet sheet = workbook.getSheetAt(sheetIndex);
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() != CellType.STRING) {
+                            continue;
+                        }
+                        Set<String> found = findPlaceholders(cell.getStringCellValue());
+                        if (!found.isEmpty()) {
+                            cells.add(new CellLocation(sheetIndex, row.getRowNum(), cell.getColumnIndex(), found));
+                            placeholders.addAll(found);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    static Set<String> findPlaceholders(String text) {
+        if (text == null || text.indexOf('{') < 0) {
+            return Set.of();
+        }
+        Set<String> found = new LinkedHashSet<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
+        while (matcher.find()) {
+            found.add(matcher.group(0));
+        }
+        return found.isEmpty() ? Set.of() : Collections.unmodifiableSet(found);
+    }
+}
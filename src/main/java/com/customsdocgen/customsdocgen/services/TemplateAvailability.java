@@ -0,0 +1,55 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class TemplateAvailability {
+
+    private final Map<String, Integer> placeholderIndex;
+    private final String[] templateIds;
+    private final BitSet[] requiredFields;
+
+    TemplateAvailability(List<TemplateConfig> templates, Map<String, List<String>> requiredPlaceholdersByTemplate) {
+        Map<String, Integer> index = new HashMap<>();
+        this.templateIds = new String[templates.size()];
+        this.requiredFields = new BitSet[templates.size()];
+
+        for (int i = 0; i < templates.size(); i++) {
+            String templateId = templates.get(i).getId();
+            BitSet required = new BitSet();
+            for (String placeholder : requiredPlaceholdersByTemplate.getOrDefault(templateId, List.of())) {
+                Integer bit = index.computeIfAbsent(placeholder, key -> Integer.valueOf(index.size()));
+                required.set(bit.intValue());
+            }
+            templateIds[i] = templateId;
+            requiredFields[i] = required;
+        }
+        this.placeholderIndex = index;
+    }
+
+
+    List<String> availableTemplateIds(Map<String, String> formData) {
+        BitSet missing = new BitSet(placeholderIndex.size());
+        missing.set(0, placeholderIndex.size());
+        for (Map.Entry<String, String> entry : formData.entrySet()) {
+            Integer bit = placeholderIndex.get(entry.getKey());
+            String value = entry.getValue();
+            if (bit != null && value != null && !value.isBlank()) {
+                missing.clear(bit.intValue());
+            }
+        }
+
+        List<String> available = new ArrayList<>();
+        for (int i = 0; i < templateIds.length; i++) {
+            if (!requiredFields[i].intersects(missing)) {
+                available.add(templateIds[i]);
+            }
+        }
+        return available;
+    }
+}
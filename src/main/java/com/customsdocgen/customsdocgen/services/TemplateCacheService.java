@@ -0,0 +1,100 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+@Service
+public class TemplateCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplateCacheService.class);
+
+    private final LruByteCache<String, CachedTemplate> cache;
+    private final TemplateVersionStore versionStore;
+
+    public TemplateCacheService(@Value("${templates.cache.max-bytes:67108864}") long maxBytes,
+                                TemplateVersionStore versionStore) {
+        this.cache = new LruByteCache<>(maxBytes, 0, template -> template.content().length);
+        this.versionStore = versionStore;
+    }
+
+
+    public CachedTemplate getTemplate(String fileName) throws IOException {
+        File templateFile = new File(FileStorageService.TEMPLATES_DIR + fileName);
+        if (!templateFile.exists()) {
+            invalidate(fileName);
+            throw new FileNotFoundException("Файл шаблону не знайдено: " + fileName);
+        }
+
+        long lastModified = templateFile.lastModified();
+        long size = templateFile.length();
+
+        CachedTemplate cached = cache.get(fileName,
+            template -> template.lastModified() == lastModified && template.content().length == size);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] content = Files.readAllBytes(templateFile.toPath());
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze(fileName, content);
+        CachedTemplate loaded = new CachedTemplate(fileName, lastModified, content,
+            ContentHash.sha256(content), analysis);
+
+        if (!cache.put(fileName, loaded)) {
+            log.warn("Template {} ({} bytes) exceeds cache limit, not cached", fileName, Long.valueOf(content.length));
+        }
+        versionStore.store(fileName, loaded.contentHash(), content);
+        return loaded;
+    }
+
+
+    public CachedTemplate getTemplateVersion(String fileName, String contentHash) throws IOException {
+        try {
+            CachedTemplate current = getTemplate(fileName);
+            if (current.contentHash().equals(contentHash)) {
+                return current;
+            }
+        } catch (FileNotFoundException e) {
+            log.debug("Template {} was removed, looking up version {}", fileName, contentHash);
+        }
+
+        String key = fileName + "@" + contentHash;
+        CachedTemplate cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] content = versionStore.load(fileName, contentHash);
+        CachedTemplate loaded = new CachedTemplate(fileName, 0, content, contentHash,
+            TemplateAnalyzer.analyze(fileName, content));
+        cache.put(key, loaded);
+        return loaded;
+    }
+
+
+    public void invalidate(String fileName) {
+        cache.remove(fileName);
+    }
+
+
+    public void clear() {
+        cache.clear();
+    }
+
+
+    public Map<String, Object> getStats() {
+        return cache.getStats();
+    }
+
+
+    public record CachedTemplate(String fileName, long lastModified, byte[] content,
+                                 String contentHash, TemplateAnalysis analysis) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+@Service
+public class TemplateVersionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TemplateVersionStore.class);
+
+    private final Path versionsDir;
+
+    public TemplateVersionStore(@Value("${templates.versions-dir:template-versions}") String versionsDir) {
+        this.versionsDir = Path.of(versionsDir);
+    }
+
+
+    public void store(String fileName, String contentHash, byte[] content) {
+        Path file = versionFile(fileName, contentHash);
+        if (Files.exists(file)) {
+            return;
+        }
+        try {
+            Files.createDirectories(versionsDir);
+            StorageLog.writeAtomically(file, content);
+        } catch (IOException e) {
+            log.warn("Failed to store template version {} of {}: {}", contentHash, fileName, e.getMessage());
+        }
+    }
+
+
+    public byte[] load(String fileName, String contentHash) throws IOException {
+        Path file = versionFile(fileName, contentHash);
+        if (!Files.exists(file)) {
+            throw new FileNotFoundException("Версію шаблону не знайдено: " + fileName + " (" + contentHash + ")");
+        }
+
+        byte[] content = Files.readAllBytes(file);
+        if (!ContentHash.sha256(content).equals(contentHash)) {
+            throw new IOException("Версія шаблону пошкоджена: " + fileName + " (" + contentHash + ")");
+        }
+        return content;
+    }
+
+
+    private Path versionFile(String fileName, String contentHash) {
+        if (!contentHash.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Невірний хеш шаблону: " + contentHash);
+        }
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return versionsDir.resolve(contentHash + "." + extension);
+    }
+}
@@ -0,0 +1,174 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+final class TypedCellValues {
+
+    static final TypedCellValues NONE = new TypedCellValues(Map.of());
+
+    private static final String NUMBER = "number";
+    private static final String DATE = "date";
+    private static final DateTimeFormatter DOTTED_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final Map<String, String> types;
+
+    private TypedCellValues(Map<String, String> types) {
+        this.types = types;
+    }
+
+
+    static TypedCellValues of(List<FieldConfig> fields) {
+        if (fields == null) {
+            return NONE;
+        }
+        Map<String, String> types = new TreeMap<>();
+        for (FieldConfig field : fields) {
+            if (field.getPlaceholder() == null) {
+                continue;
+            }
+            if (RepeatingSections.LIST_FIELD_TYPE.equals(field.getFieldType())) {
+                addListColumns(field, types);
+            } else {
+                addField(field.getPlaceholder(), field.getFieldType(), types);
+            }
+        }
+        return new TypedCellValues(Collections.unmodifiableMap(types));
+    }
+
+
+    static TypedCellValues of(Map<String, String> types) {
+        if (types == null || types.isEmpty()) {
+            return NONE;
+        }
+        return new TypedCellValues(Collections.unmodifiableMap(new TreeMap<>(types)));
+    }
+
+
+    private static void addListColumns(FieldConfig field, Map<String, String> types) {
+        String name = RepeatingSections.listName(field.getPlaceholder());
+        types.put(RepeatingSections.countPlaceholder(name), NUMBER);
+        types.put("{{" + name + ".INDEX}}", NUMBER);
+        if (field.getColumns() == null) {
+            return;
+        }
+        for (FieldConfig column : field.getColumns()) {
+            if (column.getId() == null) {
+                continue;
+            }
+            addField("{{" + name + "." + column.getId() + "}}", column.getFieldType(), types);
+            if (isNumeric(column.getFieldType())) {
+                types.put(RepeatingSections.totalPlaceholder(name, column.getId()), NUMBER);
+            }
+        }
+    }
+
+
+    private static void addField(String placeholder, String fieldType, Map<String, String> types) {
+        if (isNumeric(fieldType)) {
+            types.put(placeholder, NUMBER);
+        } else if (DATE.equals(fieldType)) {
+            types.put(placeholder, DATE);
+        }
+    }
+
+
+    private static boolean isNumeric(String fieldType) {
+        return NUMBER.equals(fieldType) || "formula".equals(fieldType);
+    }
+
+
+    TypedCellValues restrictTo(Set<String> placeholders) {
+        Map<String, String> restricted = new TreeMap<>();
+        for (Map.Entry<String, String> type : types.entrySet()) {
+            if (placeholders.contains(type.getKey())) {
+                restricted.put(type.getKey(), type.getValue());
+            }
+        }
+        return restricted.isEmpty() ? NONE : new TypedCellValues(Collections.unmodifiableMap(restricted));
+    }
+
+
+    boolean isEmpty() {
+        return types.isEmpty();
+    }
+
+
+    Map<String, String> asMap() {
+        return types;
+    }
+
+
+    boolean write(Cell cell, String text, String placeholder, String value) {
+        if (!text.strip().equals(placeholder)) {
+            return false;
+        }
+        String type = types.get(placeholder);
+        if (NUMBER.equals(type)) {
+            return writeNumber(cell, value);
+        }
+        if (DATE.equals(type)) {
+            return writeDate(cell, value);
+        }
+        return false;
+    }
+
+
+    private static boolean writeNumber(Cell cell, String value) {
+        if (value == null || value.isBlank()) {
+            clearInlineString(cell);
+            cell.setBlank();
+            return true;
+        }
+        String normalized = value.strip().replace(" ", "").replace("\u00A0", "").replace(',', '.');
+        double number;
+        try {
+            number = Double.parseDouble(normalized);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return false;
+        }
+        clearInlineString(cell);
+        cell.setCellValue(number);
+        return true;
+    }
+
+
+    private static boolean writeDate(Cell cell, String value) {
+        CellStyle style = cell.getCellStyle();
+        if (value == null || value.isBlank()
+            || !DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString())) {
+            return false;
+        }
+        LocalDate date;
+        try {
+            date = value.indexOf('.') > 0 ? LocalDate.parse(value.strip(), DOTTED_DATE) : LocalDate.parse(value.strip());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+        clearInlineString(cell);
+        cell.setCellValue(date);
+        return true;
+    }
+
+
+    private static void clearInlineString(Cell cell) {
+        if (cell instanceof XSSFCell xssfCell && xssfCell.getCTCell().isSetIs()) {
+            xssfCell.getCTCell().unsetIs();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.VerticalAlign;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+final class WordPlaceholderReplacer {
+
+    private WordPlaceholderReplacer() {
+    }
+
+
+    static void replacePlaceholders(XWPFParagraph paragraph, Map<String, String> fieldValues) {
+        List<XWPFRun> runs = paragraph.getRuns();
+        if (runs == null || runs.isEmpty()) {
+            return;
+        }
+
+        StringBuilder fullText = new StringBuilder();
+        List<RunStyleInfo> styleInfoList = new ArrayList<>(runs.size());
+
+        int currentPos = 0;
+        for (XWPFRun run : runs) {
+            String runText = run.getText(0);
+            if (runText != null && !runText.isEmpty()) {
+                styleInfoList.add(new RunStyleInfo(
+                    currentPos,
+                    currentPos + runText.length(),
+                    run.getFontFamily(),
+                    run.getFontSizeAsDouble(),
+                    run.isBold(),
+                    run.isItalic(),
+                    run.getColor(),
+                    run.getUnderline(),
+                    getVerticalAlign(run)
+                ));
+
+                fullText.append(runText);
+                currentPos += runText.length();
+            }
+        }
+
+        String text = fullText.toString();
+        Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text);
+
+        if (!matcher.find()) {
+            replaceWithinRuns(runs, fieldValues);
+            return;
+        }
+
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            paragraph.removeRun(i);
+        }
+
+        StyleCursor cursor = new StyleCursor(styleInfoList);
+        int originalPos = 0;
+        do {
+            if (matcher.start() > originalPos) {
+                appendStyledText(paragraph, text, originalPos, matcher.start(), cursor);
+            }
+
+            String replacement = fieldValues.getOrDefault(matcher.group(), "");
+            if (!replacement.isEmpty()) {
+                createStyledRun(paragraph, replacement, cursor.styleAt(matcher.start()));
+            }
+
+            originalPos = matcher.end();
+        } while (matcher.find());
+
+        if (originalPos < text.length()) {
+            appendStyledText(paragraph, text, originalPos, text.length(), cursor);
+        }
+    }
+
+
+    static void replaceWithinRuns(List<XWPFRun> runs, Map<String, String> fieldValues) {
+        for (XWPFRun run : runs) {
+            String runText = run.getText(0);
+            if (runText == null) {
+                continue;
+            }
+
+            Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(runText);
+            if (!matcher.find()) {
+                continue;
+            }
+            StringBuilder replaced = new StringBuilder(runText.length());
+            int position = 0;
+            do {
+                replaced.append(runText, position, matcher.start())
+                        .append(fieldValues.getOrDefault(matcher.group(), ""));
+                position = matcher.end();
+            } while (matcher.find());
+            replaced.append(runText, position, runText.length());
+            run.setText(replaced.toString(), 0);
+        }
+    }
+
+
+    static void replaceAcrossRuns(List<XWPFRun> runs, Map<String, String> fieldValues) {
+        String[] texts = new String[runs.size()];
+        int[] ends = new int[runs.size()];
+        StringBuilder merged = new StringBuilder();
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = runs.get(i).getText(0);
+            if (texts[i] != null) {
+                merged.append(texts[i]);
+            }
+            ends[i] = merged.length();
+        }
+
+        Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(merged);
+        if (!matcher.find()) {
+            return;
+        }
+
+        StringBuilder[] rebuilt = new StringBuilder[texts.length];
+        for (int i = 0; i < rebuilt.length; i++) {
+            rebuilt[i] = new StringBuilder();
+        }
+        int run = 0;
+        int position = 0;
+        do {
+            run = copyToRuns(merged, position, matcher.start(), ends, run, rebuilt);
+            run = runAt(ends, matcher.start(), run);
+            rebuilt[run].append(fieldValues.getOrDefault(matcher.group(), ""));
+            position = matcher.end();
+        } while (matcher.find());
+        copyToRuns(merged, position, merged.length(), ends, run, rebuilt);
+
+        for (int i = 0; i < texts.length; i++) {
+            if (texts[i] != null && !rebuilt[i].toString().equals(texts[i])) {
+                runs.get(i).setText(rebuilt[i].toString(), 0);
+            }
+        }
+    }
+
+
+    private static int copyToRuns(CharSequence text, int start, int end, int[] ends, int run, StringBuilder[] rebuilt) {
+        int position = start;
+        while (position < end) {
+            run = runAt(ends, position, run);
+            int segmentEnd = Math.min(end, ends[run]);
+            rebuilt[run].append(text, position, segmentEnd);
+            position = segmentEnd;
+        }
+        return run;
+    }
+
+
+    private static int runAt(int[] ends, int position, int run) {
+        while (ends[run] <= position) {
+            run++;
+        }
+        return run;
+    }
+
+
+    private static void appendStyledText(XWPFParagraph paragraph, String text, int start, int end,
+                                         StyleCursor cursor) {
+        int segmentStart = start;
+        RunStyleInfo segmentStyle = cursor.styleAt(start);
+
+        for (int i = cursor.index + 1; i < cursor.styles.size(); i++) {
+            RunStyleInfo next = cursor.styles.get(i);
+            if (next.startPos >= end) {
+                break;
+            }
+            if (!stylesMatch(segmentStyle, next)) {
+                createStyledRun(paragraph, text.substring(segmentStart, next.startPos), segmentStyle);
+                segmentStart = next.startPos;
+                segmentStyle = next;
+            }
+        }
+
+        createStyledRun(paragraph, text.substring(segmentStart, end), segmentStyle);
+    }
+
+
+    private static void createStyledRun(XWPFParagraph paragraph, String text, RunStyleInfo style) {
+        XWPFRun run = paragraph.createRun();
+        run.setText(text);
+        applyStyle(run, style);
+    }
+
+
+    private static class StyleCursor {
+        final List<RunStyleInfo> styles;
+        int index;
+
+        StyleCursor(List<RunStyleInfo> styles) {
+            this.styles = styles;
+        }
+
+        RunStyleInfo styleAt(int pos) {
+            while (index < styles.size() - 1 && styles.get(index).endPos <= pos) {
+                index++;
+            }
+            return styles.get(index);
+        }
+    }
+
+
+    private static VerticalAlign getVerticalAlign(XWPFRun run) {
+        try {
+            if (run.getCTR() != null && run.getCTR().getRPr() != null) {
+                org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr rPr = run.getCTR().getRPr();
+                
+                try (org.apache.xmlbeans.XmlCursor cursor = rPr.newCursor()) {
+                    cursor.toFirstChild();
+                    do {
+                        if ("vertAlign".equals(cursor.getName().getLocalPart())) {
+                            String val = cursor.getAttributeText(new javax.xml.namespace.QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main", "val"));
+                            if ("superscript".equals(val)) {
+                                return VerticalAlign.SUPERSCRIPT;
+                            } else if ("subscript".equals(val)) {
+                                return VerticalAlign.SUBSCRIPT;
+                            } else {
+                                return VerticalAlign.BASELINE;
+                            }
+                        }
+                    } while (cursor.toNextSibling());
+                }
+            }
+        } catch (Exception e) {
+
+        }
+        return null;
+    }
+    
+    private static boolean stylesMatch(RunStyleInfo style1, RunStyleInfo style2) {
+        if (style1 == null || style2 == null) {
+            return style1 == style2;
+        }
+        return java.util.Objects.equals(style1.fontFamily, style2.fontFamily) &&
+               java.util.Objects.equals(style1.fontSize, style2.fontSize) &&
+               style1.bold == style2.bold &&
+               style1.italic == style2.italic &&
+               java.util.Objects.equals(style1.color, style2.color) &&
+               style1.underline == style2.underline &&
+               java.util.Objects.equals(style1.subscript, style2.subscript);
+    }
+    
+
+    private static void applyStyle(XWPFRun run, RunStyleInfo styleInfo) {
+        if (styleInfo == null) return;
+        
+        if (styleInfo.fontFamily != null) {
+            run.setFontFamily(styleInfo.fontFamily);
+        }
+        if (styleInfo.fontSize != null && styleInfo.fontSize > 0) {
+            run.setFontSize(styleInfo.fontSize);
+        }
+        run.setBold(styleInfo.bold);
+        run.setItalic(styleInfo.italic);
+        if (styleInfo.color != null) {
+            run.setColor(styleInfo.color);
+        }
+        if (styleInfo.underline != null && styleInfo.underline != UnderlinePatterns.NONE) {
+            run.setUnderline(styleInfo.underline);
+        }
+        if (styleInfo.subscript != null) {
+            run.setSubscript(styleInfo.subscript);
+        }
+    }
+    
+
+    private static class RunStyleInfo {
+        int startPos;
+        int endPos;
+        String fontFamily;
+        Double fontSize;
+        boolean bold;
+        boolean italic;
+        String color;
+        UnderlinePatterns underline;
+        VerticalAlign subscript;
+        
+        RunStyleInfo(int startPos, int endPos, String fontFamily, Double fontSize,
+                    boolean bold, boolean italic, String color, UnderlinePatterns underline,
+                    VerticalAlign subscript) {
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.fontFamily = fontFamily;
+            this.fontSize = fontSize;
+            this.bold = bold;
+            this.italic = italic;
+            this.color = color;
+            this.underline = underline;
+            this.subscript = subscript;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.customsdocgen.customsdocgen.services;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+final class XmlTextRewriter {
+
+    private static final QName SPACE = new QName(XMLConstants.XML_NS_URI, "space", "xml");
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    private final QName scope;
+    private final QName nestedScope;
+    private final QName text;
+    private final QName ignored;
+
+    XmlTextRewriter(QName scope, QName nestedScope, QName text, QName ignored) {
+        this.scope = scope;
+        this.nestedScope = nestedScope;
+        this.text = text;
+        this.ignored = ignored;
+    }
+
+
+    void rewrite(InputStream in, OutputStream out, Map<String, String> fieldValues)
+            throws IOException, XMLStreamException {
+        XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        });
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 65536);
+        XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(buffered, "UTF-8");
+        try {
+            new PartRewriter(writer, fieldValues).rewrite(reader);
+            writer.flush();
+            buffered.flush();
+        } finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+
+    private final class PartRewriter {
+
+        private final XMLEventWriter writer;
+        private final Map<String, String> fieldValues;
+        private final List<XMLEvent> buffer = new ArrayList<>();
+        private final Deque<Scope> scopes = new ArrayDeque<>();
+        private Segment openText;
+        private int ignoredDepth = -1;
+        private int depth;
+
+        PartRewriter(XMLEventWriter writer, Map<String, String> fieldValues) {
+            this.writer = writer;
+            this.fieldValues = fieldValues;
+        }
+
+
+        void rewrite(XMLEventReader reader) throws XMLStreamException {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    depth++;
+                    QName name = event.asStartElement().getName();
+                    if (scope.equals(name) || !scopes.isEmpty() && name.equals(nestedScope)) {
+                        scopes.push(new Scope(depth));
+                    } else if (!scopes.isEmpty() && ignoredDepth < 0) {
+                        if (name.equals(ignored)) {
+                            ignoredDepth = depth;
+                        } else if (text.equals(name)) {
+                            openText = new Segment(buffer.size());
+                            scopes.peek().segments.add(openText);
+                        }
+                    }
+                } else if (event.isCharacters() && openText != null) {
+                    openText.append(buffer.size(), event.asCharacters().getData());
+                } else if (event.isEndElement()) {
+                    openText = null;
+                }
+
+                if (scopes.isEmpty()) {
+                    writer.add(event);
+                } else {
+                    buffer.add(event);
+                    if (event.isEndElement() && scopes.peek().depth == depth) {
+                        replacePlaceholders(scopes.pop());
+                        if (scopes.isEmpty()) {
+                            flush();
+                        }
+                    }
+                }
+                if (event.isEndElement()) {
+                    if (depth == ignoredDepth) {
+                        ignoredDepth = -1;
+                    }
+                    depth--;
+                }
+            }
+        }
+
+
+        private void flush() throws XMLStreamException {
+            for (XMLEvent event : buffer) {
+                if (event != null) {
+                    writer.add(event);
+                }
+            }
+            buffer.clear();
+        }
+
+
+        private void replacePlaceholders(Scope scope) {
+            List<Segment> segments = scope.segments;
+            StringBuilder fullText = new StringBuilder();
+            for (Segment segment : segments) {
+                fullText.append(segment.text);
+            }
+
+            String text = fullText.toString();
+            if (text.indexOf('{') < 0) {
+                return;
+            }
+            Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text);
+            if (!matcher.find()) {
+                return;
+            }
+
+            TextCursor cursor = new TextCursor(segments);
+            int originalPos = 0;
+            do {
+                cursor.copy(text, originalPos, matcher.start());
+                cursor.segmentAt(matcher.start()).rewritten.append(fieldValues.getOrDefault(matcher.group(), ""));
+                originalPos = matcher.end();
+            } while (matcher.find());
+            cursor.copy(text, originalPos, text.length());
+
+            for (Segment segment : segments) {
+                if (!segment.rewritten.toString().contentEquals(segment.text)) {
+                    segment.apply(buffer);
+                }
+            }
+        }
+    }
+
+
+    private static final class Scope {
+
+        final int depth;
+        final List<Segment> segments = new ArrayList<>();
+
+        Scope(int depth) {
+            this.depth = depth;
+        }
+    }
+
+
+    private static final class Segment {
+
+        final int start;
+        final StringBuilder text = new StringBuilder();
+        final StringBuilder rewritten = new StringBuilder();
+        int characters = -1;
+        List<Integer> continuations;
+
+        Segment(int start) {
+            this.start = start;
+        }
+
+
+        void append(int index, String data) {
+            if (characters < 0) {
+                characters = index;
+            } else {
+                if (continuations == null) {
+                    continuations = new ArrayList<>();
+                }
+                continuations.add(Integer.valueOf(index));
+            }
+            text.append(data);
+        }
+
+
+        void apply(List<XMLEvent> buffer) {
+            buffer.set(characters, EVENT_FACTORY.createCharacters(rewritten.toString()));
+            if (continuations != null) {
+                for (Integer index : continuations) {
+                    buffer.set(index.intValue(), null);
+                }
+            }
+
+            StartElement element = buffer.get(start).asStartElement();
+            if (element.getAttributeByName(SPACE) == null) {
+                List<Attribute> attributes = new ArrayList<>();
+                for (Iterator<Attribute> it = element.getAttributes(); it.hasNext(); ) {
+                    attributes.add(it.next());
+                }
+                attributes.add(EVENT_FACTORY.createAttribute(SPACE, "preserve"));
+                buffer.set(start, EVENT_FACTORY.createStartElement(element.getName(), attributes.iterator(),
+                    element.getNamespaces()));
+            }
+        }
+    }
+
+
+    private static final class TextCursor {
+
+        private final List<Segment> segments;
+        private int index;
+        private int segmentStart;
+
+        TextCursor(List<Segment> segments) {
+            this.segments = segments;
+        }
+
+
+        Segment segmentAt(int pos) {
+            while (index < segments.size() - 1 && segmentStart + segments.get(index).text.length() <= pos) {
+                segmentStart += segments.get(index).text.length();
+                index++;
+            }
+            return segments.get(index);
+        }
+
+
+        void copy(String text, int start, int end) {
+            int pos = start;
+            while (pos < end) {
+                Segment segment = segmentAt(pos);
+                int segmentEnd = Math.min(end, segmentStart + segment.text.length());
+                segment.rewritten.append(text, pos, segmentEnd);
+                pos = segmentEnd;
+            }
+        }
+    }
+}
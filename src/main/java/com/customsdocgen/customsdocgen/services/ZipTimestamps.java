@@ -0,0 +1,81 @@
+package com.customsdocgen.customsdocgen.services;
+
+final class ZipTimestamps {
+
+    static final int FIXED_DOS_TIME = 0;
+    static final int FIXED_DOS_DATE = (1 << 5) | 1;
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int END_RECORD_SIZE = 22;
+
+    private ZipTimestamps() {
+    }
+
+
+    static byte[] normalize(byte[] zip) {
+        int end = findEndOfCentralDirectory(zip);
+        if (end < 0) {
+            return zip;
+        }
+
+        int entries = readShort(zip, end + 10);
+        long directoryOffset = readInt(zip, end + 16) & 0xFFFFFFFFL;
+        if (entries == 0xFFFF || directoryOffset >= end) {
+            return zip;
+        }
+
+        int[] localOffsets = new int[entries];
+        int position = (int) directoryOffset;
+        for (int i = 0; i < entries; i++) {
+            if (position + 46 > end || readInt(zip, position) != CENTRAL_HEADER) {
+                return zip;
+            }
+            long localOffset = readInt(zip, position + 42) & 0xFFFFFFFFL;
+            if (localOffset + 30 > directoryOffset || readInt(zip, (int) localOffset) != LOCAL_HEADER) {
+                return zip;
+            }
+            localOffsets[i] = (int) localOffset;
+            position += 46 + readShort(zip, position + 28) + readShort(zip, position + 30) + readShort(zip, position + 32);
+        }
+
+        position = (int) directoryOffset;
+        for (int i = 0; i < entries; i++) {
+            writeTimestamp(zip, position + 12);
+            writeTimestamp(zip, localOffsets[i] + 10);
+            position += 46 + readShort(zip, position + 28) + readShort(zip, position + 30) + readShort(zip, position + 32);
+        }
+        return zip;
+    }
+
+
+    private static int findEndOfCentralDirectory(byte[] zip) {
+        int lowest = Math.max(0, zip.length - END_RECORD_SIZE - 0xFFFF);
+        for (int position = zip.length - END_RECORD_SIZE; position >= lowest; position--) {
+            if (readInt(zip, position) == END_OF_CENTRAL_DIRECTORY
+                    && position + END_RECORD_SIZE + readShort(zip, position + 20) == zip.length) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+
+    private static void writeTimestamp(byte[] zip, int offset) {
+        zip[offset] = (byte) FIXED_DOS_TIME;
+        zip[offset + 1] = (byte) (FIXED_DOS_TIME >>> 8);
+        zip[offset + 2] = (byte) FIXED_DOS_DATE;
+        zip[offset + 3] = (byte) (FIXED_DOS_DATE >>> 8);
+    }
+
+
+    private static int readShort(byte[] zip, int offset) {
+        return (zip[offset] & 0xFF) | (zip[offset + 1] & 0xFF) << 8;
+    }
+
+
+    private static int readInt(byte[] zip, int offset) {
+        return readShort(zip, offset) | readShort(zip, offset + 2) << 16;
+    }
+}
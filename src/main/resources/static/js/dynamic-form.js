@@ -3,8 +3,12 @@ let formConfig = null;
 let formData = {};
 let calculatedValues = {};
 let currentAvailableTemplates = [];
-let fieldValuesHistory = {}; // История значений для полей
+let availabilityETag = null;
+let configVersion = null;
+let suggestionTimers = {}; // Таймеры запросов подсказок истории по полям
+const HISTORY_SUGGESTIONS_LIMIT = 15;
 let selectedTemplatesForArchive = new Set(); // Выбранные шаблоны для архива
+let listRows = {}; // Строки полей-списков по плейсхолдеру
 
 // Инициализация при загрузке страницы
 document.addEventListener('DOMContentLoaded', () => {
@@ -25,12 +29,9 @@ document.addEventListener('DOMContentLoaded', () => {
 
 async function loadFormConfig() {
     try {
-        const [configResponse, historyResponse] = await Promise.all([
-            fetch('/api/form-config'),
-            fetch('/api/field-values-history')
-        ]);
+        // История значений не загружается целиком - подсказки запрашиваются по мере ввода
+        const configResponse = await fetch('/api/form-config');
         formConfig = await configResponse.json();
-        fieldValuesHistory = await historyResponse.json();
         renderForm();
     } catch (error) {
         console.error('Ошибка загрузки конфигурации:', error);
@@ -61,6 +62,9 @@ function renderForm() {
     
     // Добавляем обработчики событий
     setupFieldEventListeners();
+    
+    // Таблицы списков рисуются отдельно - у них собственные обработчики
+    getListFields().forEach(field => renderListTable(field));
 }
 
 function renderField(field) {
@@ -69,7 +73,20 @@ function renderField(field) {
     
     let fieldHtml = '';
     
-        if (isCalculated) {
+    if (field.fieldType === 'list') {
+        // Поле-список - таблица строк, которая повторяется в шаблоне
+        const required = field.required ? '<span class="required">*</span>' : '';
+        fieldHtml = `
+            <div class="form-group list-field">
+                <label>${field.displayName} ${required}</label>
+                <div class="list-table-wrapper">
+                    <table class="list-table" id="list_${field.id}"></table>
+                </div>
+                <button type="button" class="btn-add-row" onclick="addListRow('${field.id}')">+ Додати рядок</button>
+                <small class="field-hint">${getFieldHint(field)}</small>
+            </div>
+        `;
+    } else if (isCalculated) {
         // Поле с формулой - только для отображения
         fieldHtml = `
             <div class="formula-field">
@@ -97,11 +114,10 @@ function renderField(field) {
 
 function renderInput(field, fieldId) {
     const fieldType = field.fieldType;
-    const hasHistory = field.rememberValues && fieldValuesHistory[field.id] && fieldValuesHistory[field.id].length > 0;
+    const hasHistory = field.rememberValues;
     
-    // Если есть история, создаем input с кастомным dropdown (только для input элементов, не для textarea)
+    // Если поле запоминает значения, создаем input с кастомным dropdown (только для input элементов, не для textarea)
     if (hasHistory && fieldType !== 'textarea') {
-        const history = fieldValuesHistory[field.id];
         const dropdownId = `dropdown_${field.id}`;
         
         let inputHtml = '';
@@ -122,14 +138,7 @@ function renderInput(field, fieldId) {
                 <button type="button" class="history-dropdown-toggle" onclick="toggleHistoryDropdown('${field.id}')" title="Показати історію">
                     📋
                 </button>
-                <div id="${dropdownId}" class="history-dropdown">
-                    ${history.map(value => `
-                        <div class="history-item">
-                            <span class="history-value" onclick="selectHistoryValue('${field.id}', '${escapeHtml(value)}')">${escapeHtml(value)}</span>
-                            <button type="button" class="history-delete-btn" onclick="deleteHistoryValue('${field.id}', '${escapeHtml(value)}', event)" title="Видалити">×</button>
-                        </div>
-                    `).join('')}
-                </div>
+                <div id="${dropdownId}" class="history-dropdown"></div>
             </div>
         `;
         return `<div class="input-with-history">${inputHtml}${dropdownHtml}</div>`;
@@ -159,7 +168,7 @@ function escapeHtml(text) {
 
 // ========== УПРАВЛЕНИЕ ИСТОРИЕЙ ЗНАЧЕНИЙ ==========
 
-function toggleHistoryDropdown(fieldId) {
+async function toggleHistoryDropdown(fieldId) {
     const dropdown = document.getElementById(`dropdown_${fieldId}`);
     const isVisible = dropdown.style.display === 'block';
     
@@ -170,7 +179,59 @@ function toggleHistoryDropdown(fieldId) {
         }
     });
     
-    dropdown.style.display = isVisible ? 'none' : 'block';
+    if (isVisible) {
+        dropdown.style.display = 'none';
+        return;
+    }
+    
+    // По кнопке показываем последние значения без фильтра
+    await loadHistorySuggestions(fieldId, '');
+    dropdown.style.display = 'block';
+}
+
+async function loadHistorySuggestions(fieldId, query) {
+    const dropdown = document.getElementById(`dropdown_${fieldId}`);
+    if (!dropdown) {
+        return [];
+    }
+    
+    let suggestions = [];
+    try {
+        const response = await fetch(`/api/field-values-history/${encodeURIComponent(fieldId)}/suggestions`
+            + `?q=${encodeURIComponent(query)}&limit=${HISTORY_SUGGESTIONS_LIMIT}`);
+        if (response.ok) {
+            suggestions = await response.json();
+        }
+    } catch (error) {
+        console.error('Помилка завантаження підказок:', error);
+    }
+    
+    dropdown.innerHTML = suggestions.length > 0
+        ? suggestions.map(value => `
+            <div class="history-item">
+                <span class="history-value" onclick="selectHistoryValue('${fieldId}', '${escapeHtml(value)}')">${escapeHtml(value)}</span>
+                <button type="button" class="history-delete-btn" onclick="deleteHistoryValue('${fieldId}', '${escapeHtml(value)}', event)" title="Видалити">×</button>
+            </div>
+        `).join('')
+        : '<div class="history-item"><span class="history-value">Історія порожня</span></div>';
+    return suggestions;
+}
+
+// Подсказки при вводе запрашиваются с задержкой, чтобы не слать запрос на каждый символ
+function scheduleHistorySuggestions(fieldId, query) {
+    clearTimeout(suggestionTimers[fieldId]);
+    suggestionTimers[fieldId] = setTimeout(async () => {
+        const dropdown = document.getElementById(`dropdown_${fieldId}`);
+        if (!dropdown) {
+            return;
+        }
+        if (!query.trim()) {
+            dropdown.style.display = 'none';
+            return;
+        }
+        const suggestions = await loadHistorySuggestions(fieldId, query);
+        dropdown.style.display = suggestions.length > 0 ? 'block' : 'none';
+    }, 200);
 }
 
 function selectHistoryValue(fieldId, value) {
@@ -201,21 +262,9 @@ async function deleteHistoryValue(fieldId, value, event) {
         });
         
         if (response.ok) {
-            // Обновляем локальную историю
-            if (fieldValuesHistory[fieldId]) {
-                const index = fieldValuesHistory[fieldId].indexOf(value);
-                if (index > -1) {
-                    fieldValuesHistory[fieldId].splice(index, 1);
-                    
-                    // Если история пустая, удаляем поле
-                    if (fieldValuesHistory[fieldId].length === 0) {
-                        delete fieldValuesHistory[fieldId];
-                    }
-                }
-            }
-            
-            // Перерисовываем форму
-            renderForm();
+            // Обновляем список подсказок для текущего ввода
+            const input = document.getElementById(`field_${fieldId}`);
+            await loadHistorySuggestions(fieldId, input ? input.value : '');
             showNotification('Значення видалено з історії', 'success');
         } else {
             showNotification('Помилка видалення значення', 'error');
@@ -248,6 +297,9 @@ function getFieldHint(field) {
     if (field.fieldType === 'formula') {
         return 'Це поле обчислюється автоматично за формулою';
     }
+    if (field.fieldType === 'list') {
+        return 'Кожен рядок списку стає окремим рядком таблиці в документі';
+    }
     return field.required ? 'Обов\'язкове поле' : 'Опціональне поле';
 }
 
@@ -259,8 +311,8 @@ function setupEventListeners() {
 }
 
 function setupFieldEventListeners() {
-    // Обработчики для всех полей ввода
-    document.querySelectorAll('input, textarea').forEach(input => {
+    // Обработчики для всех полей ввода (ячейки списков обрабатываются отдельно)
+    document.querySelectorAll('input:not([data-list]), textarea').forEach(input => {
         input.addEventListener('input', handleFieldChange);
         input.addEventListener('change', handleFieldChange);
     });
@@ -273,13 +325,140 @@ function handleFieldChange(event) {
     // Обновляем данные формы
     formData[fieldName] = fieldValue;
     
-    // Вычисляем формулы
-    calculateFormulas();
+    // Подсказки из истории только для ручного ввода, а не для выбора из списка
+    if (event.type === 'input' && event.isTrusted && event.target.id.startsWith('field_')) {
+        scheduleHistorySuggestions(event.target.id.substring('field_'.length), fieldValue);
+    }
+    
+    // Пересчитываем только формулы, зависящие от изменённого поля
+    recalculateFormulas(fieldName);
     
     // Проверяем доступность кнопки
     updateCheckButton();
 }
 
+// ========== ПОЛЯ-СПИСКИ ==========
+
+function getListFields() {
+    return (formConfig.fields || []).filter(field => field.fieldType === 'list');
+}
+
+function getListName(field) {
+    return field.placeholder.slice(2, -2);
+}
+
+function renderListTable(field) {
+    const table = document.getElementById(`list_${field.id}`);
+    if (!table) {
+        return;
+    }
+    
+    const columns = field.columns || [];
+    const rows = listRows[field.placeholder] || [];
+    const listName = getListName(field);
+    
+    const header = columns.map(column => `<th>${escapeHtml(column.displayName || column.id)}</th>`).join('');
+    const body = rows.map((row, rowIndex) => `
+        <tr>
+            <td class="list-index">${rowIndex + 1}</td>
+            ${columns.map(column => `<td>${renderListCell(field, column, row, rowIndex)}</td>`).join('')}
+            <td><button type="button" class="btn-remove-row" onclick="removeListRow('${field.id}', ${rowIndex})" title="Видалити рядок">✕</button></td>
+        </tr>
+    `).join('');
+    const totals = columns.map(column => {
+        if (column.fieldType !== 'number' && column.fieldType !== 'formula') {
+            return '<td></td>';
+        }
+        const total = calculatedValues[`{{${listName}.${column.id}.TOTAL}}`] || '';
+        return `<td class="list-total" data-list-total="${column.id}">${escapeHtml(total)}</td>`;
+    }).join('');
+    
+    table.innerHTML = `
+        <thead><tr><th>#</th>${header}<th></th></tr></thead>
+        <tbody>${body}</tbody>
+        <tfoot><tr><td>Σ</td>${totals}<td></td></tr></tfoot>
+    `;
+    
+    // Ячейки пересоздаются при каждом изменении состава строк
+    table.querySelectorAll('input[data-list]').forEach(input => {
+        input.addEventListener('input', handleListCellChange);
+        input.addEventListener('change', handleListCellChange);
+    });
+}
+
+function renderListCell(field, column, row, rowIndex) {
+    const value = row[column.id] || '';
+    if (column.fieldType === 'formula') {
+        return `<span class="list-calculated" data-row="${rowIndex}" data-column="${column.id}">${escapeHtml(value)}</span>`;
+    }
+    
+    const type = getInputType(column.fieldType) === 'textarea' ? 'text' : getInputType(column.fieldType);
+    const step = column.fieldType === 'number' ? ' step="any"' : '';
+    return `<input type="${type}"${step} data-list="${field.id}" data-row="${rowIndex}" data-column="${column.id}" value="${escapeHtml(value).replace(/"/g, '&quot;')}">`;
+}
+
+function addListRow(fieldId) {
+    const field = formConfig.fields.find(f => f.id === fieldId);
+    const rows = listRows[field.placeholder] || (listRows[field.placeholder] = []);
+    rows.push({});
+    renderListTable(field);
+    syncListValue(field);
+}
+
+function removeListRow(fieldId, rowIndex) {
+    const field = formConfig.fields.find(f => f.id === fieldId);
+    (listRows[field.placeholder] || []).splice(rowIndex, 1);
+    renderListTable(field);
+    syncListValue(field);
+}
+
+function handleListCellChange(event) {
+    const { list, row, column } = event.target.dataset;
+    const field = formConfig.fields.find(f => f.id === list);
+    listRows[field.placeholder][parseInt(row)][column] = event.target.value;
+    syncListValue(field);
+}
+
+function syncListValue(field) {
+    // В форму список уходит JSON-массивом строк; формульные колонки и итоги считает сервер
+    const inputColumns = (field.columns || []).filter(column => column.fieldType !== 'formula');
+    const rows = (listRows[field.placeholder] || []).map(row => {
+        const values = {};
+        inputColumns.forEach(column => values[column.id] = row[column.id] || '');
+        return values;
+    });
+    formData[field.placeholder] = rows.length > 0 ? JSON.stringify(rows) : '';
+    
+    recalculateFormulas(field.placeholder);
+    updateCheckButton();
+}
+
+function updateListFields() {
+    getListFields().forEach(field => {
+        const table = document.getElementById(`list_${field.id}`);
+        if (!table) {
+            return;
+        }
+        
+        let calculatedRows = [];
+        try {
+            calculatedRows = JSON.parse(calculatedValues[field.placeholder] || '[]');
+        } catch (error) {
+            console.error('Ошибка разбора строк списка:', error);
+        }
+        
+        table.querySelectorAll('.list-calculated').forEach(element => {
+            const row = calculatedRows[parseInt(element.dataset.row)];
+            element.textContent = row ? (row[element.dataset.column] || '') : '';
+        });
+        
+        const listName = getListName(field);
+        table.querySelectorAll('[data-list-total]').forEach(element => {
+            element.textContent = calculatedValues[`{{${listName}.${element.dataset.listTotal}.TOTAL}}`] || '';
+        });
+    });
+}
+
 // ========== ВЫЧИСЛЕНИЕ ФОРМУЛ ==========
 
 async function calculateFormulas() {
@@ -299,6 +478,31 @@ async function calculateFormulas() {
     }
 }
 
+async function recalculateFormulas(changedPlaceholder) {
+    if (Object.keys(calculatedValues).length === 0) {
+        return calculateFormulas();
+    }
+    
+    try {
+        const response = await fetch('/api/calculate-formulas/incremental', {
+            method: 'POST',
+            headers: { 'Content-Type': 'application/json' },
+            body: JSON.stringify({
+                formData: { ...calculatedValues, ...formData },
+                changed: [changedPlaceholder]
+            })
+        });
+        
+        if (response.ok) {
+            const updatedValues = await response.json();
+            calculatedValues = { ...calculatedValues, ...formData, ...updatedValues };
+            updateCalculatedFields();
+        }
+    } catch (error) {
+        console.error('Ошибка вычисления формул:', error);
+    }
+}
+
 function updateCalculatedFields() {
     formConfig.fields
         .filter(field => field.fieldType === 'formula')
@@ -309,22 +513,44 @@ function updateCalculatedFields() {
                 element.textContent = value;
             }
         });
+    
+    updateListFields();
 }
 
 // ========== ПРОВЕРКА ДОСТУПНОСТИ ДОКУМЕНТОВ ==========
 
 async function checkDocumentAvailability() {
     try {
+        const headers = { 'Content-Type': 'application/json' };
+        if (availabilityETag) {
+            headers['If-None-Match'] = availabilityETag;
+        }
+        
         const response = await fetch('/api/check-template-availability', {
             method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
+            headers: headers,
             body: JSON.stringify(formData)
         });
         
+        // Результат не изменился — оставляем текущий список
+        if (response.status === 304) {
+            return;
+        }
+        
         if (response.ok) {
             const result = await response.json();
-            currentAvailableTemplates = result.availableTemplates;
-            renderAvailableDocuments(result.availableTemplates, result.allTemplates);
+            availabilityETag = response.headers.get('ETag');
+            
+            // Конфигурация изменилась — перечитываем список шаблонов
+            if (configVersion !== null && configVersion !== result.version) {
+                const configResponse = await fetch('/api/form-config');
+                formConfig = await configResponse.json();
+            }
+            configVersion = result.version;
+            
+            const availableTemplateIds = new Set(result.availableTemplateIds);
+            currentAvailableTemplates = formConfig.templates.filter(t => availableTemplateIds.has(t.id));
+            renderAvailableDocuments(currentAvailableTemplates, formConfig.templates);
         }
     } catch (error) {
         console.error('Ошибка проверки доступности:', error);
@@ -549,7 +775,8 @@ async function downloadArchive() {
         // Объединяем formData и calculatedValues
         const allData = { ...formData, ...calculatedValues };
         
-        const response = await fetch('/api/generate-archive', {
+        // Ставим архив в очередь генерации на сервере
+        const response = await fetch('/api/jobs/archive', {
             method: 'POST',
             headers: { 'Content-Type': 'application/json' },
             body: JSON.stringify({
@@ -560,32 +787,27 @@ async function downloadArchive() {
             })
         });
         
-        if (response.ok) {
-            const blob = await response.blob();
-            const url = window.URL.createObjectURL(blob);
+        if (!response.ok) {
+            const result = await response.json().catch(() => ({}));
+            showNotification(result.error || 'Помилка генерації архіву', 'error');
+            return;
+        }
+        
+        const { jobId } = await response.json();
+        const job = await waitForJob(jobId, button);
+        
+        if (job.status === 'COMPLETED') {
+            // Скачиваем готовый архив напрямую, без загрузки в память страницы
             const a = document.createElement('a');
-            a.href = url;
-            
-            // Получаем имя файла из заголовка
-            const contentDisposition = response.headers.get('Content-Disposition');
-            let fileName = 'Documents.zip';
-            
-            if (contentDisposition) {
-                const filenameMatch = contentDisposition.match(/filename\*=UTF-8''(.+)/);
-                if (filenameMatch) {
-                    fileName = decodeURIComponent(filenameMatch[1]);
-                }
-            }
-            
-            a.download = fileName;
+            a.href = `/api/jobs/${encodeURIComponent(jobId)}/result`;
+            a.download = job.fileName || 'Documents.zip';
             document.body.appendChild(a);
             a.click();
-            window.URL.revokeObjectURL(url);
             document.body.removeChild(a);
             
             showNotification('Архів успішно завантажено!', 'success');
         } else {
-            showNotification('Помилка генерації архіву', 'error');
+            showNotification(job.error ? `Помилка генерації архіву: ${job.error}` : 'Помилка генерації архіву', 'error');
         }
     } catch (error) {
         console.error('Помилка завантаження архіву:', error);
@@ -598,6 +820,29 @@ async function downloadArchive() {
     }
 }
 
+// Опрашиваем статус задачи, пока она не завершится, и показываем прогресс на кнопке
+async function waitForJob(jobId, button) {
+    while (true) {
+        const response = await fetch(`/api/jobs/${encodeURIComponent(jobId)}`);
+        if (!response.ok) {
+            return { status: 'FAILED', error: 'Задачу не знайдено' };
+        }
+        
+        const job = await response.json();
+        if (job.status !== 'QUEUED' && job.status !== 'RUNNING') {
+            return job;
+        }
+        
+        if (job.status === 'QUEUED') {
+            button.innerHTML = '⏳ Очікування в черзі...';
+        } else if (job.total > 0) {
+            button.innerHTML = `⏳ Створення архіву... ${job.done}/${job.total}`;
+        }
+        
+        await new Promise(resolve => setTimeout(resolve, 1000));
+    }
+}
+
 // ========== ВСПОМОГАТЕЛЬНЫЕ ФУНКЦИИ ==========
 
 function updateCheckButton() {
@@ -610,6 +855,8 @@ function clearForm() {
     if (confirm('Ви впевнені, що хочете очистити форму?')) {
         formData = {};
         calculatedValues = {};
+        listRows = {};
+        getListFields().forEach(field => renderListTable(field));
         
         // Очищаем все поля ввода
         document.querySelectorAll('input, textarea').forEach(input => {
@@ -623,6 +870,7 @@ function clearForm() {
         
         // Скрываем секцию документов
         document.getElementById('availableDocuments').style.display = 'none';
+        availabilityETag = null;
         
         // Обновляем кнопку
         updateCheckButton();
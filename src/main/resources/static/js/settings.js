@@ -101,6 +101,12 @@ function renderFields() {
                 </div>
                 ` : ''}
                 ` : ''}
+                ${field.fieldType === 'list' && field.columns ? `
+                <div class="detail-item" style="grid-column: 1 / -1;">
+                    <span class="detail-label">Колонки:</span>
+                    <span class="detail-value" style="font-family: monospace; background: #f5f5f5; padding: 4px 8px; border-radius: 4px;">${field.columns.map(column => column.id).join(', ')}</span>
+                </div>
+                ` : ''}
                 <div class="detail-item">
                     <span class="detail-label">Порядок:</span>
                     <span class="detail-value">${field.order}</span>
@@ -232,6 +238,11 @@ function openFieldModal(fieldId = null) {
                 document.getElementById('fieldFormula').value = field.formula;
             }
             
+            // Заполняем колонки списка если есть
+            if (field.columns) {
+                document.getElementById('fieldColumns').value = formatColumns(field.columns);
+            }
+            
             // Заполняем количество десятичных знаков если есть
             if (field.decimalPlaces !== null && field.decimalPlaces !== undefined) {
                 document.getElementById('fieldDecimalPlaces').value = field.decimalPlaces;
@@ -270,6 +281,9 @@ function openTemplateModal(templateId = null) {
             document.getElementById('templateIdInput').value = template.id;
             document.getElementById('downloadPattern').value = template.downloadPattern;
             document.getElementById('currentFileName').textContent = `Поточний файл: ${template.fileName}`;
+            document.getElementById('templateCacheResults').checked = template.cacheResults !== false;
+            document.getElementById('templateRenderEngine').value = template.renderEngine || 'poi';
+            document.getElementById('templateEvaluateFormulas').checked = template.evaluateFormulas === true;
             uploadedFileName = template.fileName;
             document.getElementById('templateIdInput').disabled = true;
             
@@ -353,7 +367,8 @@ async function saveField() {
         rememberValues: document.getElementById('fieldRememberValues').checked,
         formula: fieldType === 'formula' ? document.getElementById('fieldFormula').value : null,
         isCalculated: fieldType === 'formula',
-        decimalPlaces: fieldType === 'formula' ? decimalPlaces : null
+        decimalPlaces: fieldType === 'formula' ? decimalPlaces : null,
+        columns: fieldType === 'list' ? parseColumns(document.getElementById('fieldColumns').value) : null
     };
     
     try {
@@ -371,7 +386,8 @@ async function saveField() {
             closeModal(document.getElementById('fieldModal'));
             await loadConfig();
         } else {
-            showNotification('Помилка збереження поля', 'error');
+            const result = await response.json().catch(() => ({}));
+            showNotification(result.error || 'Помилка збереження поля', 'error');
         }
     } catch (error) {
         console.error('Ошибка:', error);
@@ -446,12 +462,19 @@ async function saveTemplate() {
         return;
     }
     
+    // Сохраняем остальные настройки шаблона, которых нет в форме
+    const existingTemplate = editingTemplate ? currentConfig.templates.find(t => t.id === editingTemplate) : null;
+    
     const template = {
+        ...existingTemplate,
         id: document.getElementById('templateIdInput').value,
         displayName: document.getElementById('templateDisplayName').value,
         fileName: uploadedFileName || currentConfig.templates.find(t => t.id === editingTemplate)?.fileName,
         downloadPattern: document.getElementById('downloadPattern').value,
-        requiredFieldIds: selectedFields
+        requiredFieldIds: selectedFields,
+        cacheResults: document.getElementById('templateCacheResults').checked,
+        renderEngine: document.getElementById('templateRenderEngine').value,
+        evaluateFormulas: document.getElementById('templateEvaluateFormulas').checked
     };
     
     try {
@@ -509,6 +532,10 @@ function toggleFormulaField() {
     const fieldType = document.getElementById('fieldType').value;
     const formulaGroup = document.getElementById('formulaGroup');
     const decimalPlacesGroup = document.getElementById('decimalPlacesGroup');
+    const columnsGroup = document.getElementById('columnsGroup');
+    
+    columnsGroup.style.display = fieldType === 'list' ? 'block' : 'none';
+    document.getElementById('fieldColumns').required = fieldType === 'list';
     
     if (fieldType === 'formula') {
         formulaGroup.style.display = 'block';
@@ -521,6 +548,39 @@ function toggleFormulaField() {
     }
 }
 
+// Колонка списка в текстовом виде: ID | Назва | тип | формула | знаків
+function formatColumns(columns) {
+    return columns.map(column => {
+        const parts = [column.id, column.displayName || column.id, column.fieldType || 'text'];
+        if (column.fieldType === 'formula') {
+            parts.push(column.formula || '');
+            if (column.decimalPlaces !== null && column.decimalPlaces !== undefined) {
+                parts.push(column.decimalPlaces);
+            }
+        }
+        return parts.join(' | ');
+    }).join('\n');
+}
+
+function parseColumns(text) {
+    return text.split('\n')
+        .map(line => line.split('|').map(part => part.trim()))
+        .filter(parts => parts[0])
+        .map((parts, index) => {
+            const fieldType = parts[2] || 'text';
+            const isFormula = fieldType === 'formula';
+            return {
+                id: parts[0],
+                displayName: parts[1] || parts[0],
+                fieldType: fieldType,
+                order: index + 1,
+                formula: isFormula ? (parts[3] || '') : null,
+                isCalculated: isFormula,
+                decimalPlaces: isFormula && parts[4] ? parseInt(parts[4]) : null
+            };
+        });
+}
+
 // ========== УВЕДОМЛЕНИЯ ==========
 
 function showNotification(message, type = 'info') {
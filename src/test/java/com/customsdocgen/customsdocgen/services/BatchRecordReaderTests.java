@@ -0,0 +1,28 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchRecordReaderTests {
+
+    @Test
+    void parsesQuotedCsvWithDetectedDelimiter() {
+        String csv = "CONTRACT_NUMBER;{{CONSIGNEE_NAME}};WEIGHT\r\n"
+                + "C-1;\"Acme; Ltd\";12,5\r\n"
+                + "C-2;\"Say \"\"hi\"\"\nsecond line\";7\n";
+
+        assertEquals(List.of(
+                List.of("CONTRACT_NUMBER", "{{CONSIGNEE_NAME}}", "WEIGHT"),
+                List.of("C-1", "Acme; Ltd", "12,5"),
+                List.of("C-2", "Say \"hi\"\nsecond line", "7")), BatchRecordReader.readCsv(csv));
+    }
+
+
+    @Test
+    void fallsBackToCommaDelimiter() {
+        assertEquals(List.of(List.of("A", "B"), List.of("1", "")), BatchRecordReader.readCsv("A,B\n1,"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+final class Benchmarks {
+
+    static final String ENABLED_PROPERTY = "benchmarks";
+
+    private static final int WARMUPS = 10;
+    private static final int ITERATIONS = 21;
+
+    private Benchmarks() {
+    }
+
+
+    static double measure(String name, Callable<?> body) throws Exception {
+        return measure(name, WARMUPS, ITERATIONS, body);
+    }
+
+
+    static double measure(String name, int warmups, int iterations, Callable<?> body) throws Exception {
+        for (int i = 0; i < warmups; i++) {
+            body.call();
+        }
+        double[] millis = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long started = System.nanoTime();
+            body.call();
+            millis[i] = (System.nanoTime() - started) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        double median = millis[iterations / 2];
+        System.out.printf(Locale.ROOT, "BENCH %-56s median %9.2f ms  min %9.2f ms  max %9.2f ms%n",
+                name, median, millis[0], millis[iterations - 1]);
+        return median;
+    }
+
+
+    static long allocated(String name, Callable<?> body) throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        body.call();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        body.call();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf(Locale.ROOT, "BENCH %-56s allocated %9.1f MB%n", name, allocated / (1024.0 * 1024.0));
+        return allocated;
+    }
+}
@@ -0,0 +1,85 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class BodyWalkerBenchmark {
+
+    private static final int BODY_PARAGRAPHS = 20_000;
+    private static final int TABLE_ROWS = 5_000;
+    private static final int TABLE_COLUMNS = 4;
+    private static final int PARAGRAPHS = BODY_PARAGRAPHS + TABLE_ROWS * TABLE_COLUMNS;
+
+    @Test
+    void traversalCostsNoMoreThanParagraphAndTableLoops() throws Exception {
+        byte[] template = template();
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("bench.docx", template);
+
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            Benchmarks.measure("docx traversal: getParagraphs/getTables loops", () -> {
+                int[] count = new int[1];
+                visitLoops(document, count);
+                assertEquals(PARAGRAPHS, count[0]);
+                return count;
+            });
+            Benchmarks.measure("docx traversal: BodyWalker", () -> {
+                int[] count = new int[1];
+                BodyWalker.walk(document, analysis.extendedContent(), paragraph -> count[0]++);
+                assertEquals(PARAGRAPHS, count[0]);
+                return count;
+            });
+            Benchmarks.measure("docx traversal: BodyWalker with extended content", () -> {
+                int[] count = new int[1];
+                BodyWalker.walk(document, true, paragraph -> count[0]++);
+                assertEquals(PARAGRAPHS, count[0]);
+                return count;
+            });
+        }
+    }
+
+
+    private static void visitLoops(IBody body, int[] count) {
+        for (XWPFParagraph paragraph : body.getParagraphs()) {
+            if (paragraph.getCTP() != null) {
+                count[0]++;
+            }
+        }
+        for (XWPFTable table : body.getTables()) {
+            for (XWPFTableRow row : table.getRows()) {
+                for (XWPFTableCell cell : row.getTableCells()) {
+                    visitLoops(cell, count);
+                }
+            }
+        }
+    }
+
+
+    private static byte[] template() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < BODY_PARAGRAPHS; i++) {
+                document.createParagraph().createRun().setText(i % 100 == 0 ? "Contract {{CONTRACT_NUMBER}}" : "Clause " + i);
+            }
+            XWPFTable table = document.createTable(TABLE_ROWS, TABLE_COLUMNS);
+            for (int row = 0; row < TABLE_ROWS; row++) {
+                for (int column = 0; column < TABLE_COLUMNS; column++) {
+                    table.getRow(row).getCell(column).setText("Line " + row);
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPicture;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtBlock;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtRun;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BodyWalkerTests {
+
+    private static final String NAMESPACES = "xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\" "
+            + "xmlns:v=\"urn:schemas-microsoft-com:vml\"";
+
+    @Test
+    void visitsEveryBodyOnceInDocumentOrder() throws Exception {
+        byte[] template = template();
+
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("walker.docx", template);
+        assertEquals(Set.of("{{BODY}}", "{{TEXT_BOX}}", "{{CELL}}", "{{NESTED}}", "{{INLINE_SDT}}", "{{BLOCK_SDT}}",
+                "{{HEADER}}", "{{FOOTER}}", "{{FOOTNOTE}}"), analysis.placeholders());
+        assertTrue(analysis.extendedContent());
+
+        Map<Integer, String> texts = new TreeMap<>();
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, new BodyWalker.BodyVisitor() {
+                @Override
+                public void paragraph(BodyWalker.Block paragraph) {
+                    assertEquals(null, texts.put(paragraph.ordinal(), paragraph.text()));
+                }
+
+                @Override
+                public void contentControl(BodyWalker.Block contentControl) {
+                    assertEquals(null, texts.put(contentControl.ordinal(), "sdt:" + contentControl.text()));
+                }
+            });
+        }
+        assertEquals(List.of("Body {{BODY}}", "{{TEXT_BOX}}", "{{CELL}}", "{{NESTED}}", "Inline ",
+                        "sdt:{{INLINE_SDT}}", "{{BLOCK_SDT}}", "{{HEADER}}", "{{FOOTER}}", "{{FOOTNOTE}}"),
+                texts.values().stream().map(text -> text.replace("\n", "")).filter(text -> !text.isEmpty()).toList());
+    }
+
+
+    @Test
+    void replacesPlaceholdersOutsideTheMainParagraphs() throws Exception {
+        byte[] template = template();
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("walker.docx", template);
+        Map<String, String> values = new java.util.HashMap<>();
+        analysis.placeholders().forEach(placeholder -> values.put(placeholder, "ok"));
+
+        String xml;
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, new BodyWalker.BodyVisitor() {
+                @Override
+                public void paragraph(BodyWalker.Block paragraph) {
+                    if (analysis.containsParagraph(paragraph.ordinal())) {
+                        WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), values);
+                    }
+                }
+
+                @Override
+                public void contentControl(BodyWalker.Block contentControl) {
+                    if (analysis.containsParagraph(contentControl.ordinal())) {
+                        WordPlaceholderReplacer.replaceAcrossRuns(contentControl.runs(), values);
+                    }
+                }
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            try (XWPFDocument rendered = new XWPFDocument(new ByteArrayInputStream(out.toByteArray()))) {
+                xml = rendered.getDocument().xmlText() + rendered.getHeaderList().get(0)._getHdrFtr().xmlText()
+                        + rendered.getFooterList().get(0)._getHdrFtr().xmlText()
+                        + rendered.getFootnotes().get(rendered.getFootnotes().size() - 1).getCTFtnEdn().xmlText();
+            }
+        }
+        assertFalse(xml.contains("{{"), xml);
+        assertTrue(xml.contains("txbxContent"));
+    }
+
+
+    @Test
+    void walksLargeDocumentsInLinearTime() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < 20_000; i++) {
+                document.createParagraph().createRun().setText("Line " + i);
+            }
+            XWPFTable table = document.createTable(5_000, 4);
+            table.getRow(4_999).getCell(3).setText("{{LAST}}");
+
+            int[] visited = new int[1];
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () ->
+                    BodyWalker.walk(document, paragraph -> visited[0]++));
+            assertEquals(20_000 + 5_000 * 4, visited[0]);
+            assertFalse(BodyWalker.walk(document, paragraph -> { }));
+        }
+    }
+
+
+    @Test
+    void replacesPlaceholdersSplitAcrossContentControlRuns() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText("Contract ");
+            paragraph.getCTP().addNewSdt().set(CTSdtRun.Factory.parse("<xml-fragment " + NAMESPACES + ">"
+                    + "<w:sdtContent><w:r><w:t>No {{CONT</w:t></w:r><w:r><w:rPr><w:b/></w:rPr><w:t>RACT_NUM</w:t></w:r>"
+                    + "<w:r><w:t xml:space=\"preserve\">BER}} of {{UNKNOWN}}</w:t></w:r></w:sdtContent></xml-fragment>"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            template = out.toByteArray();
+        }
+
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("split.docx", template);
+        List<String> runs = new java.util.ArrayList<>();
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, analysis.extendedContent(), new BodyWalker.BodyVisitor() {
+                @Override
+                public void paragraph(BodyWalker.Block paragraph) {
+                }
+
+                @Override
+                public void contentControl(BodyWalker.Block contentControl) {
+                    WordPlaceholderReplacer.replaceAcrossRuns(contentControl.runs(), Map.of("{{CONTRACT_NUMBER}}", "42"));
+                    contentControl.runs().forEach(run -> runs.add(run.getText(0)));
+                }
+            });
+        }
+        assertEquals(List.of("No 42", "", " of "), runs);
+    }
+
+
+    @Test
+    void fastWalkKeepsTheOrdinalsOfTheFullWalk() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createParagraph().createRun().setText("{{FIRST}}");
+            XWPFTable table = document.createTable(2, 2);
+            table.getRow(1).getCell(0).setText("{{CELL}}");
+            table.getRow(1).getCell(1).insertTable(0, new XWPFTable(table.getRow(1).getCell(1).getCTTc().addNewTbl(),
+                    table.getRow(1).getCell(1), 1, 1));
+            document.createParagraph().createRun().setText("{{LAST}}");
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("{{HEADER}}");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            template = out.toByteArray();
+        }
+
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("plain.docx", template);
+        assertFalse(analysis.extendedContent());
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            Map<Integer, String> full = new TreeMap<>();
+            Map<Integer, String> fast = new TreeMap<>();
+            BodyWalker.walk(document, true, paragraph -> full.put(paragraph.ordinal(), paragraph.text()));
+            BodyWalker.walk(document, false, paragraph -> fast.put(paragraph.ordinal(), paragraph.text()));
+            assertEquals(full, fast);
+            assertTrue(full.containsValue("{{CELL}}"));
+        }
+    }
+
+
+    private static byte[] template() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createParagraph().createRun().setText("Body {{BODY}}");
+            document.createParagraph().createRun().getCTR().addNewPict().set(CTPicture.Factory.parse("<xml-fragment " + NAMESPACES + ">"
+                    + "<v:shape><v:textbox><w:txbxContent><w:p><w:r><w:t>{{TEXT_BOX}}</w:t></w:r></w:p>"
+                    + "</w:txbxContent></v:textbox></v:shape></xml-fragment>"));
+
+            XWPFTable table = document.createTable(1, 1);
+            table.getRow(0).getCell(0).setText("{{CELL}}");
+            table.getRow(0).getCell(0).getCTTc().addNewTbl().addNewTr().addNewTc().addNewP().addNewR().addNewT()
+                    .setStringValue("{{NESTED}}");
+            table.getRow(0).getCell(0).getCTTc().addNewP();
+
+            XWPFParagraph inline = document.createParagraph();
+            inline.createRun().setText("Inline ");
+            inline.getCTP().addNewSdt().set(CTSdtRun.Factory.parse("<xml-fragment " + NAMESPACES + ">"
+                    + "<w:sdtContent><w:r><w:t>{{INLINE_SDT}}</w:t></w:r></w:sdtContent></xml-fragment>"));
+
+            document.getDocument().getBody().addNewSdt().set(CTSdtBlock.Factory.parse("<xml-fragment " + NAMESPACES + ">"
+                    + "<w:sdtContent><w:p><w:r><w:t>{{BLOCK_SDT}}</w:t></w:r></w:p></w:sdtContent></xml-fragment>"));
+
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("{{HEADER}}");
+            document.createFooter(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("{{FOOTER}}");
+            document.createFootnote().createParagraph().createRun().setText("{{FOOTNOTE}}");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class ConfigSnapshotTests {
+
+    @Test
+    void availableTemplatesRequireAllTheirFieldsFilled() {
+        ConfigSnapshot snapshot = ConfigSnapshot.of(1,
+                List.of(field("number", "{{NUMBER}}"), field("date", "{{DATE}}"), field("weight", "{{WEIGHT}}")),
+                List.of(template("invoice", "number", "date"), template("cmr", "number", "weight"),
+                        template("note"), template("unknownField", "missing")));
+
+        assertEquals(List.of("note", "unknownField"), snapshot.getAvailableTemplateIds(Map.of()));
+        assertEquals(List.of("invoice", "note", "unknownField"),
+                snapshot.getAvailableTemplateIds(Map.of("{{NUMBER}}", "1", "{{DATE}}", "2024-01-01", "{{WEIGHT}}", "  ")));
+        assertEquals(List.of("invoice", "cmr", "note", "unknownField"),
+                snapshot.getAvailableTemplateIds(Map.of("{{NUMBER}}", "1", "{{DATE}}", "x", "{{WEIGHT}}", "5")));
+    }
+
+
+    @Test
+    void indexesFieldsAndTemplates() {
+        FieldConfig number = field("number", "{{NUMBER}}");
+        TemplateConfig invoice = template("invoice", "number");
+        ConfigSnapshot snapshot = ConfigSnapshot.of(3, List.of(number), List.of(invoice));
+
+        assertEquals(number, snapshot.getFieldById("number"));
+        assertEquals(snapshot.getFieldById("number"), snapshot.getFieldByPlaceholder("{{NUMBER}}"));
+        assertEquals(invoice, snapshot.getTemplateById("invoice"));
+        assertEquals(List.of("{{NUMBER}}"), snapshot.getRequiredPlaceholders("invoice"));
+        assertEquals(3, snapshot.getVersion());
+    }
+
+
+    @Test
+    void keepsItsOwnCopiesOfFieldsAndTemplates() {
+        FieldConfig items = field("items", "{{ITEMS}}");
+        items.setColumns(new java.util.ArrayList<>(List.of(field("QTY", null))));
+        TemplateConfig invoice = template("invoice", "items");
+        ConfigSnapshot snapshot = ConfigSnapshot.of(1, List.of(items), List.of(invoice));
+
+        items.setPlaceholder("{{CHANGED}}");
+        items.getColumns().get(0).setFieldType("number");
+        invoice.setRequiredFieldIds(List.of());
+
+        assertEquals("{{ITEMS}}", snapshot.getFieldById("items").getPlaceholder());
+        assertEquals("text", snapshot.getFieldById("items").getColumns().get(0).getFieldType());
+        assertEquals(List.of("items"), snapshot.getTemplateById("invoice").getRequiredFieldIds());
+        assertNotSame(items, snapshot.getFieldById("items"));
+    }
+
+
+    @Test
+    void handsOutCopiesThatCannotChangeThePublishedSnapshot() {
+        ConfigSnapshot snapshot = ConfigSnapshot.of(1, List.of(field("number", "{{NUMBER}}")),
+                List.of(template("invoice", "number")));
+
+        snapshot.getTemplateById("invoice").setRequiredFieldIds(List.of());
+        snapshot.getFieldById("number").setPlaceholder("{{CHANGED}}");
+        snapshot.getFieldByPlaceholder("{{NUMBER}}").setFieldType("number");
+        snapshot.getConfig().getTemplates().get(0).setFileName("changed.docx");
+        snapshot.getConfig().getFields().clear();
+
+        assertEquals(List.of("number"), snapshot.getTemplateById("invoice").getRequiredFieldIds());
+        assertEquals("invoice.docx", snapshot.getTemplateById("invoice").getFileName());
+        assertEquals("{{NUMBER}}", snapshot.getFieldById("number").getPlaceholder());
+        assertEquals("text", snapshot.getFieldById("number").getFieldType());
+        assertEquals(1, snapshot.getFields().size());
+        assertEquals(List.of(), snapshot.getAvailableTemplateIds(Map.of()));
+    }
+
+
+    @Test
+    void availabilityTagDependsOnTheSetOfTemplatesAndTheVersion() {
+        ConfigSnapshot snapshot = ConfigSnapshot.of(4, List.of(), List.of());
+
+        assertEquals(snapshot.availabilityTag(List.of("a", "b")), snapshot.availabilityTag(List.of("b", "a")));
+        assertNotEquals(snapshot.availabilityTag(List.of("Aa")), snapshot.availabilityTag(List.of("BB")));
+        assertNotEquals(snapshot.availabilityTag(List.of("a", "b")), snapshot.availabilityTag(List.of("ab")));
+        assertNotEquals(snapshot.availabilityTag(List.of("a")),
+                ConfigSnapshot.of(5, List.of(), List.of()).availabilityTag(List.of("a")));
+    }
+
+
+    private static FieldConfig field(String id, String placeholder) {
+        FieldConfig field = new FieldConfig();
+        field.setId(id);
+        field.setPlaceholder(placeholder);
+        field.setFieldType("text");
+        return field;
+    }
+
+
+    private static TemplateConfig template(String id, String... requiredFieldIds) {
+        TemplateConfig template = new TemplateConfig();
+        template.setId(id);
+        template.setFileName(id + ".docx");
+        template.setRequiredFieldIds(List.of(requiredFieldIds));
+        return template;
+    }
+}
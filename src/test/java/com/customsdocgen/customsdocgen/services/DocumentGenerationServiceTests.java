@@ -0,0 +1,163 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentGenerationServiceTests {
+
+    private static final Map<String, String> VALUES = Map.of(
+            "{{CONTRACT_NUMBER}}", "UA-2024/117",
+            "{{CONSIGNEE}}", "Smith & Sons <Ltd>",
+            "{{WEIGHT}}", "24850.5");
+
+    @TempDir
+    Path tempDir;
+
+    private final String prefix = "regeneration-" + UUID.randomUUID() + "-";
+    private final List<Path> templateFiles = new ArrayList<>();
+
+    @AfterEach
+    void deleteTemplates() throws IOException {
+        for (Path file : templateFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+
+    @Test
+    void regeneratesByteIdenticalDocumentsFromTheJournal() throws Exception {
+        List<TemplateConfig> templates = List.of(
+                template("contract", prefix + "contract.docx", null),
+                template("contract-streaming", prefix + "contract-streaming.docx", "streaming"),
+                template("packing-list", prefix + "packing-list.xlsx", null));
+        writeTemplate(prefix + "contract.docx", document("Contract {{CONTRACT_NUMBER}}"));
+        writeTemplate(prefix + "contract-streaming.docx", document("Contract {{CONTRACT_NUMBER}}"));
+        writeTemplate(prefix + "packing-list.xlsx", workbook());
+
+        GenerationJournal journal = newJournal();
+        DocumentGenerationService service = newService(templates, journal);
+        List<byte[]> originals = new ArrayList<>();
+        for (TemplateConfig template : templates) {
+            originals.add(service.generateDocument(template.getId(), VALUES));
+        }
+        journal.shutdown();
+
+        writeTemplate(prefix + "contract.docx", document("Amended contract {{CONTRACT_NUMBER}}"));
+        assertFalse(Arrays.equals(originals.get(0), service.generateDocument("contract", VALUES)));
+
+        GenerationJournal reopened = newJournal();
+        List<GenerationJournal.JournalEntry> entries = reopened.search("UA-2024/117", null, null, 100);
+        reopened.shutdown();
+        for (int i = 0; i < templates.size(); i++) {
+            String templateId = templates.get(i).getId();
+            GenerationJournal.JournalEntry entry = entries.stream()
+                    .filter(candidate -> candidate.templateId().equals(templateId))
+                    .reduce((newer, older) -> older)
+                    .orElseThrow();
+            assertArrayEquals(originals.get(i), service.regenerate(entry), templateId);
+        }
+        assertEquals(Map.of("{{WEIGHT}}", "number"), entries.stream()
+                .filter(entry -> entry.templateId().equals("packing-list")).findFirst().orElseThrow().cellTypes());
+        service.shutdown();
+    }
+
+
+    private DocumentGenerationService newService(List<TemplateConfig> templates, GenerationJournal journal) {
+        ConfigSnapshot snapshot = ConfigSnapshot.of(1, List.of(field("contract_number", "text"),
+                field("consignee", "text"), field("weight", "number")), templates);
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getSnapshot()).thenReturn(snapshot);
+        when(configService.getConfig()).thenReturn(snapshot.getConfig());
+        when(configService.getVersion()).thenReturn(Long.valueOf(snapshot.getVersion()));
+        for (TemplateConfig template : templates) {
+            when(configService.getTemplateById(template.getId())).thenReturn(snapshot.getTemplateById(template.getId()));
+        }
+        TemplateCacheService templateCacheService = new TemplateCacheService(64L << 20,
+                new TemplateVersionStore(tempDir.resolve("versions").toString()));
+        return new DocumentGenerationService(configService, new FormulaCalculationService(configService), null,
+                templateCacheService, journal, 1, 6, List.of(), false, 0);
+    }
+
+
+    private GenerationJournal newJournal() throws IOException {
+        return new GenerationJournal(true, tempDir.resolve("journal").toString(), 1 << 20, 100, 1000);
+    }
+
+
+    private void writeTemplate(String fileName, byte[] content) throws IOException {
+        Path file = Path.of(FileStorageService.TEMPLATES_DIR, fileName);
+        Files.createDirectories(file.getParent());
+        long previous = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(
+                Math.max(System.currentTimeMillis(), previous + 2_000)));
+        templateFiles.add(file);
+    }
+
+
+    private static TemplateConfig template(String id, String fileName, String renderEngine) {
+        String extension = fileName.substring(fileName.lastIndexOf('.'));
+        return new TemplateConfig(id, fileName, id, id + "_{{CONTRACT_NUMBER}}" + extension, List.of(), Boolean.FALSE,
+                renderEngine, null);
+    }
+
+
+    private static FieldConfig field(String id, String fieldType) {
+        FieldConfig field = new FieldConfig();
+        field.setId(id);
+        field.setPlaceholder("{{" + id.toUpperCase() + "}}");
+        field.setFieldType(fieldType);
+        return field;
+    }
+
+
+    private static byte[] document(String heading) throws IOException {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            paragraph.createRun().setText(heading);
+            XWPFParagraph consignee = document.createParagraph();
+            consignee.createRun().setText("Consignee: {{CONS");
+            consignee.createRun().setText("IGNEE}}, gross weight {{WEIGHT}} kg");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+
+    private static byte[] workbook() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFRow row = workbook.createSheet("Packing list").createRow(0);
+            row.createCell(0).setCellValue("Contract {{CONTRACT_NUMBER}}");
+            row.createCell(1).setCellValue("{{CONSIGNEE}}");
+            row.createCell(2).setCellValue("{{WEIGHT}}");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FieldValuesHistoryServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void batchesFormValuesIntoSingleFlush() throws Exception {
+        Path file = tempDir.resolve("history.json");
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), file.toString()), 50);
+        service.init();
+
+        service.saveValuesForFields(Map.of("consignee", "Acme", "port", "Odesa"),
+                Map.of("consignee", Boolean.TRUE, "port", Boolean.TRUE));
+        assertEquals(1L, service.getStats().get("pendingChanges"));
+        assertFalse(Files.exists(file));
+
+        service.flush();
+        assertEquals(0L, service.getStats().get("pendingChanges"));
+        assertEquals(1L, service.getStats().get("flushes"));
+        assertFalse(Files.exists(tempDir.resolve("history.json.tmp")));
+
+        FieldValuesHistoryService reloaded = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), file.toString()), 50);
+        reloaded.init();
+        assertEquals(List.of("Acme"), reloaded.getHistory("consignee"));
+        assertEquals(List.of("Odesa"), reloaded.getHistory("port"));
+    }
+
+
+    @Test
+    void skipsFlushWhenNothingChanged() {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), "history.json"), 50);
+        service.init();
+
+        service.addValue("consignee", "  ");
+        service.flush();
+
+        assertEquals(0L, service.getStats().get("flushes"));
+        assertTrue(service.getAllHistory().isEmpty());
+    }
+
+
+    @Test
+    void keepsMostRecentValuesFirstAndEvictsOldest() {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), "history.json"), 50);
+        service.init();
+
+        for (int i = 0; i < 55; i++) {
+            service.addValue("consignee", "value-" + i);
+        }
+        service.addValue("consignee", "value-10");
+
+        List<String> history = service.getHistory("consignee");
+        assertEquals(50, history.size());
+        assertEquals(List.of("value-10", "value-54", "value-53"), history.subList(0, 3));
+        assertEquals("value-5", history.get(49));
+        assertFalse(history.contains("value-4"));
+    }
+
+
+    @Test
+    void reusesHistorySnapshotUntilNextChange() {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), "history.json"), 50);
+        service.init();
+        service.addValue("consignee", "Acme");
+
+        Map<String, List<String>> first = service.getAllHistory();
+        assertSame(first, service.getAllHistory());
+
+        assertTrue(service.removeValue("consignee", "Acme"));
+        Map<String, List<String>> second = service.getAllHistory();
+        assertNotSame(first, second);
+        assertTrue(second.isEmpty());
+        assertEquals(List.of("Acme"), first.get("consignee"));
+    }
+
+
+    @Test
+    void suggestsByWordPrefixIgnoringCaseAndDiacritics() {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), "history.json"), 50);
+        service.init();
+        service.addValue("consignee", "ТОВ \"Полтавський Завод\"");
+        service.addValue("consignee", "Société Générale");
+        service.addValue("consignee", "Poltava Trade");
+        service.addValue("consignee", "ТОВ Київ-Пром");
+
+        assertEquals(List.of("Société Générale"), service.suggest("consignee", "GENER", 10));
+        assertEquals(List.of("ТОВ \"Полтавський Завод\""), service.suggest("consignee", "завод", 10));
+        assertEquals(List.of("ТОВ \"Полтавський Завод\""), service.suggest("consignee", "ПОЛТ", 10));
+        assertEquals(List.of("ТОВ Київ-Пром", "ТОВ \"Полтавський Завод\""), service.suggest("consignee", "тов", 10));
+        assertEquals(List.of("ТОВ Київ-Пром"), service.suggest("consignee", "КИІВ", 10));
+        assertEquals(List.of("ТОВ Київ-Пром", "Poltava Trade"), service.suggest("consignee", "", 2));
+        assertTrue(service.suggest("unknown", "a", 10).isEmpty());
+    }
+
+
+    @Test
+    void ranksFrequentValuesAboveRecentOnes() {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(new JsonHistoryStore(tempDir.toString(), "history.json"), 50);
+        service.init();
+        for (int i = 0; i < 5; i++) {
+            service.addValue("port", "Odesa");
+        }
+        service.addValue("port", "Odense");
+
+        assertEquals(List.of("Odesa", "Odense"), service.suggest("port", "od", 10));
+        assertEquals(List.of("Odense", "Odesa"), service.getHistory("port"));
+    }
+}
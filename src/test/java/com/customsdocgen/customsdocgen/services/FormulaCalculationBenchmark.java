@@ -0,0 +1,105 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class FormulaCalculationBenchmark {
+
+    private static final int CALCULATIONS = 10_000;
+    private static final int LIST_ROWS = 5_000;
+
+    @Test
+    void compiledFormulasAgainstLegacyRegexEvaluator() throws Exception {
+        List<FieldConfig> fields = List.of(
+                formula("{{NET}}", "{{QTY}} * {{PRICE}}", 2),
+                formula("{{DISCOUNT}}", "{{NET}} * 0.05", 2),
+                formula("{{VAT}}", "{{NET}} * {{VAT_RATE}} / 100 - {{DISCOUNT}} * {{VAT_RATE}} / 100", 2),
+                formula("{{GROSS}}", "{{NET}} - {{DISCOUNT}} + {{VAT}}", 2),
+                formula("{{GROSS_WEIGHT}}", "{{NET_WEIGHT}} + {{PACKAGES}} * 1.25", 3),
+                formula("{{DUTY}}", "{{GROSS}} * {{DUTY_RATE}} / 100", 2),
+                formula("{{TOTAL}}", "{{GROSS}} + {{DUTY}} + {{FREIGHT}}", 2));
+        ConfigSnapshot snapshot = ConfigSnapshot.of(1, fields, List.of());
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getSnapshot()).thenReturn(snapshot);
+        FormulaCalculationService service = new FormulaCalculationService(configService);
+        Map<String, String> values = Map.of("{{QTY}}", "120", "{{PRICE}}", "12.5", "{{VAT_RATE}}", "20",
+                "{{NET_WEIGHT}}", "830.5", "{{PACKAGES}}", "14", "{{DUTY_RATE}}", "3.5", "{{FREIGHT}}", "240");
+        Map<String, String> calculated = service.calculateAllFormulas(snapshot.getFields(), values);
+        assertEquals(String.format("%.2f", Double.valueOf(2009.85)), calculated.get("{{TOTAL}}"));
+        assertEquals(LegacyFormulaEvaluator.calculateAllFormulas(fields, values), calculated);
+
+        Benchmarks.measure("formulas: 10k calculations, legacy regex evaluator", () -> {
+            for (int i = 0; i < CALCULATIONS; i++) {
+                LegacyFormulaEvaluator.calculateAllFormulas(fields, values);
+            }
+            return service;
+        });
+        Benchmarks.measure("formulas: 10k calculations, parsed on every call", () -> {
+            for (int i = 0; i < CALCULATIONS; i++) {
+                service.calculateAllFormulas(new ArrayList<>(snapshot.getFields()), values);
+            }
+            return service;
+        });
+        Benchmarks.measure("formulas: 10k calculations, compiled per config version", () -> {
+            for (int i = 0; i < CALCULATIONS; i++) {
+                service.calculateAllFormulas(snapshot.getFields(), values);
+            }
+            return service;
+        });
+
+        FormulaExpression total = FormulaExpression.compile("({{QTY}} * {{PRICE}} - {{DISCOUNT}}) * (1 + {{VAT_RATE}} / 100)");
+        Map<String, Double> numbers = Map.of("{{QTY}}", 120.0, "{{PRICE}}", 12.5, "{{DISCOUNT}}", 75.0,
+                "{{VAT_RATE}}", 20.0);
+        Benchmarks.measure("formulas: 1M evaluations of a compiled expression", () -> {
+            double sum = 0;
+            for (int i = 0; i < 1_000_000; i++) {
+                sum += total.evaluate(numbers::get);
+            }
+            return Double.valueOf(sum);
+        });
+
+        FieldConfig amount = formula("AMOUNT", "{{ITEMS.QTY}} * {{ITEMS.PRICE}}", 2);
+        FieldConfig items = new FieldConfig();
+        items.setId("items");
+        items.setPlaceholder("{{ITEMS}}");
+        items.setFieldType(RepeatingSections.LIST_FIELD_TYPE);
+        items.setColumns(List.of(column("QTY"), column("PRICE"), amount));
+        List<FieldConfig> listFields = List.of(items, formula("{{ITEMS_TOTAL}}", "{{ITEMS.AMOUNT.TOTAL}}", 2));
+        StringBuilder rows = new StringBuilder("[");
+        for (int i = 0; i < LIST_ROWS; i++) {
+            rows.append(i == 0 ? "" : ",").append("{\"QTY\":\"").append(i % 7 + 1).append("\",\"PRICE\":\"2.5\"}");
+        }
+        Map<String, String> listValues = Map.of("{{ITEMS}}", rows.append(']').toString());
+        Benchmarks.measure("formulas: 5k-row list with per-row formula and total",
+                () -> service.calculateAllFormulas(listFields, listValues));
+    }
+
+
+    private static FieldConfig formula(String placeholder, String formula, Integer decimalPlaces) {
+        FieldConfig field = new FieldConfig();
+        field.setId(placeholder.replace("{", "").replace("}", "").toLowerCase());
+        field.setPlaceholder(placeholder.startsWith("{{") ? placeholder : null);
+        field.setFieldType("formula");
+        field.setFormula(formula);
+        field.setDecimalPlaces(decimalPlaces);
+        return field;
+    }
+
+
+    private static FieldConfig column(String id) {
+        FieldConfig column = new FieldConfig();
+        column.setId(id);
+        column.setFieldType("number");
+        return column;
+    }
+}
@@ -0,0 +1,191 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FormulaCalculationServiceTests {
+
+    private final FormulaCalculationService service = new FormulaCalculationService(emptyConfig());
+
+
+    @Test
+    void respectsPrecedenceParenthesesAndUnaryMinus() {
+        assertEquals(14.0, evaluate("2 + 3 * 4"));
+        assertEquals(20.0, evaluate("(2 + 3) * 4"));
+        assertEquals(-6.0, evaluate("-(2 + 4)"));
+        assertEquals(5.0, evaluate("10 - 2 - 3"));
+        assertEquals(2.0, evaluate("8 / 2 / 2"));
+        assertEquals(0.0, evaluate("5 / 0"));
+    }
+
+
+    @Test
+    void supportsFunctionsAndComparisons() {
+        assertEquals(3.14, evaluate("ROUND(3.14159, 2)"));
+        assertEquals(-3.0, evaluate("round(-2.5)"));
+        assertEquals(1.0, evaluate("MIN(4; 1; 7)"));
+        assertEquals(7.0, evaluate("MAX(4, 1, 7)"));
+        assertEquals(10.0, evaluate("IF(3 > 2, 10, 20)"));
+        assertEquals(20.0, evaluate("IF(3 <> 3, 10, 20)"));
+    }
+
+
+    @Test
+    void rejectsMalformedFormulas() {
+        assertThrows(IllegalArgumentException.class, () -> FormulaExpression.compile("2 +"));
+        assertThrows(IllegalArgumentException.class, () -> FormulaExpression.compile("(2 + 3"));
+        assertThrows(IllegalArgumentException.class, () -> FormulaExpression.compile("FOO(1)"));
+        assertThrows(IllegalArgumentException.class, () -> FormulaExpression.compile("{{A}} {{B}}"));
+    }
+
+
+    @Test
+    void calculatesChainedFormulaFieldsInOrder() {
+        FieldConfig net = formulaField("net", "{{NET}}", 1, "{{QTY}} * {{PRICE}}", 2);
+        FieldConfig gross = formulaField("gross", "{{GROSS}}", 2, "{{NET}} + {{NET}} * {{VAT}} / 100", 2);
+        FieldConfig broken = formulaField("broken", "{{BROKEN}}", 3, "{{QTY}} *", null);
+
+        Map<String, String> result = service.calculateAllFormulas(List.of(gross, broken, net),
+                Map.of("{{QTY}}", "3", "{{PRICE}}", "2.5", "{{VAT}}", "20"));
+
+        assertEquals(String.format("%.2f", Double.valueOf(7.5)), result.get("{{NET}}"));
+        assertEquals(String.format("%.2f", Double.valueOf(9.0)), result.get("{{GROSS}}"));
+        assertEquals("ОШИБКА", result.get("{{BROKEN}}"));
+    }
+
+
+    @Test
+    void missingOrNonNumericValuesCountAsZero() {
+        FieldConfig total = formulaField("total", "{{TOTAL}}", 1, "{{A}} + {{B}} + 1", null);
+
+        Map<String, String> result = service.calculateAllFormulas(List.of(total), Map.of("{{A}}", "abc"));
+
+        assertEquals("1", result.get("{{TOTAL}}"));
+    }
+
+
+    @Test
+    void evaluatesFormulasInDependencyOrderRegardlessOfFieldOrder() {
+        FieldConfig total = formulaField("total", "{{TOTAL}}", 1, "{{SUBTOTAL}} * 2", null);
+        FieldConfig subtotal = formulaField("subtotal", "{{SUBTOTAL}}", 2, "{{A}} + 1", null);
+
+        Map<String, String> result = service.calculateAllFormulas(List.of(total, subtotal), Map.of("{{A}}", "4"));
+
+        assertEquals("5", result.get("{{SUBTOTAL}}"));
+        assertEquals("10", result.get("{{TOTAL}}"));
+    }
+
+
+    @Test
+    void recalculatesOnlyFormulasDownstreamOfChangedInputs() {
+        FieldConfig doubled = formulaField("doubled", "{{DOUBLED}}", 1, "{{A}} * 2", null);
+        FieldConfig plusOne = formulaField("plusOne", "{{PLUS_ONE}}", 2, "{{DOUBLED}} + 1", null);
+        FieldConfig other = formulaField("other", "{{OTHER}}", 3, "{{B}} * 10", null);
+        List<FieldConfig> fields = List.of(doubled, plusOne, other);
+
+        Map<String, String> updated = service.recalculateFormulas(fields,
+                Map.of("{{A}}", "3", "{{B}}", "1", "{{DOUBLED}}", "2", "{{PLUS_ONE}}", "3", "{{OTHER}}", "10"),
+                List.of("{{A}}"));
+
+        assertEquals(Map.of("{{DOUBLED}}", "6", "{{PLUS_ONE}}", "7"), updated);
+    }
+
+
+    @Test
+    void detectsCyclicFormulas() {
+        FieldConfig first = formulaField("first", "{{FIRST}}", 1, "{{SECOND}} + 1", null);
+        FieldConfig second = formulaField("second", "{{SECOND}}", 2, "{{FIRST}} + 1", null);
+        List<FieldConfig> fields = List.of(first, second);
+
+        assertThrows(IllegalArgumentException.class, () -> FormulaGraph.build(fields).requireAcyclic());
+        assertEquals("ОШИБКА", service.calculateAllFormulas(fields, Map.of()).get("{{FIRST}}"));
+    }
+
+
+    @Test
+    void calculatesListRowFormulasAndTotalsBeforeDependentFields() {
+        FieldConfig amount = formulaField("AMOUNT", null, 3, "{{ITEMS.QTY}} * {{ITEMS.PRICE}} * {{RATE}}", 2);
+        FieldConfig items = listField(column("NAME", "text"), column("QTY", "number"), column("PRICE", "number"), amount);
+        FieldConfig total = formulaField("total", "{{TOTAL}}", 2, "{{ITEMS.AMOUNT.TOTAL}} + 1", 2);
+
+        Map<String, String> result = service.calculateAllFormulas(List.of(total, items), Map.of("{{RATE}}", "2",
+                "{{ITEMS}}", "[{\"NAME\":\"Bolts\",\"QTY\":\"3\",\"PRICE\":\"1.5\"},{\"NAME\":\"Nuts\",\"QTY\":4,\"PRICE\":\"0.25\"}]"));
+
+        List<Map<String, String>> rows = RepeatingSections.parseRows(result.get("{{ITEMS}}"));
+        assertEquals(String.format("%.2f", Double.valueOf(9.0)), rows.get(0).get("AMOUNT"));
+        assertEquals(String.format("%.2f", Double.valueOf(2.0)), rows.get(1).get("AMOUNT"));
+        assertEquals("Nuts", rows.get(1).get("NAME"));
+        assertEquals("2", result.get("{{ITEMS.COUNT}}"));
+        assertEquals("7", result.get("{{ITEMS.QTY.TOTAL}}"));
+        assertEquals(String.format("%.2f", Double.valueOf(11.0)), result.get("{{ITEMS.AMOUNT.TOTAL}}"));
+        assertEquals(String.format("%.2f", Double.valueOf(12.0)), result.get("{{TOTAL}}"));
+        assertEquals("0", service.calculateAllFormulas(List.of(items), Map.of()).get("{{ITEMS.COUNT}}"));
+    }
+
+
+    @Test
+    void recalculatesListWhenItsRowsOrReferencedInputsChange() {
+        FieldConfig amount = formulaField("AMOUNT", null, 2, "{{ITEMS.QTY}} * {{RATE}}", null);
+        FieldConfig items = listField(column("QTY", "number"), amount);
+        FieldConfig total = formulaField("total", "{{TOTAL}}", 2, "{{ITEMS.AMOUNT.TOTAL}}", null);
+        List<FieldConfig> fields = List.of(items, total);
+        Map<String, String> values = Map.of("{{RATE}}", "3", "{{ITEMS}}", "[{\"QTY\":\"2\"}]", "{{OTHER}}", "1");
+
+        assertEquals(Map.of(), service.recalculateFormulas(fields, values, List.of("{{OTHER}}")));
+        Map<String, String> updated = service.recalculateFormulas(fields, values, List.of("{{RATE}}"));
+        assertEquals("6", updated.get("{{TOTAL}}"));
+        assertEquals("[{\"QTY\":\"2\",\"AMOUNT\":\"6\"}]", updated.get("{{ITEMS}}"));
+    }
+
+
+    private static FieldConfig listField(FieldConfig... columns) {
+        FieldConfig field = new FieldConfig();
+        field.setId("items");
+        field.setPlaceholder("{{ITEMS}}");
+        field.setFieldType(RepeatingSections.LIST_FIELD_TYPE);
+        field.setOrder(1);
+        field.setColumns(List.of(columns));
+        return field;
+    }
+
+
+    private static FieldConfig column(String id, String fieldType) {
+        FieldConfig column = new FieldConfig();
+        column.setId(id);
+        column.setFieldType(fieldType);
+        return column;
+    }
+
+
+    private static ConfigService emptyConfig() {
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getSnapshot()).thenReturn(ConfigSnapshot.of(0, List.of(), List.of()));
+        return configService;
+    }
+
+
+    private static double evaluate(String formula) {
+        return FormulaExpression.compile(formula).evaluate(placeholder -> 0);
+    }
+
+
+    private static FieldConfig formulaField(String id, String placeholder, int order, String formula,
+                                            Integer decimalPlaces) {
+        FieldConfig field = new FieldConfig();
+        field.setId(id);
+        field.setPlaceholder(placeholder);
+        field.setFieldType("formula");
+        field.setOrder(order);
+        field.setFormula(formula);
+        field.setDecimalPlaces(decimalPlaces);
+        return field;
+    }
+}
@@ -0,0 +1,166 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.services.RepeatingSections.Section;
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FormulaRecalculatorTests {
+
+    private static final TypedCellValues TYPES = TypedCellValues.of(List.of(
+            field("{{WEIGHT}}", "number"),
+            field("{{TOTAL}}", "formula"),
+            field("{{SIGNED}}", "date"),
+            field("{{NOTE}}", "text"),
+            list("{{ITEMS}}", column("NAME", "text"), column("QTY", "number"))));
+
+    @Test
+    void writesNumericAndDateCellsForTypedFields() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFCellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("dd.mm.yyyy"));
+            XSSFRow row = workbook.createSheet("Invoice").createRow(0);
+            row.createCell(0).setCellValue(" {{WEIGHT}} ");
+            row.createCell(1).setCellValue("{{WEIGHT}} kg");
+            row.createCell(2).setCellValue("{{TOTAL}}");
+            row.createCell(3).setCellValue("{{SIGNED}}");
+            row.getCell(3).setCellStyle(dateStyle);
+            row.createCell(4).setCellValue("{{SIGNED}}");
+            row.createCell(5).setCellValue("{{NOTE}}");
+            row.createCell(6).setCellValue("{{TOTAL}}");
+            template = write(workbook);
+        }
+
+        try (XSSFWorkbook workbook = render(template, Map.of("{{WEIGHT}}", "1 250,5", "{{TOTAL}}", "ПОМИЛКА",
+                "{{SIGNED}}", "2024-03-15", "{{NOTE}}", "42"), false)) {
+            XSSFRow row = workbook.getSheetAt(0).getRow(0);
+            assertEquals(1250.5, row.getCell(0).getNumericCellValue());
+            assertEquals("1 250,5 kg", row.getCell(1).getStringCellValue());
+            assertEquals("ПОМИЛКА", row.getCell(2).getStringCellValue());
+            assertEquals(LocalDate.of(2024, 3, 15), row.getCell(3).getLocalDateTimeCellValue().toLocalDate());
+            assertEquals(true, DateUtil.isCellDateFormatted(row.getCell(3)));
+            assertEquals("2024-03-15", row.getCell(4).getStringCellValue());
+            assertEquals("42", row.getCell(5).getStringCellValue());
+            assertEquals(CellType.STRING, row.getCell(6).getCellType());
+        }
+    }
+
+
+    @Test
+    void evaluatesOnlyFormulasDependingOnSubstitutedCells() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Invoice");
+            XSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue("{{WEIGHT}}");
+            row.createCell(1).setCellFormula("A1*2");
+            row.createCell(2).setCellFormula("1+1");
+            row.createCell(3).setCellFormula("B1+1");
+            workbook.createSheet("Summary").createRow(0).createCell(0).setCellFormula("SUM(Invoice!D:D)");
+            template = write(workbook);
+        }
+
+        try (XSSFWorkbook workbook = render(template, Map.of("{{WEIGHT}}", "3.5"), true)) {
+            XSSFRow row = workbook.getSheetAt(0).getRow(0);
+            assertEquals(7.0, row.getCell(1).getNumericCellValue());
+            assertEquals(0.0, row.getCell(2).getNumericCellValue());
+            assertEquals(8.0, row.getCell(3).getNumericCellValue());
+            assertEquals(8.0, workbook.getSheetAt(1).getRow(0).getCell(0).getNumericCellValue());
+        }
+    }
+
+
+    @Test
+    void evaluatesTotalsOverExpandedListRows() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Packing list");
+            XSSFRow line = sheet.createRow(0);
+            line.createCell(0).setCellValue("{{ITEMS.NAME}}");
+            line.createCell(1).setCellValue("{{ITEMS.QTY}}");
+            line.createCell(2).setCellFormula("B1*10");
+            sheet.createRow(2).createCell(2).setCellFormula("SUM(C1:C2)");
+            template = write(workbook);
+        }
+
+        String items = "[{\"NAME\":\"Bolts\",\"QTY\":\"3\"},{\"NAME\":\"Nuts\",\"QTY\":\"4\"},{\"NAME\":\"Screws\",\"QTY\":\"\"}]";
+        try (XSSFWorkbook workbook = render(template, Map.of("{{ITEMS}}", items), true)) {
+            XSSFSheet sheet = workbook.getSheetAt(0);
+            assertEquals(4.0, sheet.getRow(1).getCell(1).getNumericCellValue());
+            assertEquals(CellType.BLANK, sheet.getRow(2).getCell(1).getCellType());
+            assertEquals(40.0, sheet.getRow(1).getCell(2).getNumericCellValue());
+            assertEquals("SUM(C1:C4)", sheet.getRow(4).getCell(2).getCellFormula());
+            assertEquals(70.0, sheet.getRow(4).getCell(2).getNumericCellValue());
+        }
+    }
+
+
+    private static XSSFWorkbook render(byte[] template, Map<String, String> values, boolean evaluate) throws Exception {
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("template.xlsx", template);
+        Map<String, Section> sections = RepeatingSections.find(analysis.placeholders(), values);
+        Map<String, String> scalarValues = RepeatingSections.keepRowPlaceholders(values, sections);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(template))) {
+            FormulaRecalculator recalculator = new FormulaRecalculator(workbook, evaluate);
+            for (CellLocation location : analysis.cells()) {
+                XSSFCell cell = workbook.getSheetAt(location.sheetIndex()).getRow(location.rowIndex())
+                        .getCell(location.columnIndex());
+                String text = cell.getStringCellValue();
+                String placeholder = location.placeholders().iterator().next();
+                if (!TYPES.write(cell, text, placeholder, scalarValues.getOrDefault(placeholder, ""))) {
+                    cell.setCellValue(text.replace(placeholder, scalarValues.getOrDefault(placeholder, "")));
+                }
+                recalculator.changed(cell);
+            }
+            RepeatingSections.expandRows(workbook, analysis.cells(), sections, TYPES, recalculator);
+            recalculator.recalculate();
+            return new XSSFWorkbook(new ByteArrayInputStream(write(workbook)));
+        }
+    }
+
+
+    private static FieldConfig field(String placeholder, String fieldType) {
+        FieldConfig field = new FieldConfig();
+        field.setId(placeholder.substring(2, placeholder.length() - 2).toLowerCase());
+        field.setPlaceholder(placeholder);
+        field.setFieldType(fieldType);
+        return field;
+    }
+
+
+    private static FieldConfig list(String placeholder, FieldConfig... columns) {
+        FieldConfig field = field(placeholder, RepeatingSections.LIST_FIELD_TYPE);
+        field.setColumns(List.of(columns));
+        return field;
+    }
+
+
+    private static FieldConfig column(String id, String fieldType) {
+        FieldConfig column = new FieldConfig();
+        column.setId(id);
+        column.setFieldType(fieldType);
+        return column;
+    }
+
+
+    private static byte[] write(XSSFWorkbook workbook) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationJournalTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rotatesSegmentsAndSearchesAfterReopen() throws Exception {
+        GenerationJournal journal = newJournal();
+        TemplateConfig template = new TemplateConfig();
+        template.setId("invoice");
+        template.setFileName("invoice.docx");
+
+        for (int i = 0; i < 40; i++) {
+            String contract = i % 4 == 0 ? "UA-2024/7" : "UA-" + i;
+            journal.record(template, "hash-" + i, Map.of("{{WEIGHT}}", "number"), "invoice-" + i + ".docx",
+                    Map.of("{{CONTRACT_NUMBER}}", contract, "{{WEIGHT}}", String.valueOf(i)), false, 1000 + i, 0);
+        }
+        journal.shutdown();
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertTrue(files.anyMatch(file -> file.getFileName().toString().endsWith(".jsonl.gz")));
+        }
+
+        GenerationJournal reopened = newJournal();
+        List<GenerationJournal.JournalEntry> matches = reopened.search(" ua-2024/7 ", null, null, 100);
+        assertEquals(10, matches.size());
+        assertEquals("invoice-36.docx", matches.get(0).fileName());
+        assertEquals("36", matches.get(0).values().get("{{WEIGHT}}"));
+
+        assertEquals(3, reopened.search(null, null, null, 3).size());
+        assertEquals(0, reopened.search(null, System.currentTimeMillis() + 60_000, null, 100).size());
+
+        GenerationJournal.JournalEntry entry = reopened.get(matches.get(5).id());
+        assertEquals("hash-16", entry.templateHash());
+        assertEquals(Map.of("{{WEIGHT}}", "number"), entry.cellTypes());
+        assertNull(reopened.get("missing"));
+        reopened.shutdown();
+    }
+
+
+    @Test
+    void keepsWritingWhenASegmentCannotBeCompressed() throws Exception {
+        Files.createDirectories(tempDir.resolve("journal-000001.jsonl.gz.tmp").resolve("blocked"));
+        GenerationJournal journal = newJournal();
+        TemplateConfig template = new TemplateConfig();
+        template.setId("invoice");
+
+        for (int i = 0; i < 40; i++) {
+            journal.record(template, "hash", Map.of(), "invoice-" + i + ".docx",
+                    Map.of("{{CONTRACT_NUMBER}}", "UA-" + i), false, 1000, 0);
+            if (i == 19) {
+                for (int wait = 0; wait < 500 && !Files.exists(tempDir.resolve("journal-000002.jsonl")); wait++) {
+                    Thread.sleep(10);
+                }
+            }
+        }
+        journal.shutdown();
+
+        assertTrue(Files.exists(tempDir.resolve("journal-000001.jsonl")));
+        assertEquals(0L, journal.getStats().get("failures"));
+        assertEquals(40L, journal.getStats().get("written"));
+
+        GenerationJournal reopened = newJournal();
+        assertEquals("invoice-0.docx", reopened.search("UA-0", null, null, 1).get(0).fileName());
+        assertEquals("invoice-39.docx", reopened.search("UA-39", null, null, 1).get(0).fileName());
+        reopened.shutdown();
+    }
+
+
+    @Test
+    void keepsOnlyTheNewestEntriesInTheIndex() throws Exception {
+        GenerationJournal journal = new GenerationJournal(true, tempDir.toString(), 1024, 100, 10);
+        TemplateConfig template = new TemplateConfig();
+        template.setId("invoice");
+
+        for (int i = 0; i < 40; i++) {
+            journal.record(template, "hash", Map.of(), "invoice-" + i + ".docx",
+                    Map.of("{{CONTRACT_NUMBER}}", "UA-" + i), false, 1000, 0);
+        }
+        journal.shutdown();
+        assertEquals(10, journal.getStats().get("indexed"));
+
+        GenerationJournal reopened = new GenerationJournal(true, tempDir.toString(), 1024, 100, 10);
+        assertEquals(10, reopened.getStats().get("indexed"));
+        assertEquals("invoice-39.docx", reopened.search(null, null, null, 100).get(0).fileName());
+        assertEquals(0, reopened.search("UA-0", null, null, 100).size());
+        assertTrue(Files.readAllLines(tempDir.resolve("index.jsonl")).size() <= 20);
+        reopened.shutdown();
+    }
+
+
+    private GenerationJournal newJournal() throws Exception {
+        return new GenerationJournal(true, tempDir.toString(), 1024, 100, 1000);
+    }
+}
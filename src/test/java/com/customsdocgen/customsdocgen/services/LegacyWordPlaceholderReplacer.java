@@ -0,0 +1,320 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.VerticalAlign;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+final class LegacyWordPlaceholderReplacer {
+
+    private LegacyWordPlaceholderReplacer() {
+    }
+
+
+    static void replacePlaceholders(XWPFParagraph paragraph, Map<String, String> fieldValues) {
+        List<XWPFRun> runs = paragraph.getRuns();
+        if (runs == null || runs.isEmpty()) {
+            return;
+        }
+
+        StringBuilder fullText = new StringBuilder();
+        List<RunStyleInfo> styleInfoList = new ArrayList<>();
+
+        int currentPos = 0;
+        for (XWPFRun run : runs) {
+            String runText = run.getText(0);
+            if (runText != null && !runText.isEmpty()) {
+                styleInfoList.add(new RunStyleInfo(
+                    currentPos,
+                    currentPos + runText.length(),
+                    run.getFontFamily(),
+                    run.getFontSizeAsDouble(),
+                    run.isBold(),
+                    run.isItalic(),
+                    run.getColor(),
+                    run.getUnderline(),
+                    getVerticalAlign(run)
+                ));
+
+                fullText.append(runText);
+                currentPos += runText.length();
+            }
+        }
+
+        String text = fullText.toString();
+        boolean hasPlaceholder = false;
+
+        Matcher matcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(text);
+        Set<String> allPlaceholders = new HashSet<>();
+        while (matcher.find()) {
+            allPlaceholders.add(matcher.group(0));
+            hasPlaceholder = true;
+        }
+
+        if (hasPlaceholder) {
+            for (String placeholder : allPlaceholders) {
+                String value = fieldValues.getOrDefault(placeholder, "");
+                text = text.replace(placeholder, value);
+            }
+
+            for (int i = runs.size() - 1; i >= 0; i--) {
+                paragraph.removeRun(i);
+            }
+
+            createRunsWithStyles(paragraph, text, styleInfoList, fullText.toString(), fieldValues);
+        } else {
+            for (XWPFRun run : runs) {
+                String runText = run.getText(0);
+                if (runText != null) {
+                    for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
+                        runText = runText.replace(entry.getKey(), entry.getValue());
+                    }
+
+                    Matcher remainingMatcher = TemplateAnalyzer.PLACEHOLDER_PATTERN.matcher(runText);
+                    while (remainingMatcher.find()) {
+                        String placeholder = remainingMatcher.group(0);
+                        if (!fieldValues.containsKey(placeholder)) {
+                            runText = runText.replace(placeholder, "");
+                        }
+                    }
+                    run.setText(runText, 0);
+                }
+            }
+        }
+    }
+
+
+    private static void createRunsWithStyles(XWPFParagraph paragraph, String newText, List<RunStyleInfo> styleInfoList,
+                                             String originalText, Map<String, String> fieldValues) {
+        if (styleInfoList.isEmpty()) {
+            paragraph.createRun().setText(newText);
+            return;
+        }
+
+        List<TextSegment> segments = buildTextSegments(originalText, newText, styleInfoList, fieldValues);
+        for (TextSegment segment : segments) {
+            if (!segment.text.isEmpty()) {
+                XWPFRun run = paragraph.createRun();
+                run.setText(segment.text);
+                applyStyle(run, segment.style);
+            }
+        }
+    }
+
+
+    private static List<TextSegment> buildTextSegments(String originalText, String newText,
+                                                       List<RunStyleInfo> styleInfoList, Map<String, String> fieldValues) {
+        List<TextSegment> segments = new ArrayList<>();
+        List<PlaceholderRange> placeholderRanges = new ArrayList<>();
+
+        for (Map.Entry<String, String> entry : fieldValues.entrySet()) {
+            String placeholder = entry.getKey();
+            String replacement = entry.getValue();
+            int pos = originalText.indexOf(placeholder);
+            while (pos >= 0) {
+                RunStyleInfo placeholderStyle = findStyleForOriginalPosition(pos, styleInfoList);
+                placeholderRanges.add(new PlaceholderRange(pos, pos + placeholder.length(),
+                    replacement, placeholderStyle));
+                pos = originalText.indexOf(placeholder, pos + 1);
+            }
+        }
+
+        placeholderRanges.sort((a, b) -> Integer.compare(a.startPos, b.startPos));
+
+        int currentOriginalPos = 0;
+        int currentNewPos = 0;
+
+        for (PlaceholderRange range : placeholderRanges) {
+            if (range.startPos > currentOriginalPos) {
+                String beforeText = originalText.substring(currentOriginalPos, range.startPos);
+                String beforeNewText = newText.substring(currentNewPos, currentNewPos + beforeText.length());
+
+                splitTextByStyles(beforeText, beforeNewText, currentOriginalPos, segments, styleInfoList);
+
+                currentNewPos += beforeText.length();
+                currentOriginalPos = range.startPos;
+            }
+
+            String replacementText = range.replacementValue;
+            if (!replacementText.isEmpty()) {
+                segments.add(new TextSegment(replacementText, range.style));
+                currentNewPos += replacementText.length();
+            }
+
+            currentOriginalPos = range.endPos;
+        }
+
+        if (currentOriginalPos < originalText.length()) {
+            String afterText = originalText.substring(currentOriginalPos);
+            String afterNewText = newText.substring(currentNewPos);
+
+            splitTextByStyles(afterText, afterNewText, currentOriginalPos, segments, styleInfoList);
+        }
+
+        return segments;
+    }
+
+
+    private static void splitTextByStyles(String originalText, String newText, int startOffset,
+                                          List<TextSegment> segments, List<RunStyleInfo> styleInfoList) {
+        if (originalText.length() != newText.length()) {
+            RunStyleInfo style = findStyleForOriginalPosition(startOffset, styleInfoList);
+            segments.add(new TextSegment(newText, style));
+            return;
+        }
+
+        int textPos = 0;
+        while (textPos < newText.length()) {
+            int originalPos = startOffset + textPos;
+            RunStyleInfo currentStyle = findStyleForOriginalPosition(originalPos, styleInfoList);
+
+            int segmentEnd = textPos;
+            for (int i = textPos + 1; i < newText.length(); i++) {
+                RunStyleInfo nextStyle = findStyleForOriginalPosition(startOffset + i, styleInfoList);
+                if (!stylesMatch(currentStyle, nextStyle)) {
+                    break;
+                }
+                segmentEnd = i;
+            }
+
+            segments.add(new TextSegment(newText.substring(textPos, segmentEnd + 1), currentStyle));
+            textPos = segmentEnd + 1;
+        }
+    }
+
+
+    private static RunStyleInfo findStyleForOriginalPosition(int pos, List<RunStyleInfo> styleInfoList) {
+        for (RunStyleInfo styleInfo : styleInfoList) {
+            if (pos >= styleInfo.startPos && pos < styleInfo.endPos) {
+                return styleInfo;
+            }
+        }
+        return styleInfoList.isEmpty() ? null : styleInfoList.get(styleInfoList.size() - 1);
+    }
+
+
+    private static VerticalAlign getVerticalAlign(XWPFRun run) {
+        try {
+            if (run.getCTR() != null && run.getCTR().getRPr() != null) {
+                org.openxmlformats.schemas.wordprocessingml.x2006.main.CTRPr rPr = run.getCTR().getRPr();
+
+                try (org.apache.xmlbeans.XmlCursor cursor = rPr.newCursor()) {
+                    cursor.toFirstChild();
+                    do {
+                        if ("vertAlign".equals(cursor.getName().getLocalPart())) {
+                            String val = cursor.getAttributeText(new javax.xml.namespace.QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main", "val"));
+                            if ("superscript".equals(val)) {
+                                return VerticalAlign.SUPERSCRIPT;
+                            } else if ("subscript".equals(val)) {
+                                return VerticalAlign.SUBSCRIPT;
+                            } else {
+                                return VerticalAlign.BASELINE;
+                            }
+                        }
+                    } while (cursor.toNextSibling());
+                }
+            }
+        } catch (Exception e) {
+
+        }
+        return null;
+    }
+
+
+    private static boolean stylesMatch(RunStyleInfo style1, RunStyleInfo style2) {
+        if (style1 == null || style2 == null) {
+            return style1 == style2;
+        }
+        return Objects.equals(style1.fontFamily, style2.fontFamily) &&
+               Objects.equals(style1.fontSize, style2.fontSize) &&
+               style1.bold == style2.bold &&
+               style1.italic == style2.italic &&
+               Objects.equals(style1.color, style2.color) &&
+               style1.underline == style2.underline &&
+               Objects.equals(style1.subscript, style2.subscript);
+    }
+
+
+    private static void applyStyle(XWPFRun run, RunStyleInfo styleInfo) {
+        if (styleInfo == null) return;
+
+        if (styleInfo.fontFamily != null) {
+            run.setFontFamily(styleInfo.fontFamily);
+        }
+        if (styleInfo.fontSize != null && styleInfo.fontSize > 0) {
+            run.setFontSize(styleInfo.fontSize);
+        }
+        run.setBold(styleInfo.bold);
+        run.setItalic(styleInfo.italic);
+        if (styleInfo.color != null) {
+            run.setColor(styleInfo.color);
+        }
+        if (styleInfo.underline != null && styleInfo.underline != UnderlinePatterns.NONE) {
+            run.setUnderline(styleInfo.underline);
+        }
+        if (styleInfo.subscript != null) {
+            run.setSubscript(styleInfo.subscript);
+        }
+    }
+
+
+    private static class PlaceholderRange {
+        int startPos;
+        int endPos;
+        String replacementValue;
+        RunStyleInfo style;
+
+        PlaceholderRange(int startPos, int endPos, String replacementValue, RunStyleInfo style) {
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.replacementValue = replacementValue;
+            this.style = style;
+        }
+    }
+
+
+    private static class TextSegment {
+        String text;
+        RunStyleInfo style;
+
+        TextSegment(String text, RunStyleInfo style) {
+            this.text = text;
+            this.style = style;
+        }
+    }
+
+
+    private static class RunStyleInfo {
+        int startPos;
+        int endPos;
+        String fontFamily;
+        Double fontSize;
+        boolean bold;
+        boolean italic;
+        String color;
+        UnderlinePatterns underline;
+        VerticalAlign subscript;
+
+        RunStyleInfo(int startPos, int endPos, String fontFamily, Double fontSize,
+                     boolean bold, boolean italic, String color, UnderlinePatterns underline,
+                     VerticalAlign subscript) {
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.fontFamily = fontFamily;
+            this.fontSize = fontSize;
+            this.bold = bold;
+            this.italic = italic;
+            this.color = color;
+            this.underline = underline;
+            this.subscript = subscript;
+        }
+    }
+}
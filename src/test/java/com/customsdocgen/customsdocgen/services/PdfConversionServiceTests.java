@@ -0,0 +1,133 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.jodconverter.core.DocumentConverter;
+import org.jodconverter.core.job.ConversionJob;
+import org.jodconverter.core.job.ConversionJobWithOptionalSourceFormatUnspecified;
+import org.jodconverter.core.job.ConversionJobWithRequiredTargetFormatUnspecified;
+import org.jodconverter.core.job.ConversionJobWithSourceSpecified;
+import org.jodconverter.core.office.OfficeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PdfConversionServiceTests {
+
+    @Test
+    void queuedConversionsWaitAndOverflowIsRejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DocumentConverter converter = blockingConverter(started, release);
+        PdfConversionService service = new PdfConversionService(converter, disabledCache(), new int[] {2002}, 1, 1, 5_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> first = executor.submit(() -> service.convertDocxToPdf(new byte[] {1}));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<byte[]> second = executor.submit(() -> service.convertXlsxToPdf(new byte[] {2}));
+            waitForQueueDepth(service, 1);
+
+            assertThrows(RejectedExecutionException.class, () -> service.convertDocxToPdf(new byte[] {3}));
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> stats = service.getStats();
+        assertEquals(Long.valueOf(1), stats.get("rejected"));
+        assertEquals(Integer.valueOf(0), stats.get("queueDepth"));
+        assertEquals(Long.valueOf(1), ((Map<?, ?>) stats.get("docx")).get("count"));
+        assertEquals(Long.valueOf(1), ((Map<?, ?>) stats.get("xlsx")).get("count"));
+    }
+
+
+    @Test
+    void queueTimeoutFailsWithOfficeException() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PdfConversionService service = new PdfConversionService(
+                blockingConverter(started, release), disabledCache(), new int[] {2002}, 1, 4, 50);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> service.convertDocxToPdf(new byte[] {1}));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(OfficeException.class, () -> service.convertDocxToPdf(new byte[] {2}));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void repeatedConversionIsServedFromCache() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(0);
+        PdfCacheService cache = new PdfCacheService(true, 1 << 20, 60, "", 0);
+        PdfConversionService service = new PdfConversionService(
+                blockingConverter(started, release), cache, new int[] {2002}, 1, 4, 1_000);
+
+        service.convertDocxToPdf(new byte[] {1, 2, 3});
+        service.convertDocxToPdf(new byte[] {1, 2, 3});
+
+        assertEquals(1, started.getCount());
+        assertEquals(Long.valueOf(1), cache.getStats().get("hits"));
+        assertEquals(Long.valueOf(1), ((Map<?, ?>) service.getStats().get("docx")).get("count"));
+    }
+
+
+    private static DocumentConverter blockingConverter(CountDownLatch started, CountDownLatch release)
+            throws OfficeException {
+        ConversionJob job = mock(ConversionJob.class);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(job).execute();
+
+        ConversionJobWithRequiredTargetFormatUnspecified target = mock(ConversionJobWithRequiredTargetFormatUnspecified.class);
+        when(target.as(any())).thenReturn(job);
+        ConversionJobWithSourceSpecified source = mock(ConversionJobWithSourceSpecified.class);
+        when(source.to(any(OutputStream.class))).thenReturn(target);
+        ConversionJobWithOptionalSourceFormatUnspecified input = mock(ConversionJobWithOptionalSourceFormatUnspecified.class);
+        when(input.as(any())).thenReturn(source);
+
+        DocumentConverter converter = mock(DocumentConverter.class);
+        when(converter.convert(any(InputStream.class))).thenReturn(input);
+        return converter;
+    }
+
+
+    private static PdfCacheService disabledCache() {
+        return new PdfCacheService(false, 0, 0, "", 0);
+    }
+
+
+    private static void waitForQueueDepth(PdfConversionService service, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(depth).equals(service.getStats().get("queueDepth")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
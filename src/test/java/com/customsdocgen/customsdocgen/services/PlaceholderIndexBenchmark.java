@@ -0,0 +1,72 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class PlaceholderIndexBenchmark {
+
+    private static final int PARAGRAPHS = 1_200;
+    private static final int PLACEHOLDER_EVERY = 50;
+    private static final int TABLE_ROWS = 60;
+
+    @Test
+    void indexedRenderVisitsOnlyParagraphsWithPlaceholders() throws Exception {
+        byte[] template = template();
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("contract.docx", template);
+        Map<String, String> values = new HashMap<>();
+        analysis.placeholders().forEach(placeholder -> values.put(placeholder, "value " + placeholder.length()));
+
+        Benchmarks.measure("docx 40 pages: template analysis, once per template",
+                () -> TemplateAnalyzer.analyze("contract.docx", template));
+        Benchmarks.measure("docx 40 pages: render, every paragraph scanned",
+                () -> render(template, analysis, values, false));
+        Benchmarks.measure("docx 40 pages: render, indexed paragraphs only",
+                () -> render(template, analysis, values, true));
+    }
+
+
+    private static byte[] render(byte[] template, TemplateAnalysis analysis, Map<String, String> values,
+                                 boolean indexed) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, analysis.extendedContent(), paragraph -> {
+                if (!indexed || analysis.containsParagraph(paragraph.ordinal())) {
+                    WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), values);
+                }
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+
+    private static byte[] template() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < PARAGRAPHS; i++) {
+                XWPFParagraph paragraph = document.createParagraph();
+                paragraph.createRun().setText("Clause " + i + ". The parties agree that ");
+                paragraph.createRun().setText(i % PLACEHOLDER_EVERY == 0
+                        ? "{{FIELD_" + i / PLACEHOLDER_EVERY + "}} applies to the goods."
+                        : "the goods are delivered under the terms of this contract.");
+            }
+            XWPFTable table = document.createTable(TABLE_ROWS, 4);
+            for (int row = 0; row < TABLE_ROWS; row++) {
+                for (int column = 0; column < 4; column++) {
+                    table.getRow(row).getCell(column).setText(row == 0 ? "{{HEADER_" + column + "}}" : "Line " + row);
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
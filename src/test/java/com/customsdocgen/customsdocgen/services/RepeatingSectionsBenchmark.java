@@ -0,0 +1,95 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.RepeatingSections.Section;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class RepeatingSectionsBenchmark {
+
+    @Test
+    void expansionGrowsLinearlyWithListLength() throws Exception {
+        byte[] document = documentTemplate();
+        byte[] workbook = workbookTemplate();
+        TemplateAnalysis documentAnalysis = TemplateAnalyzer.analyze("packing-list.docx", document);
+        TemplateAnalysis workbookAnalysis = TemplateAnalyzer.analyze("packing-list.xlsx", workbook);
+
+        for (int lines : new int[] {1_000, 5_000}) {
+            Map<String, String> values = values(lines);
+            Map<String, Section> documentSections = RepeatingSections.find(documentAnalysis.placeholders(), values);
+            Map<String, Section> workbookSections = RepeatingSections.find(workbookAnalysis.placeholders(), values);
+
+            Benchmarks.measure("docx table rows: " + lines + " lines", () -> {
+                try (XWPFDocument rendered = new XWPFDocument(new ByteArrayInputStream(document))) {
+                    RepeatingSections.expandTables(rendered, documentSections);
+                    assertEquals(lines + 1, rendered.getTables().get(0).getNumberOfRows());
+                    return rendered;
+                }
+            });
+            Benchmarks.measure("xlsx row range with formulas: " + lines + " lines", () -> {
+                try (XSSFWorkbook rendered = new XSSFWorkbook(new ByteArrayInputStream(workbook))) {
+                    FormulaRecalculator recalculator = new FormulaRecalculator(rendered, true);
+                    RepeatingSections.expandRows(rendered, workbookAnalysis.cells(), workbookSections,
+                            TypedCellValues.NONE, recalculator);
+                    recalculator.recalculate();
+                    assertEquals(lines + 1, rendered.getSheetAt(0).getLastRowNum());
+                    return rendered;
+                }
+            });
+        }
+    }
+
+
+    private static Map<String, String> values(int lines) {
+        List<Map<String, String>> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            items.add(Map.of("NAME", "Item " + i, "QTY", String.valueOf(i % 9 + 1), "PRICE", "2.5"));
+        }
+        return Map.of("{{ITEMS}}", RepeatingSections.writeRows(items), "{{ITEMS.COUNT}}", String.valueOf(lines));
+    }
+
+
+    private static byte[] documentTemplate() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(2, 4);
+            String[] line = {"{{ITEMS.INDEX}}", "{{ITEMS.NAME}}", "{{ITEMS.QTY}}", "{{ITEMS.PRICE}}"};
+            for (int column = 0; column < line.length; column++) {
+                table.getRow(0).getCell(column).setText(line[column]);
+            }
+            table.getRow(1).getCell(0).setText("Total");
+            table.getRow(1).getCell(3).setText("{{ITEMS.COUNT}}");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+
+    private static byte[] workbookTemplate() throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Packing list");
+            XSSFRow line = sheet.createRow(0);
+            line.createCell(0).setCellValue("{{ITEMS.NAME}}");
+            line.createCell(1).setCellValue("{{ITEMS.QTY}}");
+            line.createCell(2).setCellValue("{{ITEMS.PRICE}}");
+            line.createCell(3).setCellFormula("B1*C1");
+            sheet.createRow(2).createCell(3).setCellFormula("SUM(D1:D2)");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
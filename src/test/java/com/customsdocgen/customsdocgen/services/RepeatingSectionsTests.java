@@ -0,0 +1,213 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.RepeatingSections.Section;
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepeatingSectionsTests {
+
+    private static final String ITEMS = "[{\"NAME\":\"Bolts\",\"QTY\":\"3\"},{\"NAME\":\"Nuts & washers\",\"QTY\":\"4\"},"
+            + "{\"NAME\":\"Screws\",\"QTY\":\"5\"}]";
+
+    @Test
+    void findsRowPlaceholdersOnlyForListValues() {
+        Map<String, String> values = Map.of("{{ITEMS}}", ITEMS, "{{ITEMS.QTY.TOTAL}}", "12", "{{NOTE}}", "a.b");
+
+        Map<String, Section> sections = RepeatingSections.find(java.util.Set.of("{{ITEMS.NAME}}", "{{ITEMS.INDEX}}",
+                "{{ITEMS.QTY.TOTAL}}", "{{NOTE.TEXT}}", "{{CONTRACT_NUMBER}}"), values);
+
+        assertEquals(java.util.Set.of("{{ITEMS.NAME}}", "{{ITEMS.INDEX}}"), sections.keySet());
+        Section section = sections.get("{{ITEMS.NAME}}");
+        assertEquals(3, section.size());
+        assertEquals(Map.of("{{ITEMS.NAME}}", "Nuts & washers", "{{ITEMS.QTY}}", "4", "{{ITEMS.INDEX}}", "2"),
+                section.rowValues(1));
+    }
+
+
+    @Test
+    void expandsMarkedTableRowsInDocumentOrder() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            document.createParagraph().createRun().setText("Contract {{CONTRACT_NUMBER}}");
+            XWPFTable table = document.createTable(3, 3);
+            setRow(table.getRow(0), "#", "Name", "Qty");
+            setRow(table.getRow(1), "{{ITEMS.INDEX}}", "{{ITEMS.NAME}} ({{CONTRACT_NUMBER}})", "{{ITEMS.QTY}}");
+            setRow(table.getRow(2), "", "Total", "{{ITEMS.QTY.TOTAL}}");
+            template = write(document);
+        }
+
+        List<List<String>> rows = tableText(renderWord(template, Map.of("{{CONTRACT_NUMBER}}", "CN-42",
+                "{{ITEMS}}", ITEMS, "{{ITEMS.QTY.TOTAL}}", "12")));
+
+        assertEquals(List.of(
+                List.of("#", "Name", "Qty"),
+                List.of("1", "Bolts (CN-42)", "3"),
+                List.of("2", "Nuts & washers (CN-42)", "4"),
+                List.of("3", "Screws (CN-42)", "5"),
+                List.of("", "Total", "12")), rows);
+    }
+
+
+    @Test
+    void removesTemplateRowsForEmptyList() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(3, 1);
+            setRow(table.getRow(0), "Header");
+            setRow(table.getRow(1), "{{ITEMS.NAME}}");
+            setRow(table.getRow(2), "Footer");
+            template = write(document);
+        }
+
+        assertEquals(List.of(List.of("Header"), List.of("Footer")),
+                tableText(renderWord(template, Map.of("{{ITEMS}}", "[]"))));
+    }
+
+
+    @Test
+    void expandsSheetRowRangesAndShiftsRowsBelow() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Packing list");
+            sheet.createRow(0).createCell(0).setCellValue("Contract {{CONTRACT_NUMBER}}");
+            XSSFRow line = sheet.createRow(1);
+            line.createCell(0).setCellValue("{{ITEMS.INDEX}}. {{ITEMS.NAME}}");
+            line.createCell(1).setCellValue("{{ITEMS.QTY}}");
+            line.createCell(2).setCellFormula("D2*2");
+            sheet.createRow(2).createCell(0).setCellValue("note for {{ITEMS.NAME}}");
+            sheet.addMergedRegion(new CellRangeAddress(2, 2, 0, 1));
+            XSSFRow total = sheet.createRow(4);
+            total.createCell(0).setCellValue("Total {{ITEMS.QTY.TOTAL}}");
+            total.createCell(2).setCellFormula("SUM(C2:C3)");
+            template = write(workbook);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(renderExcel(template,
+                Map.of("{{CONTRACT_NUMBER}}", "CN-42", "{{ITEMS}}", ITEMS, "{{ITEMS.QTY.TOTAL}}", "12"))))) {
+            XSSFSheet sheet = workbook.getSheetAt(0);
+            assertEquals("Contract CN-42", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("1. Bolts", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("note for Bolts", sheet.getRow(2).getCell(0).getStringCellValue());
+            assertEquals("3. Screws", sheet.getRow(5).getCell(0).getStringCellValue());
+            assertEquals("5", sheet.getRow(5).getCell(1).getStringCellValue());
+            assertEquals("D6*2", sheet.getRow(5).getCell(2).getCellFormula());
+            assertEquals("note for Screws", sheet.getRow(6).getCell(0).getStringCellValue());
+            assertEquals("Total 12", sheet.getRow(8).getCell(0).getStringCellValue());
+            assertEquals(CellType.FORMULA, sheet.getRow(8).getCell(2).getCellType());
+            assertEquals(3, sheet.getNumMergedRegions());
+            assertTrue(sheet.getMergedRegions().contains(new CellRangeAddress(6, 6, 0, 1)));
+        }
+    }
+
+
+    @Test
+    void expandsFiveThousandLinePackingList() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFTable table = document.createTable(2, 2);
+            setRow(table.getRow(0), "{{ITEMS.INDEX}}", "{{ITEMS.NAME}}");
+            setRow(table.getRow(1), "Total", "{{ITEMS.COUNT}}");
+            template = write(document);
+        }
+        List<Map<String, String>> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(Map.of("NAME", "Item " + i));
+        }
+
+        List<List<String>> rows = tableText(renderWord(template,
+                Map.of("{{ITEMS}}", RepeatingSections.writeRows(items), "{{ITEMS.COUNT}}", "5000")));
+
+        assertEquals(5001, rows.size());
+        assertEquals(List.of("5000", "Item 4999"), rows.get(4999));
+        assertEquals(List.of("Total", "5000"), rows.get(5000));
+    }
+
+
+    private static byte[] renderWord(byte[] template, Map<String, String> values) throws Exception {
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("template.docx", template);
+        Map<String, Section> sections = RepeatingSections.find(analysis.placeholders(), values);
+        Map<String, String> scalarValues = RepeatingSections.keepRowPlaceholders(values, sections);
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, analysis.extendedContent(), paragraph -> {
+                if (analysis.containsParagraph(paragraph.ordinal())) {
+                    WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), scalarValues);
+                }
+            });
+            RepeatingSections.expandTables(document, sections);
+            return write(document);
+        }
+    }
+
+
+    private static byte[] renderExcel(byte[] template, Map<String, String> values) throws Exception {
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("template.xlsx", template);
+        Map<String, Section> sections = RepeatingSections.find(analysis.placeholders(), values);
+        Map<String, String> scalarValues = RepeatingSections.keepRowPlaceholders(values, sections);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(template))) {
+            for (CellLocation location : analysis.cells()) {
+                XSSFCell cell = workbook.getSheetAt(location.sheetIndex()).getRow(location.rowIndex())
+                        .getCell(location.columnIndex());
+                String text = cell.getStringCellValue();
+                for (String placeholder : location.placeholders()) {
+                    text = text.replace(placeholder, scalarValues.getOrDefault(placeholder, ""));
+                }
+                cell.setCellValue(text);
+            }
+            RepeatingSections.expandRows(workbook, analysis.cells(), sections, TypedCellValues.NONE,
+                new FormulaRecalculator(workbook, false));
+            return write(workbook);
+        }
+    }
+
+
+    private static List<List<String>> tableText(byte[] document) throws Exception {
+        List<List<String>> rows = new ArrayList<>();
+        try (XWPFDocument rendered = new XWPFDocument(new ByteArrayInputStream(document))) {
+            for (XWPFTableRow row : rendered.getTables().get(0).getRows()) {
+                List<String> cells = new ArrayList<>();
+                row.getTableCells().forEach(cell -> cells.add(cell.getText()));
+                rows.add(cells);
+            }
+        }
+        return rows;
+    }
+
+
+    private static void setRow(XWPFTableRow row, String... texts) {
+        for (int i = 0; i < texts.length; i++) {
+            row.getCell(i).setText(texts[i]);
+        }
+    }
+
+
+    private static byte[] write(XWPFDocument document) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        document.write(out);
+        return out.toByteArray();
+    }
+
+
+    private static byte[] write(XSSFWorkbook workbook) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+}
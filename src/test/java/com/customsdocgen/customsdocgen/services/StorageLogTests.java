@@ -0,0 +1,166 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.models.AppConfig;
+import com.customsdocgen.customsdocgen.models.FieldConfig;
+import com.customsdocgen.customsdocgen.models.TemplateConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageLogTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replaysConfigMutationsAfterImportingJson() throws Exception {
+        new JsonConfigStore(tempDir.toString(), "config.json").export(new AppConfig(List.of(field("weight")), List.of()));
+
+        LogConfigStore store = newConfigStore(1000);
+        AppConfig imported = store.load();
+        assertEquals(List.of("weight"), imported.getFields().stream().map(FieldConfig::getId).toList());
+
+        store.save(new ConfigMutation.AddField(field("price")), null);
+        store.save(new ConfigMutation.UpdateField("weight", field("net_weight")), null);
+        store.save(new ConfigMutation.AddTemplate(template("invoice")), null);
+        store.save(new ConfigMutation.DeleteField("price"), null);
+        store.close();
+
+        AppConfig replayed = newConfigStore(1000).load();
+        assertEquals(List.of("net_weight"), replayed.getFields().stream().map(FieldConfig::getId).toList());
+        assertEquals(List.of("invoice"), replayed.getTemplates().stream().map(TemplateConfig::getId).toList());
+    }
+
+
+    @Test
+    void discardsTruncatedTailAndCompacts() throws Exception {
+        LogConfigStore store = newConfigStore(2);
+        store.load();
+        AppConfig config = new AppConfig(List.of(field("a")), List.of());
+        store.save(new ConfigMutation.AddField(field("a")), config);
+        store.close();
+        Files.writeString(tempDir.resolve("data/config.log"), "{\"op\":\"addField\",\"fie",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        store = newConfigStore(2);
+        assertEquals(List.of("a"), store.load().getFields().stream().map(FieldConfig::getId).toList());
+
+        config = new AppConfig(List.of(field("a"), field("b"), field("c")), List.of());
+        store.save(new ConfigMutation.AddField(field("b")), config);
+        store.save(new ConfigMutation.AddField(field("c")), config);
+        assertEquals(1, Files.readAllLines(tempDir.resolve("data/config.log")).size());
+        assertTrue(Files.exists(tempDir.resolve("config.json")));
+
+        assertEquals(List.of("a", "b", "c"),
+                newConfigStore(2).load().getFields().stream().map(FieldConfig::getId).toList());
+    }
+
+
+    @Test
+    void rollsBackAnAppendThatFailedToFlush() throws Exception {
+        Path file = tempDir.resolve("data/entries.log");
+        AtomicBoolean diskFull = new AtomicBoolean();
+        StorageLog storageLog = new StorageLog(file, new ObjectMapper(), output -> new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                if (diskFull.get()) {
+                    out.write(bytes, offset, length / 2);
+                    throw new IOException("No space left on device");
+                }
+                out.write(bytes, offset, length);
+            }
+        });
+        storageLog.append(Map.of("value", "first"));
+        storageLog.flush(true);
+
+        diskFull.set(true);
+        storageLog.append(Map.of("value", "rejected"));
+        assertThrows(IOException.class, () -> storageLog.flush(true));
+        assertEquals(1, storageLog.entries());
+
+        diskFull.set(false);
+        storageLog.append(Map.of("value", "second"));
+        storageLog.flush(true);
+        storageLog.close();
+
+        List<Object> replayed = new ArrayList<>();
+        StorageLog reopened = new StorageLog(file, new ObjectMapper());
+        assertEquals(2, reopened.replay(Map.class, entry -> replayed.add(entry.get("value"))));
+        assertEquals(List.of("first", "second"), replayed);
+    }
+
+
+    @Test
+    void keepsASavedMutationWhenCompactionFails() throws Exception {
+        LogConfigStore store = newConfigStore(1);
+        store.load();
+        store.save(new ConfigMutation.AddField(field("a")), new AppConfig(List.of(field("a")), List.of()));
+        Files.createDirectories(tempDir.resolve("config.json"));
+        Files.writeString(tempDir.resolve("config.json/blocked"), "");
+
+        AppConfig config = new AppConfig(List.of(field("a"), field("b")), List.of());
+        store.save(new ConfigMutation.AddField(field("b")), config);
+
+        assertEquals(List.of("a", "b"),
+                newConfigStore(1).load().getFields().stream().map(FieldConfig::getId).toList());
+    }
+
+
+    @Test
+    void replaysHistoryLogIncludingRemovals() throws Exception {
+        FieldValuesHistoryService service = new FieldValuesHistoryService(newHistoryStore(), 50);
+        service.init();
+        service.addValue("port", "Odesa");
+        service.addValue("port", "Izmail");
+        service.addValue("port", "Reni");
+        service.removeValue("port", "Izmail");
+        service.flush();
+
+        FieldValuesHistoryService reloaded = new FieldValuesHistoryService(newHistoryStore(), 50);
+        reloaded.init();
+        assertEquals(List.of("Reni", "Odesa"), reloaded.getHistory("port"));
+        assertEquals(4, Files.readAllLines(tempDir.resolve("data/history.log")).size());
+    }
+
+
+    private LogConfigStore newConfigStore(int compactThreshold) {
+        return new LogConfigStore(tempDir.toString(), "data", "config.json", compactThreshold);
+    }
+
+
+    private LogHistoryStore newHistoryStore() {
+        return new LogHistoryStore(tempDir.toString(), "data", "history.json", 1000);
+    }
+
+
+    private static FieldConfig field(String id) {
+        FieldConfig field = new FieldConfig();
+        field.setId(id);
+        field.setPlaceholder("{{" + id.toUpperCase() + "}}");
+        field.setFieldType("text");
+        return field;
+    }
+
+
+    private static TemplateConfig template(String id) {
+        TemplateConfig template = new TemplateConfig();
+        template.setId(id);
+        template.setFileName(id + ".docx");
+        return template;
+    }
+}
@@ -0,0 +1,73 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class StreamingDocxRendererBenchmark {
+
+    private static final int PARAGRAPHS = 5_000;
+    private static final int PLACEHOLDER_EVERY = 40;
+    private static final int TABLE_ROWS = 500;
+
+    @Test
+    void streamingEngineAgainstPoiEngine() throws Exception {
+        byte[] template = template();
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("large.docx", template);
+        Map<String, String> values = new HashMap<>();
+        analysis.placeholders().forEach(placeholder -> values.put(placeholder, "Value & <" + placeholder.length() + ">"));
+
+        Benchmarks.measure("docx 5k paragraphs: POI engine", () -> renderWithPoi(template, analysis, values));
+        Benchmarks.measure("docx 5k paragraphs: streaming engine", () -> StreamingDocxRenderer.render(template, values));
+        Benchmarks.allocated("docx 5k paragraphs: POI engine", () -> renderWithPoi(template, analysis, values));
+        Benchmarks.allocated("docx 5k paragraphs: streaming engine", () -> StreamingDocxRenderer.render(template, values));
+    }
+
+
+    private static byte[] renderWithPoi(byte[] template, TemplateAnalysis analysis, Map<String, String> values)
+            throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, analysis.extendedContent(), paragraph -> {
+                if (analysis.containsParagraph(paragraph.ordinal())) {
+                    WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), values);
+                }
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return ZipTimestamps.normalize(out.toByteArray());
+        }
+    }
+
+
+    private static byte[] template() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            for (int i = 0; i < PARAGRAPHS; i++) {
+                XWPFParagraph paragraph = document.createParagraph();
+                paragraph.createRun().setText("Clause " + i + ": ");
+                if (i % PLACEHOLDER_EVERY == 0) {
+                    paragraph.createRun().setText("{{FIELD_");
+                    paragraph.createRun().setText(i / PLACEHOLDER_EVERY + "}}");
+                } else {
+                    paragraph.createRun().setText("the goods are delivered under the terms of this contract.");
+                }
+            }
+            XWPFTable table = document.createTable(TABLE_ROWS, 4);
+            for (int row = 0; row < TABLE_ROWS; row++) {
+                for (int column = 0; column < 4; column++) {
+                    table.getRow(row).getCell(column).setText("Line " + row);
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
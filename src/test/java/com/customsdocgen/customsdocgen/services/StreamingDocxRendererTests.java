@@ -0,0 +1,220 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTPicture;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.STHighlightColor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingDocxRendererTests {
+
+    private static final Map<String, String> VALUES = Map.of(
+            "{{CONTRACT_NUMBER}}", "CN-42",
+            "{{CONTRACT_DATE}}", "01.02.2025",
+            "{{CONSIGNEE_NAME}}", "  Smith & Sons <Ltd>  ",
+            "{{WEIGHT}}", "1 250",
+            "{{HEADER}}", "Header value",
+            "{{FOOTER}}", "Footer value",
+            "{{FOOTNOTE}}", "Note value");
+
+    @Test
+    void rendersSameVisibleTextAndFormattingAsPoiEngine() throws Exception {
+        byte[] template = template();
+
+        List<String> poi = visibleFormatting(renderWithPoi(template, VALUES));
+        List<String> streaming = visibleFormatting(StreamingDocxRenderer.render(template, VALUES));
+
+        assertEquals(poi, streaming);
+        assertTrue(streaming.contains("Contract []CN-42[b] dated 01.02.2025[i] []"), streaming.toString());
+        assertTrue(streaming.contains("  Smith & Sons <Ltd>  []"), streaming.toString());
+        assertFalse(streaming.toString().contains("{{"));
+    }
+
+
+    @Test
+    void copiesPartsWithoutPlaceholdersUnchanged() throws Exception {
+        byte[] template = template();
+        Map<String, byte[]> original = entries(template);
+        Map<String, byte[]> rendered = entries(StreamingDocxRenderer.render(template, VALUES));
+
+        assertEquals(original.keySet(), rendered.keySet());
+        for (Map.Entry<String, byte[]> entry : original.entrySet()) {
+            if (!entry.getKey().matches("word/(document|header\\d*|footer\\d*|footnotes)\\.xml")) {
+                assertArrayEquals(entry.getValue(), rendered.get(entry.getKey()), entry.getKey());
+            }
+        }
+    }
+
+
+    @Test
+    void keepsRunPropertiesAndTextBoxesTheObjectModelDrops() throws Exception {
+        byte[] template;
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            XWPFRun run = paragraph.createRun();
+            run.setText("Highlighted {{CONTRACT_NUMBER}}");
+            run.getCTR().addNewRPr().addNewHighlight().setVal(STHighlightColor.YELLOW);
+            paragraph.createRun().getCTR().addNewPict().set(CTPicture.Factory.parse("<xml-fragment "
+                    + "xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\" "
+                    + "xmlns:v=\"urn:schemas-microsoft-com:vml\"><v:shape><v:textbox><w:txbxContent>"
+                    + "<w:p><w:r><w:t>{{WEIGHT}}</w:t></w:r></w:p></w:txbxContent></v:textbox></v:shape></xml-fragment>"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            template = out.toByteArray();
+        }
+
+        try (XWPFDocument rendered = new XWPFDocument(new ByteArrayInputStream(StreamingDocxRenderer.render(template, VALUES)))) {
+            XWPFRun run = rendered.getParagraphs().get(0).getRuns().get(0);
+            assertEquals("Highlighted CN-42", run.getText(0));
+            assertEquals(STHighlightColor.YELLOW, run.getCTR().getRPr().getHighlightArray(0).getVal());
+            String xml = rendered.getDocument().xmlText();
+            assertTrue(xml.contains("txbxContent") && xml.contains(">1 250<"), xml);
+        }
+    }
+
+
+    private static List<String> visibleFormatting(byte[] document) throws Exception {
+        List<String> paragraphs = new ArrayList<>();
+        try (XWPFDocument rendered = new XWPFDocument(new ByteArrayInputStream(document))) {
+            BodyWalker.walk(rendered, paragraph -> {
+                StringBuilder text = new StringBuilder();
+                String previous = null;
+                for (XWPFRun run : paragraph.runs()) {
+                    String runText = run.getText(0);
+                    if (runText == null || runText.isEmpty()) {
+                        continue;
+                    }
+                    String style = style(run);
+                    if (previous != null && !previous.equals(style)) {
+                        text.append('[').append(previous).append(']');
+                    }
+                    text.append(runText);
+                    previous = style;
+                }
+                if (previous != null) {
+                    paragraphs.add(text.append('[').append(previous).append(']').toString());
+                }
+            });
+        }
+        return paragraphs;
+    }
+
+
+    private static String style(XWPFRun run) {
+        StringBuilder style = new StringBuilder();
+        if (run.isBold()) {
+            style.append('b');
+        }
+        if (run.isItalic()) {
+            style.append('i');
+        }
+        if (run.getUnderline() != UnderlinePatterns.NONE) {
+            style.append('u');
+        }
+        if (run.getFontFamily() != null) {
+            style.append(" font=").append(run.getFontFamily());
+        }
+        if (run.getFontSizeAsDouble() != null) {
+            style.append(" size=").append(run.getFontSizeAsDouble());
+        }
+        if (run.getColor() != null) {
+            style.append(" color=").append(run.getColor());
+        }
+        return style.toString();
+    }
+
+
+    private static byte[] renderWithPoi(byte[] template, Map<String, String> values) throws Exception {
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("template.docx", template);
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            BodyWalker.walk(document, analysis.extendedContent(), paragraph -> {
+                if (analysis.containsParagraph(paragraph.ordinal())) {
+                    WordPlaceholderReplacer.replacePlaceholders(paragraph.paragraph(), values);
+                }
+            });
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+
+    private static Map<String, byte[]> entries(byte[] zip) throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), zis.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+
+    private static byte[] template() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph contract = document.createParagraph();
+            contract.createRun().setText("Contract ");
+            XWPFRun number = contract.createRun();
+            number.setText("{{CONTRACT_");
+            number.setBold(true);
+            XWPFRun numberTail = contract.createRun();
+            numberTail.setText("NUMBER}}");
+            numberTail.setItalic(true);
+            XWPFRun dated = contract.createRun();
+            dated.setText(" dated ");
+            dated.setItalic(true);
+            XWPFRun date = contract.createRun();
+            date.setText("{{CONTRACT_DATE}}");
+            date.setItalic(true);
+            contract.createRun().setText(" ");
+
+            XWPFRun consignee = document.createParagraph().createRun();
+            consignee.setText("{{CONSIGNEE_NAME}}");
+
+            XWPFParagraph styled = document.createParagraph();
+            XWPFRun label = styled.createRun();
+            label.setText("Weight: ");
+            label.setFontFamily("Arial");
+            label.setFontSize(14);
+            label.setColor("FF0000");
+            XWPFRun weight = styled.createRun();
+            weight.setText("{{WEI");
+            weight.setUnderline(UnderlinePatterns.SINGLE);
+            weight.setFontFamily("Arial");
+            styled.createRun().setText("GHT}} kg, {{UNKNOWN}}end");
+
+            document.createParagraph().createRun().setText("Plain paragraph without placeholders");
+
+            XWPFTable table = document.createTable(2, 2);
+            table.getRow(0).getCell(0).setText("{{CONTRACT_NUMBER}}/{{WEIGHT}}");
+            table.getRow(1).getCell(1).setText("Cell");
+
+            document.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("{{HEADER}}");
+            document.createFooter(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Page {{FOOTER}}");
+            document.createFootnote().createParagraph().createRun().setText("{{FOOTNOTE}}");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
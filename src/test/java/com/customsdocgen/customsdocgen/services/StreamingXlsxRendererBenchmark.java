@@ -0,0 +1,83 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+import java.util.Map;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class StreamingXlsxRendererBenchmark {
+
+    private static final Map<String, String> VALUES = Map.of(
+            "{{CONTRACT_NUMBER}}", "CN-42",
+            "{{CONSIGNEE_NAME}}", "Smith & Sons <Ltd>",
+            "{{WEIGHT}}", "1 250");
+
+    @Test
+    void streamingEngineAgainstPoiEngineOnLargePackingLists() throws Exception {
+        for (int rows : new int[] {10_000, 50_000}) {
+            byte[] template = template(rows);
+            TemplateAnalysis analysis = TemplateAnalyzer.analyze("packing-list.xlsx", template);
+            String size = String.format(Locale.ROOT, "xlsx %,d rows (%,d KB): ", Integer.valueOf(rows), Integer.valueOf(template.length / 1024));
+
+            Benchmarks.measure(size + "POI engine", 2, 5, () -> renderWithPoi(template, analysis));
+            Benchmarks.measure(size + "streaming engine", 2, 5, () -> StreamingXlsxRenderer.render(template, VALUES));
+            Benchmarks.allocated(size + "POI engine", () -> renderWithPoi(template, analysis));
+            Benchmarks.allocated(size + "streaming engine", () -> StreamingXlsxRenderer.render(template, VALUES));
+        }
+    }
+
+
+    private static byte[] renderWithPoi(byte[] template, TemplateAnalysis analysis) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(template))) {
+            for (CellLocation location : analysis.cells()) {
+                XSSFCell cell = workbook.getSheetAt(location.sheetIndex()).getRow(location.rowIndex())
+                        .getCell(location.columnIndex());
+                String text = cell.getStringCellValue();
+                for (String placeholder : location.placeholders()) {
+                    text = text.replace(placeholder, VALUES.getOrDefault(placeholder, ""));
+                }
+                cell.setCellValue(text);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return ZipTimestamps.normalize(out.toByteArray());
+        }
+    }
+
+
+    private static byte[] template(int rows) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Packing list");
+            CellStyle bordered = workbook.createCellStyle();
+            bordered.setBorderBottom(BorderStyle.THIN);
+            XSSFRow header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Contract {{CONTRACT_NUMBER}}");
+            header.createCell(1).setCellValue("{{CONSIGNEE_NAME}}");
+            header.createCell(2).setCellValue("Gross weight: {{WEIGHT}} kg");
+            for (int i = 1; i < rows; i++) {
+                XSSFRow row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("Item " + i % 500);
+                row.createCell(2).setCellValue(i * 1.5);
+                row.createCell(3).setCellFormula("C" + (i + 1) + "*2");
+                for (int column = 0; column < 4; column++) {
+                    row.getCell(column).setCellStyle(bordered);
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
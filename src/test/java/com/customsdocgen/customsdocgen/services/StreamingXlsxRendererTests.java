@@ -0,0 +1,185 @@
+package com.customsdocgen.customsdocgen.services;
+
+import com.customsdocgen.customsdocgen.services.TemplateAnalysis.CellLocation;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingXlsxRendererTests {
+
+    private static final Map<String, String> VALUES = Map.of(
+            "{{CONTRACT_NUMBER}}", "CN-42",
+            "{{WEIGHT}}", "1 250",
+            "{{CONSIGNEE_NAME}}", "Smith & Sons <Ltd>");
+
+    @Test
+    void rendersSameCellsAsPoiEngine() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            XSSFSheet sheet = workbook.createSheet("Invoice");
+            sheet.createRow(0).createCell(0).setCellValue("{{CONTRACT_NUMBER}}");
+            sheet.getRow(0).createCell(1).setCellValue("Weight: {{WEIGHT}} kg");
+            sheet.getRow(0).createCell(2).setCellValue(12.5);
+            sheet.createRow(1).createCell(0).setCellValue("{{CONTRACT_NUMBER}}");
+            sheet.getRow(1).createCell(1).setCellFormula("C1*2");
+            sheet.getRow(1).createCell(2).setCellValue("{{UNKNOWN}}left");
+
+            XSSFFont bold = workbook.createFont();
+            bold.setBold(true);
+            XSSFRichTextString rich = new XSSFRichTextString("To {{CONSIGNEE_NAME}}");
+            rich.applyFont(0, 8, bold);
+            sheet.createRow(2).createCell(0).setCellValue(rich);
+
+            workbook.createSheet("Totals").createRow(4).createCell(3).setCellValue("Contract {{CONTRACT_NUMBER}}");
+            template = write(workbook);
+        }
+
+        List<String> poi = cells(renderWithPoi(template, VALUES));
+        List<String> streaming = cells(StreamingXlsxRenderer.render(template, VALUES));
+
+        assertEquals(poi, streaming);
+        assertTrue(streaming.contains("0!0:1 STRING Weight: 1 250 kg"), streaming.toString());
+        assertTrue(streaming.contains("0!2:0 STRING To Smith & Sons <Ltd>"), streaming.toString());
+        assertTrue(streaming.contains("0!1:1 FORMULA C1*2"), streaming.toString());
+    }
+
+
+    @Test
+    void leavesWorksheetsUntouchedWhenStringsAreShared() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Packing list");
+            for (int i = 0; i < 1000; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i == 0 ? "{{CONTRACT_NUMBER}}" : "Line " + i);
+                row.createCell(1).setCellValue(i);
+            }
+            template = write(workbook);
+        }
+
+        byte[] rendered = StreamingXlsxRenderer.render(template, VALUES);
+        assertArrayEquals(entry(template, "xl/worksheets/sheet1.xml"), entry(rendered, "xl/worksheets/sheet1.xml"));
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(rendered))) {
+            assertEquals("CN-42", workbook.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+            assertEquals("Line 999", workbook.getSheetAt(0).getRow(999).getCell(0).getStringCellValue());
+        }
+    }
+
+
+    @Test
+    void rewritesInlineStrings() throws Exception {
+        byte[] template;
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook()) {
+            Row row = workbook.createSheet("Inline").createRow(0);
+            row.createCell(0).setCellValue("{{CONTRACT_NUMBER}} / {{WEIGHT}}");
+            row.createCell(1).setCellValue("plain");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            template = out.toByteArray();
+        }
+
+        byte[] rendered = StreamingXlsxRenderer.render(template, VALUES);
+        assertTrue(new String(entry(rendered, "xl/worksheets/sheet1.xml"), StandardCharsets.UTF_8).contains("inlineStr"));
+        assertEquals(List.of("0!0:0 STRING CN-42 / 1 250", "0!0:1 STRING plain"), cells(rendered));
+    }
+
+
+    @Test
+    void writesArchiveWithoutTrailingPaddingSoTimestampsNormalize() throws Exception {
+        byte[] template;
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            workbook.createSheet("Invoice").createRow(0).createCell(0).setCellValue("{{CONTRACT_NUMBER}}");
+            template = write(workbook);
+        }
+
+        byte[] rendered = StreamingXlsxRenderer.render(template, VALUES);
+        int end = rendered.length - 22;
+        assertEquals(0x06054b50, (rendered[end] & 0xFF) | (rendered[end + 1] & 0xFF) << 8
+                | (rendered[end + 2] & 0xFF) << 16 | (rendered[end + 3] & 0xFF) << 24);
+        assertFalse(Arrays.equals(rendered, ZipTimestamps.normalize(rendered.clone())));
+    }
+
+
+    private static List<String> cells(byte[] workbookBytes) throws Exception {
+        List<String> cells = new ArrayList<>();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(workbookBytes))) {
+            for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+                for (Row row : workbook.getSheetAt(sheetIndex)) {
+                    for (Cell cell : row) {
+                        String value = switch (cell.getCellType()) {
+                            case STRING -> cell.getStringCellValue();
+                            case NUMERIC -> String.valueOf(cell.getNumericCellValue());
+                            case FORMULA -> cell.getCellFormula();
+                            default -> "";
+                        };
+                        cells.add(sheetIndex + "!" + row.getRowNum() + ":" + cell.getColumnIndex() + " "
+                                + cell.getCellType() + " " + value + (cell.getCellStyle().getIndex() == 0 ? "" : " style"));
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+
+    private static byte[] renderWithPoi(byte[] template, Map<String, String> values) throws Exception {
+        TemplateAnalysis analysis = TemplateAnalyzer.analyze("template.xlsx", template);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(template))) {
+            for (CellLocation location : analysis.cells()) {
+                XSSFCell cell = workbook.getSheetAt(location.sheetIndex()).getRow(location.rowIndex())
+                        .getCell(location.columnIndex());
+                if (cell.getCellType() == CellType.STRING) {
+                    String text = cell.getStringCellValue();
+                    for (String placeholder : location.placeholders()) {
+                        text = text.replace(placeholder, values.getOrDefault(placeholder, ""));
+                    }
+                    cell.setCellValue(text);
+                }
+            }
+            return write(workbook);
+        }
+    }
+
+
+    private static byte[] write(XSSFWorkbook workbook) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
+
+
+    private static byte[] entry(byte[] zip, String name) throws Exception {
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.getName().equals(name)) {
+                    return zis.readAllBytes();
+                }
+            }
+        }
+        return null;
+    }
+}
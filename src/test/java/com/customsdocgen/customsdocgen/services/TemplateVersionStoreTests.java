@@ -0,0 +1,71 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TemplateVersionStoreTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void storesTemplatesByContentHash() throws Exception {
+        TemplateVersionStore store = new TemplateVersionStore(tempDir.toString());
+        byte[] content = "template v1".getBytes(StandardCharsets.UTF_8);
+        String hash = ContentHash.sha256(content);
+
+        store.store("invoice.docx", hash, content);
+        assertArrayEquals(content, store.load("invoice.docx", hash));
+        assertEquals(1, Files.list(tempDir).count());
+
+        Files.writeString(tempDir.resolve(hash + ".docx"), "tampered");
+        assertThrows(IOException.class, () -> store.load("invoice.docx", hash));
+        assertThrows(FileNotFoundException.class,
+                () -> store.load("invoice.docx", ContentHash.sha256(new byte[0])));
+    }
+
+
+    @Test
+    void normalizesZipEntryTimestamps() throws Exception {
+        byte[] first = ZipTimestamps.normalize(zip(1_600_000_000_000L));
+        byte[] second = ZipTimestamps.normalize(zip(1_700_000_000_000L));
+        assertArrayEquals(first, second);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(first))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("word/document.xml", entry.getName());
+            assertEquals("<w:document/>", new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals(zip.getNextEntry().getTime(), entry.getTime());
+        }
+    }
+
+
+    private static byte[] zip(long time) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(out)) {
+            for (String name : new String[] {"word/document.xml", "docProps/core.xml"}) {
+                ZipEntry entry = new ZipEntry(name);
+                entry.setTime(time);
+                zos.putNextEntry(entry);
+                zos.write(name.startsWith("word") ? "<w:document/>".getBytes(StandardCharsets.UTF_8) : new byte[] {1, 2, 3});
+                zos.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@EnabledIfSystemProperty(named = Benchmarks.ENABLED_PROPERTY, matches = "true")
+class WordPlaceholderReplacerBenchmark {
+
+    private static final int PLACEHOLDER_EVERY = 10;
+
+    @Test
+    void singlePassReplacerAgainstLegacyEngineAsRunsGrow() throws Exception {
+        for (int runs : new int[] {250, 1_000, 4_000}) {
+            byte[] document = fragmentedParagraph(runs);
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < runs / PLACEHOLDER_EVERY; i++) {
+                values.put("{{FIELD_" + i + "}}", "value " + i);
+            }
+            assertEquals(render(document, values, LegacyWordPlaceholderReplacer::replacePlaceholders),
+                    render(document, values, WordPlaceholderReplacer::replacePlaceholders));
+
+            Benchmarks.measure("docx paragraph " + runs + " runs: load only", 2, 7,
+                    () -> render(document, values, (paragraph, fields) -> { }));
+            Benchmarks.measure("docx paragraph " + runs + " runs: legacy engine", 2, 7,
+                    () -> render(document, values, LegacyWordPlaceholderReplacer::replacePlaceholders));
+            Benchmarks.measure("docx paragraph " + runs + " runs: single-pass engine", 2, 7,
+                    () -> render(document, values, WordPlaceholderReplacer::replacePlaceholders));
+        }
+    }
+
+
+    private static String render(byte[] template, Map<String, String> values,
+                                 BiConsumer<XWPFParagraph, Map<String, String>> engine) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(template))) {
+            XWPFParagraph paragraph = document.getParagraphs().get(0);
+            engine.accept(paragraph, values);
+            return paragraph.getText();
+        }
+    }
+
+
+    private static byte[] fragmentedParagraph(int runs) throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            for (int i = 0; i < runs; i++) {
+                XWPFRun run = paragraph.createRun();
+                run.setBold(i % 3 == 0);
+                if (i % PLACEHOLDER_EVERY == 0) {
+                    run.setText("{{FIELD_" + i / PLACEHOLDER_EVERY);
+                } else if (i % PLACEHOLDER_EVERY == 1) {
+                    run.setText("}} clause ");
+                } else {
+                    run.setText("word" + i + " ");
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+}
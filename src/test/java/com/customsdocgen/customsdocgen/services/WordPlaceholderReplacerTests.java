@@ -0,0 +1,256 @@
+package com.customsdocgen.customsdocgen.services;
+
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
+import org.apache.poi.xwpf.usermodel.VerticalAlign;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class WordPlaceholderReplacerTests {
+
+    @Test
+    void placeholderSplitAcrossRunsTakesStyleOfFirstRun() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            addRun(paragraph, "No. ", false, null);
+            addRun(paragraph, "{{CONT", true, "FF0000");
+            addRun(paragraph, "RACT_", false, null);
+            addRun(paragraph, "NUMBER}} dated", false, null);
+            addRun(paragraph, " today", false, null);
+
+            WordPlaceholderReplacer.replacePlaceholders(paragraph, Map.of("{{CONTRACT_NUMBER}}", "C-17"));
+
+            assertEquals(List.of("No. |false|null", "C-17|true|FF0000", " dated today|false|null"),
+                    describe(paragraph));
+        }
+    }
+
+
+    @Test
+    void adjacentRunsWithDifferentStylesStaySeparate() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            addRun(paragraph, "a", false, null);
+            addRun(paragraph, "b", true, null);
+            addRun(paragraph, "c{{X}}", true, null);
+            addRun(paragraph, "d", false, "00FF00");
+            addRun(paragraph, "e", false, "00FF00");
+
+            WordPlaceholderReplacer.replacePlaceholders(paragraph, Map.of("{{X}}", "value"));
+
+            assertEquals(List.of("a|false|null", "bc|true|null", "value|true|null", "de|false|00FF00"),
+                    describe(paragraph));
+        }
+    }
+
+
+    @Test
+    void missingAndEmptyValuesRemovePlaceholder() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            addRun(paragraph, "[{{EMPTY}}]", false, null);
+            addRun(paragraph, "[{{UNKNOWN}}]", true, null);
+
+            WordPlaceholderReplacer.replacePlaceholders(paragraph, Map.of("{{EMPTY}}", ""));
+
+            assertEquals(List.of("[|false|null", "]|false|null", "[|true|null", "]|true|null"),
+                    describe(paragraph));
+        }
+    }
+
+
+    @Test
+    void paragraphWithoutPlaceholdersKeepsRuns() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            addRun(paragraph, "plain ", false, null);
+            addRun(paragraph, "text", true, null);
+
+            WordPlaceholderReplacer.replacePlaceholders(paragraph, Map.of("{{X}}", "value"));
+
+            assertEquals(List.of("plain |false|null", "text|true|null"), describe(paragraph));
+        }
+    }
+
+
+    @Test
+    void replacesPlaceholdersInsideEachRunInOnePass() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            addRun(paragraph, "{{A}}-{{B}}-{{A}}", false, null);
+            addRun(paragraph, "[{{UNKNOWN}}] {{B}}", true, null);
+            addRun(paragraph, "plain", false, null);
+
+            WordPlaceholderReplacer.replaceWithinRuns(paragraph.getRuns(), Map.of("{{A}}", "{{B}}", "{{B}}", "2"));
+
+            assertEquals(List.of("{{B}}-2-{{B}}|false|null", "[] 2|true|null", "plain|false|null"),
+                    describe(paragraph));
+        }
+    }
+
+
+    @Test
+    void heavilyFragmentedParagraphIsSubstitutedCompletely() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            XWPFParagraph paragraph = document.createParagraph();
+            StringBuilder source = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                source.append("text ").append(i).append(" {{FIELD_").append(i % 10).append("}} ");
+            }
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 500; i++) {
+                expected.append("text ").append(i).append(" v").append(i % 10).append(' ');
+            }
+
+            for (int i = 0; i < source.length(); i++) {
+                addRun(paragraph, String.valueOf(source.charAt(i)), i % 2 == 0, null);
+            }
+
+            Map<String, String> values = new java.util.HashMap<>();
+            for (int i = 0; i < 10; i++) {
+                values.put("{{FIELD_" + i + "}}", "v" + i);
+            }
+
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(10),
+                    () -> WordPlaceholderReplacer.replacePlaceholders(paragraph, values));
+            assertEquals(expected.toString(), paragraph.getText());
+        }
+    }
+
+
+    @Test
+    void matchesTheLegacyEngineOnFragmentedDocuments() throws Exception {
+        byte[] fixture = fragmentedContract();
+        Map<String, String> values = Map.of(
+                "{{CONTRACT_NUMBER}}", "UA-2024/117",
+                "{{CONTRACT_DATE}}", "12.03.2024",
+                "{{SELLER_NAME}}", "ТОВ «Зерно Експорт»",
+                "{{SELLER_ADDRESS}}", "м. Одеса, вул. Портова, 5",
+                "{{GROSS_WEIGHT}}", "24 850",
+                "{{VOLUME}}", "31,2",
+                "{{HS_CODE}}", "1001 99 00 00",
+                "{{GOODS}}", "Пшениця м'яка 3 класу");
+
+        List<String> legacy = render(fixture, values, LegacyWordPlaceholderReplacer::replacePlaceholders);
+        List<String> current = render(fixture, values, WordPlaceholderReplacer::replacePlaceholders);
+
+        assertEquals(legacy, current);
+        assertEquals(List.of(
+                "Контракт № |false|false|null|Times New Roman|12.0|NONE|baseline",
+                "UA-2024/117|false|false|null|Times New Roman|12.0|NONE|baseline",
+                " від |false|false|null|Times New Roman|12.0|NONE|baseline",
+                "12.03.2024|true|false|null|Times New Roman|12.0|NONE|baseline"), current.subList(0, 4));
+    }
+
+
+    private static List<String> render(byte[] fixture, Map<String, String> values,
+                                       BiConsumer<XWPFParagraph, Map<String, String>> engine) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(new ByteArrayInputStream(fixture))) {
+            List<XWPFParagraph> paragraphs = new ArrayList<>(document.getParagraphs());
+            for (XWPFTable table : document.getTables()) {
+                table.getRows().forEach(row -> row.getTableCells().forEach(cell -> paragraphs.addAll(cell.getParagraphs())));
+            }
+            List<String> runs = new ArrayList<>();
+            for (XWPFParagraph paragraph : paragraphs) {
+                engine.accept(paragraph, values);
+                for (XWPFRun run : paragraph.getRuns()) {
+                    runs.add(run.getText(0) + "|" + run.isBold() + "|" + run.isItalic() + "|" + run.getColor()
+                            + "|" + run.getFontFamily() + "|" + run.getFontSizeAsDouble() + "|" + run.getUnderline()
+                            + "|" + run.getVerticalAlignment());
+                }
+                runs.add("¶");
+            }
+            return runs;
+        }
+    }
+
+
+    private static byte[] fragmentedContract() throws Exception {
+        try (XWPFDocument document = new XWPFDocument()) {
+            Consumer<XWPFRun> body = run -> {
+                run.setFontFamily("Times New Roman");
+                run.setFontSize(12);
+            };
+            XWPFParagraph header = document.createParagraph();
+            addRun(header, "Контракт № ", body);
+            addRun(header, "{{", body);
+            addRun(header, "CONTRACT_NUMBER", body);
+            addRun(header, "}} від ", body);
+            addRun(header, "{{CONTRACT_DATE}}", body.andThen(run -> run.setBold(true)));
+
+            XWPFParagraph seller = document.createParagraph();
+            addRun(seller, "Продавець: {{SEL", body);
+            addRun(seller, "LER_NA", body);
+            addRun(seller, "ME}}, ", body);
+            addRun(seller, "адреса ", body.andThen(run -> run.setItalic(true)));
+            addRun(seller, "{{SELLER_ADDRESS}}", body.andThen(run -> run.setItalic(true)));
+            addRun(seller, ".", body);
+
+            XWPFParagraph weight = document.createParagraph();
+            addRun(weight, "Вага брутто", body.andThen(run -> run.setUnderline(UnderlinePatterns.SINGLE)));
+            addRun(weight, ": ", body);
+            addRun(weight, "{{GROSS_", body.andThen(run -> run.setColor("C00000")));
+            addRun(weight, "WEIGHT}} кг, об'єм {{VOLUME}} м", body);
+            addRun(weight, "3", body.andThen(run -> run.setSubscript(VerticalAlign.SUPERSCRIPT)));
+            addRun(weight, "", body);
+
+            XWPFParagraph repeated = document.createParagraph();
+            addRun(repeated, "{{CONTRACT_NUMBER}}/{{CONTRACT_", run -> run.setFontFamily("Arial"));
+            addRun(repeated, "NUMBER}} — ", run -> run.setFontFamily("Arial"));
+            addRun(repeated, "без змін", run -> run.setFontFamily("Arial"));
+
+            XWPFTable table = document.createTable(2, 2);
+            table.getRow(0).getCell(0).setText("Код УКТЗЕД");
+            XWPFParagraph code = table.getRow(0).getCell(1).getParagraphs().get(0);
+            addRun(code, "{{HS", body);
+            addRun(code, "_CODE}}", body.andThen(run -> run.setBold(true)));
+            table.getRow(1).getCell(0).setText("Товар");
+            XWPFParagraph goods = table.getRow(1).getCell(1).getParagraphs().get(0);
+            addRun(goods, "{", body);
+            addRun(goods, "{GOODS}", body.andThen(run -> run.setItalic(true)));
+            addRun(goods, "}", body);
+            addRun(goods, ", врожай 2023", body.andThen(run -> run.setItalic(true)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.write(out);
+            return out.toByteArray();
+        }
+    }
+
+
+    private static void addRun(XWPFParagraph paragraph, String text, Consumer<XWPFRun> style) {
+        XWPFRun run = paragraph.createRun();
+        run.setText(text);
+        style.accept(run);
+    }
+
+
+    private static void addRun(XWPFParagraph paragraph, String text, boolean bold, String color) {
+        XWPFRun run = paragraph.createRun();
+        run.setText(text);
+        run.setBold(bold);
+        if (color != null) {
+            run.setColor(color);
+        }
+    }
+
+
+    private static List<String> describe(XWPFParagraph paragraph) {
+        return paragraph.getRuns().stream()
+                .map(run -> run.getText(0) + "|" + run.isBold() + "|" + run.getColor())
+                .toList();
+    }
+}